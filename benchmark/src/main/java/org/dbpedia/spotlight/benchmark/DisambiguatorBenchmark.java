@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.benchmark;
+
+import org.dbpedia.spotlight.model.DBpediaResourceOccurrence;
+import org.dbpedia.spotlight.model.Paragraph;
+import org.dbpedia.spotlight.model.SurfaceFormOccurrence;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disambiguating all spots of a document of the synthetic model with the two-step disambiguator.
+ * The documents are tokenized and spotted in the setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DisambiguatorBenchmark {
+
+    @Param({"1", "10"})
+    public int k;
+
+    private SyntheticModel model;
+    private Paragraph[] paragraphs;
+
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        model = SyntheticModel.shared();
+        paragraphs = model.paragraphs();
+    }
+
+    @Benchmark
+    public scala.collection.immutable.Map<SurfaceFormOccurrence, scala.collection.immutable.List<DBpediaResourceOccurrence>> bestK() {
+        if (++next >= paragraphs.length)
+            next = 0;
+        return model.disambiguator().bestK(paragraphs[next], k);
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.benchmark;
+
+import org.dbpedia.spotlight.model.SurfaceFormOccurrence;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spotting a document of the synthetic model with the FSA spotter and the OpenNLP spotter (with a
+ * name finder trained on the synthetic documents). The documents are tokenized in the setup, so
+ * only the spotting itself is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SpotterBenchmark {
+
+    private SyntheticModel model;
+
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        model = SyntheticModel.shared();
+    }
+
+    private int nextDocument() {
+        if (++next >= model.documents().length)
+            next = 0;
+        return next;
+    }
+
+    @Benchmark
+    public List<SurfaceFormOccurrence> fsaSpotter() {
+        return model.fsaSpotter().extract(model.tokenizedText(nextDocument()));
+    }
+
+    @Benchmark
+    public List<SurfaceFormOccurrence> openNLPSpotter() {
+        return model.openNLPSpotter().extract(model.tokenizedText(nextDocument()));
+    }
+
+}
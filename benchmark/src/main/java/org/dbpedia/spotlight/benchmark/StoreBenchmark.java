@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.benchmark;
+
+import org.dbpedia.spotlight.exceptions.SurfaceFormNotFoundException;
+import org.dbpedia.spotlight.model.Candidate;
+import org.dbpedia.spotlight.model.DBpediaResource;
+import org.dbpedia.spotlight.model.SurfaceForm;
+import org.dbpedia.spotlight.model.TokenType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups in the memory stores: surface forms by name, the candidates of a surface form and the
+ * context counts of a DBpedia resource. Each invocation looks up the next key of the synthetic model.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StoreBenchmark {
+
+    private SyntheticModel model;
+
+    private String[] surfaceFormNames;
+    private SurfaceForm[] surfaceForms;
+    private DBpediaResource[] resources;
+
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        model = SyntheticModel.shared();
+        surfaceFormNames = model.surfaceFormNames();
+        surfaceForms = model.surfaceForms();
+        resources = model.resources();
+    }
+
+    private int next(int n) {
+        if (++next >= n)
+            next = 0;
+        return next;
+    }
+
+    @Benchmark
+    public SurfaceForm getSurfaceForm() throws SurfaceFormNotFoundException {
+        return model.surfaceFormStore().getSurfaceForm(surfaceFormNames[next(surfaceFormNames.length)]);
+    }
+
+    @Benchmark
+    public scala.collection.immutable.Set<Candidate> getCandidates() {
+        return model.candidateMapStore().getCandidates(surfaceForms[next(surfaceForms.length)]);
+    }
+
+    @Benchmark
+    public scala.collection.immutable.Map<TokenType, Object> getContextCounts() {
+        return model.contextStore().getContextCounts(resources[next(resources.length)]);
+    }
+
+}
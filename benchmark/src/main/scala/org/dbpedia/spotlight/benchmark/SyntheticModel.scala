@@ -0,0 +1,284 @@
+package org.dbpedia.spotlight.benchmark
+
+import java.io.{FileOutputStream, FileInputStream, File}
+import java.util.{Locale, Properties}
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+import scala.util.Random
+import org.apache.commons.io.FileUtils
+import opennlp.tools.namefind.{NameFinderME, NameSample, TokenNameFinderModel}
+import opennlp.tools.util.{CollectionObjectStream, Span}
+import org.dbpedia.spotlight.db._
+import org.dbpedia.spotlight.db.io.CandidateMapSource
+import org.dbpedia.spotlight.db.memory._
+import org.dbpedia.spotlight.db.model.Stemmer
+import org.dbpedia.spotlight.db.similarity.GenerativeContextSimilarity
+import org.dbpedia.spotlight.db.tokenize.LanguageIndependentTokenizer
+import org.dbpedia.spotlight.disambiguate.mixtures.UnweightedMixture
+import org.dbpedia.spotlight.log.SpotlightLog
+import org.dbpedia.spotlight.model._
+
+
+/**
+ * A small synthetic model for the benchmarks. The model folder is generated with the indexer and
+ * loaded like a real model, the spotters and the disambiguator are created as in
+ * [[org.dbpedia.spotlight.db.SpotlightModel]].
+ *
+ * Resources are named by sequences of made-up words, their support follows a Zipf distribution.
+ * Each resource is a candidate of its full name and of the last word of its name, so that
+ * surface forms are ambiguous. The documents mention resources within words of their contexts.
+ *
+ * @param folder the model folder
+ * @param documents the synthetic documents
+ * @param nameFinderModel name finder trained on the mentions in the documents
+ */
+class SyntheticModel(val folder: File, val documents: Array[String], nameFinderModel: TokenNameFinderModel) {
+
+  private val (tokenStore, sfStore, resStore, candMapStore, ctxStore) = SpotlightModel.storesFromFolder(folder)
+
+  //There are no memory-mapped stores in the synthetic model folder:
+  val tokenTypeStore = tokenStore.asInstanceOf[MemoryTokenTypeStore]
+  val surfaceFormStore = sfStore.asInstanceOf[MemorySurfaceFormStore]
+  val resourceStore = resStore.asInstanceOf[MemoryResourceStore]
+  val candidateMapStore = candMapStore.asInstanceOf[MemoryCandidateMapStore]
+  val contextStore = ctxStore.asInstanceOf[MemoryContextStore]
+
+  val stopwords = SpotlightModel.loadStopwords(folder)
+  private val spotterThresholds = Some(SpotlightModel.loadSpotterThresholds(new File(folder, "spotter_thresholds.txt")))
+
+  val tokenizer = new LanguageIndependentTokenizer(stopwords, new Stemmer(), new Locale("en", "US"), tokenTypeStore)
+
+  val fsaSpotter = new FSASpotter(
+    MemoryStore.loadFSADictionary(new FileInputStream(new File(folder, "fsa_dict.mem"))),
+    surfaceFormStore,
+    spotterThresholds,
+    stopwords
+  )
+
+  val openNLPSpotter = new OpenNLPSpotter(
+    None,
+    List(nameFinderModel),
+    surfaceFormStore,
+    stopwords,
+    spotterThresholds
+  )
+
+  val disambiguator = new DBTwoStepDisambiguator(
+    tokenTypeStore,
+    surfaceFormStore,
+    resourceStore,
+    new DBCandidateSearcher(resourceStore, surfaceFormStore, candidateMapStore),
+    new UnweightedMixture(Set("P(e)", "P(c|e)", "P(s|e)")),
+    new GenerativeContextSimilarity(tokenTypeStore, contextStore)
+  )
+
+  //Lookup keys in random order, so that consecutive lookups do not hit neighbouring entries:
+  private val random = new Random(SyntheticModel.SEED)
+
+  val surfaceFormNames: Array[String] = random.shuffle(surfaceFormStore.stringForID.filter(_ != null).toList).toArray
+
+  val surfaceForms: Array[SurfaceForm] = surfaceFormNames.map(surfaceFormStore.getSurfaceForm)
+
+  val resources: Array[DBpediaResource] = random.shuffle((1 until resourceStore.size).toList).map(resourceStore.getResource).toArray
+
+  val tokenizedDocuments: Array[TokenizedText] = documents.map(d => tokenizer.tokenizeText(new Text(d)))
+
+  /**
+   * Returns a new Text for the i-th document with the tokens of the document, so that spotters
+   * skip the tokenization.
+   */
+  def tokenizedText(i: Int): Text = {
+    val text = new Text(documents(i))
+    text.setFeature(new Feature(TokenizedText.FEATURE, tokenizedDocuments(i)))
+    text
+  }
+
+  /**
+   * Paragraphs of all documents with the spots of the FSA spotter.
+   */
+  lazy val paragraphs: Array[Paragraph] = documents.indices.map{ i: Int =>
+    Factory.paragraph().fromJ(fsaSpotter.extract(tokenizedText(i)))
+  }.toArray
+
+}
+
+
+object SyntheticModel {
+
+  val SEED = 42
+
+  //Size of the synthetic model, set with -Dspotlight.benchmark.resources and -Dspotlight.benchmark.documents:
+  val RESOURCES: Int = Integer.getInteger("spotlight.benchmark.resources", 5000).intValue()
+  val DOCUMENTS: Int = Integer.getInteger("spotlight.benchmark.documents", 100).intValue()
+
+  val VOCABULARY_SIZE = 3000
+  val SENTENCES_PER_DOCUMENT = 10
+  val STOPWORDS = List("the", "a", "an", "of", "in", "and", "is", "was", "to", "by")
+
+  private val SYLLABLES = Array("ka", "ro", "mi", "den", "sa", "lu", "ter", "vo", "nel", "bi",
+    "gar", "os", "fen", "ti", "mar", "qu", "el", "zo", "ran", "pe", "dal", "wi", "sto", "ne")
+
+  /**
+   * The model shared by all benchmarks of a JVM, it is generated into a temporary folder on first use.
+   */
+  lazy val shared: SyntheticModel = {
+    val folder = File.createTempFile("spotlight-benchmark", "")
+    folder.delete()
+    folder.mkdir()
+    FileUtils.forceDeleteOnExit(folder)
+
+    generate(folder, RESOURCES, DOCUMENTS, new Random(SEED))
+  }
+
+  private def words(random: Random, n: Int, minSyllables: Int, maxSyllables: Int, exclude: collection.Set[String]): Array[String] = {
+    val words = mutable.LinkedHashSet[String]()
+    while (words.size < n) {
+      val word = (0 until minSyllables + random.nextInt(maxSyllables - minSyllables + 1)).map(_ => SYLLABLES(random.nextInt(SYLLABLES.length))).mkString
+      if (!exclude.contains(word))
+        words += word
+    }
+    words.toArray
+  }
+
+  //Index in 1 to n, skewed towards the popular (low) indexes:
+  private def skewed(random: Random, n: Int): Int = 1 + (n * math.pow(random.nextDouble(), 3)).toInt.min(n - 1)
+
+  /**
+   * Generates a synthetic model in the folder.
+   *
+   * @param folder the model folder, must exist
+   * @param numberOfResources number of DBpedia resources in the model
+   * @param numberOfDocuments number of documents to generate
+   * @param random source of randomness, the model only depends on its seed
+   * @return
+   */
+  def generate(folder: File, numberOfResources: Int, numberOfDocuments: Int, random: Random): SyntheticModel = {
+
+    SpotlightLog.info(this.getClass, "Generating synthetic model with %d resources in %s...", numberOfResources, folder)
+
+    val vocabulary = words(random, VOCABULARY_SIZE, 1, 3, STOPWORDS.toSet)
+    val nameWords = words(random, numberOfResources / 2, 2, 5, Set[String]()).map(_.capitalize)
+
+    //Resource i has the name names(i) and a context of token IDs, ID 0 is the unknown token:
+    val names = new Array[String](numberOfResources + 1)
+    val contexts = new Array[Array[Int]](numberOfResources + 1)
+    val usedNames = mutable.HashSet[String]()
+    (1 to numberOfResources).foreach{ i: Int =>
+      var name: String = null
+      do {
+        name = (0 to random.nextInt(3)).map(_ => nameWords(random.nextInt(nameWords.length))).mkString(" ")
+      } while (usedNames.contains(name))
+      usedNames += name
+      names(i) = name
+      contexts(i) = Array.fill(20 + random.nextInt(40))(1 + random.nextInt(vocabulary.length))
+    }
+    def support(i: Int) = 1 + 100000 / i
+
+    //Surface forms and their candidates with counts:
+    val candidates = mutable.LinkedHashMap[String, mutable.Map[Int, Int]]()
+    (1 to numberOfResources).foreach{ i: Int =>
+      candidates.getOrElseUpdate(names(i), mutable.HashMap[Int, Int]()).put(i, support(i) / 2 + 1)
+      if (names(i).contains(" "))
+        candidates.getOrElseUpdate(names(i).split(" ").last, mutable.HashMap[Int, Int]()).put(i, support(i) / 4 + 1)
+    }
+
+    FileUtils.write(new File(folder, "stopwords.list"), STOPWORDS.mkString("\n"))
+    FileUtils.write(new File(folder, "spotter_thresholds.txt"), "1.0 0.2 -0.2 0.1")
+
+    val properties = new Properties()
+    properties.setProperty("stemmer", "None")
+    properties.setProperty("namespace", "http://dbpedia.org/resource/")
+    properties.setProperty("locale", "en_US")
+    properties.setProperty("version", "1.0")
+    properties.store(new FileOutputStream(new File(folder, "model.properties")), null)
+
+    val modelDataFolder = new File(folder, "model")
+    modelDataFolder.mkdir()
+
+    val quantizedCountStore = new MemoryQuantizedCountStore()
+    val memoryIndexer = new MemoryStoreIndexer(modelDataFolder, quantizedCountStore)
+
+    val sfCounts = new java.util.LinkedHashMap[SurfaceForm, (Int, Int)]()
+    candidates.foreach{ case (sf, cands) =>
+      val annotated = cands.values.sum
+      sfCounts.put(new SurfaceForm(sf), (annotated, 2 * annotated))
+    }
+    memoryIndexer.addSurfaceForms(sfCounts, new java.util.HashMap[String, Int](), 1)
+
+    val resourceCounts = new java.util.LinkedHashMap[DBpediaResource, Int]()
+    (1 to numberOfResources).foreach{ i: Int =>
+      val resource = new DBpediaResource(names(i).replace(' ', '_'), support(i))
+      resource.id = i
+      resourceCounts.put(resource, support(i))
+    }
+    memoryIndexer.addResources(resourceCounts)
+
+    val sfStore = MemoryStore.loadSurfaceFormStore(new FileInputStream(new File(modelDataFolder, "sf.mem")), quantizedCountStore)
+
+    val candidateKeys = mutable.ArrayBuilder.make[Long]()
+    val candidateCounts = mutable.ArrayBuilder.make[Int]()
+    candidates.foreach{ case (sf, cands) =>
+      val sfID = sfStore.getSurfaceForm(sf).id
+      cands.foreach{ case (resID, count) =>
+        candidateKeys += CandidateMapSource.candidateKey(sfID, resID)
+        candidateCounts += count
+      }
+    }
+    memoryIndexer.addCandidatesByID(candidateKeys.result(), candidateCounts.result(), sfStore.size)
+
+    val tokens = Array(TokenType.UNKNOWN.tokenType) ++ vocabulary ++ nameWords
+    memoryIndexer.addTokenTypes(tokens, tokens.map(_ => 1 + random.nextInt(1000)))
+    val tokenStore = MemoryStore.loadTokenTypeStore(new FileInputStream(new File(modelDataFolder, "tokens.mem")))
+
+    memoryIndexer.createContextStore(numberOfResources + 1)
+    memoryIndexer.addTokenOccurrencesByID(
+      (1 to numberOfResources).iterator.map( i => Triple(i, contexts(i), contexts(i).map(_ => 1 + random.nextInt(20))) )
+    )
+    memoryIndexer.writeTokenOccurrences()
+    memoryIndexer.writeQuantizedCounts()
+
+    val fsaDict = FSASpotter.buildDictionary(sfStore, new LanguageIndependentTokenizer(Set[String](), new Stemmer(), new Locale("en", "US"), tokenStore))
+    MemoryStore.dump(fsaDict, new File(folder, "fsa_dict.mem"))
+
+    //Documents about a few resources each, the mentions are the training data of the name finder:
+    val nameSamples = mutable.ArrayBuffer[NameSample]()
+    val documents = Array.fill(numberOfDocuments) {
+      val topics = Array.fill(3)(skewed(random, numberOfResources))
+
+      (0 until SENTENCES_PER_DOCUMENT).map{ _ =>
+        val sentence = mutable.ArrayBuffer[String]()
+        val mentions = mutable.ArrayBuffer[Span]()
+
+        (0 until 8 + random.nextInt(8)).foreach{ _ =>
+          val topic = topics(random.nextInt(topics.length))
+          val p = random.nextDouble()
+          if (p < 0.15) {
+            sentence += STOPWORDS(random.nextInt(STOPWORDS.size))
+          } else if (p < 0.25) {
+            val mention = if (random.nextBoolean()) names(topic) else names(topic).split(" ").last
+            mentions += new Span(sentence.size, sentence.size + mention.split(" ").length, "person")
+            sentence ++= mention.split(" ")
+          } else {
+            sentence += vocabulary(contexts(topic)(random.nextInt(contexts(topic).length)) - 1)
+          }
+        }
+
+        nameSamples += new NameSample((sentence :+ ".").toArray, mentions.toArray, false)
+        sentence.head.capitalize + sentence.tail.map(" " + _).mkString + "."
+      }.mkString(" ")
+    }
+
+    SpotlightLog.info(this.getClass, "Training name finder on %d sentences...", nameSamples.size)
+    val nameFinderModel = NameFinderME.train(
+      "en",
+      "person",
+      new CollectionObjectStream[NameSample](nameSamples.asJava),
+      new java.util.HashMap[String, AnyRef](),
+      20,
+      1
+    )
+
+    new SyntheticModel(folder, documents, nameFinderModel)
+  }
+
+}
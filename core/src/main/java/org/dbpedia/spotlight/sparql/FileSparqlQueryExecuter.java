@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.sparql;
+
+import org.dbpedia.spotlight.exceptions.SparqlExecutionException;
+import org.dbpedia.spotlight.model.DBpediaResource;
+import org.dbpedia.spotlight.model.SpotlightConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stand-in for a SPARQL endpoint that answers the queries from a local file, for tests and for
+ * running the server without network access. Each line of the file holds a query and the URIs it
+ * resolves to, separated by a tab:
+ *
+ * <pre>
+ * # comment
+ * select distinct ?pol where {?pol a &lt;http://dbpedia.org/ontology/Politician&gt; }	http://dbpedia.org/resource/Barack_Obama Angela_Merkel
+ * </pre>
+ *
+ * Queries are compared after {@link SparqlQueryExecuter#normalize(String)}, a query that is not in
+ * the file causes a {@link SparqlExecutionException}.
+ */
+public class FileSparqlQueryExecuter extends SparqlQueryExecuter {
+
+    private final Map<String, List<String>> results = new HashMap<String, List<String>>();
+
+    public FileSparqlQueryExecuter(File file) throws IOException {
+        super("", file.toURI().toString());
+
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty() || line.startsWith("#"))
+                continue;
+
+            String[] queryAndUris = line.split("\t", 2);
+            List<String> uris = new ArrayList<String>();
+            if (queryAndUris.length > 1) {
+                for (String uri : queryAndUris[1].trim().split("\\s+")) {
+                    if (!uri.isEmpty())
+                        uris.add(uri.replace(SpotlightConfiguration.DEFAULT_NAMESPACE, ""));
+                }
+            }
+            results.put(normalize(queryAndUris[0]), uris);
+        }
+    }
+
+    @Override
+    public List<DBpediaResource> query(String query) throws SparqlExecutionException {
+        List<DBpediaResource> resources = new ArrayList<DBpediaResource>();
+        if (query == null) return resources;
+
+        List<String> uris = results.get(normalize(query));
+        if (uris == null)
+            throw new SparqlExecutionException(String.format("Query not found in %s: %s", sparqlUrl, query));
+
+        for (String uri : uris)
+            resources.add(new DBpediaResource(uri));
+        return resources;
+    }
+
+    @Override
+    public String update(String query) throws SparqlExecutionException {
+        throw new SparqlExecutionException("Updates are not supported by " + sparqlUrl);
+    }
+
+}
@@ -24,7 +24,14 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.util.*;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.apache.commons.httpclient.*;
 import org.dbpedia.spotlight.model.SpotlightConfiguration;
 import org.apache.commons.httpclient.methods.GetMethod;
@@ -42,6 +49,13 @@ import org.json.JSONArray;
  * Gets a list of DBpediaResources matching a given SPARQL query.
  * Will be used for filtering annotations.
  *
+ * The URIs resolved by {@link #resolve(String)} are cached by the normalized query, so that
+ * clients repeating the same restriction do not cause a request to the endpoint each time.
+ * The cache is configured with the system properties spotlight.sparql.cacheSize (maximum number
+ * of queries, default: 1000, 0 disables the cache) and spotlight.sparql.cacheTTL (seconds
+ * until a result is queried again, default: 3600). Connections to the endpoint are pooled,
+ * see spotlight.sparql.maxConnections, connectTimeout and readTimeout (in milliseconds).
+ *
  * @author PabloMendes
  *
  */
@@ -49,15 +63,42 @@ public class SparqlQueryExecuter {
 
 	private final static Logger LOG = Logger.getLogger(SparqlQueryExecuter.class);
 
-       // Create an instance of HttpClient.
-    private static HttpClient client = new HttpClient();
+    private static final long CACHE_SIZE = Long.getLong("spotlight.sparql.cacheSize", 1000L);
+    private static final long CACHE_TTL = Long.getLong("spotlight.sparql.cacheTTL", 3600L);
+
+    // Shared by all executers and request threads, connections to the endpoint are kept alive and reused.
+    private static HttpClient client = createClient();
 
     String mainGraph;
     String sparqlUrl;
 
+    private final Cache<String, Set<String>> cache;
+
     public SparqlQueryExecuter(String mainGraph, String sparqlUrl) {
         this.mainGraph = mainGraph;
         this.sparqlUrl = sparqlUrl;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(CACHE_SIZE)
+                .expireAfterWrite(CACHE_TTL, TimeUnit.SECONDS)
+                .build();
+    }
+
+    private static HttpClient createClient() {
+        int maxConnections = Integer.getInteger("spotlight.sparql.maxConnections", 20);
+        MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+        connectionManager.getParams().setDefaultMaxConnectionsPerHost(maxConnections);
+        connectionManager.getParams().setMaxTotalConnections(maxConnections);
+        connectionManager.getParams().setConnectionTimeout(Integer.getInteger("spotlight.sparql.connectTimeout", 10000));
+        connectionManager.getParams().setSoTimeout(Integer.getInteger("spotlight.sparql.readTimeout", 60000));
+        return new HttpClient(connectionManager);
+    }
+
+    /**
+     * Collapses all whitespace in the query, so that the same query is found in the cache
+     * independently of its formatting.
+     */
+    public static String normalize(String query) {
+        return query.trim().replaceAll("\\s+", " ");
     }
 
     // this is the virtuoso way. subclasses can override for other implementations
@@ -91,6 +132,37 @@ public class SparqlQueryExecuter {
         return uris;
 	}
 
+    /**
+     * Returns the URIs matching the query, from the cache if the same (normalized) query was
+     * resolved before and its result has not expired.
+     *
+     * @param query SPARQL query
+     * @return unmodifiable set of the URIs contained in any variables of the result
+     */
+    public Set<String> resolve(final String query) throws IOException, OutputException, SparqlExecutionException {
+        if (query==null) return Collections.emptySet();
+
+        try {
+            return cache.get(normalize(query), new Callable<Set<String>>() {
+                public Set<String> call() throws Exception {
+                    ImmutableSet.Builder<String> uris = ImmutableSet.builder();
+                    for (DBpediaResource resource : query(query))
+                        uris.add(resource.uri());
+                    return uris.build();
+                }
+            });
+        } catch (ExecutionException e) {
+            // query() only throws checked exceptions, unchecked ones are wrapped in an UncheckedExecutionException
+            Exception cause = (Exception) e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof OutputException) throw (OutputException) cause;
+            if (cause instanceof SparqlExecutionException) throw (SparqlExecutionException) cause;
+            throw new SparqlExecutionException(cause);
+        } catch (UncheckedExecutionException e) {
+            throw new SparqlExecutionException((Exception) e.getCause());
+        }
+    }
+
     public String update(String query) throws SparqlExecutionException {
         String response = null;
         try {
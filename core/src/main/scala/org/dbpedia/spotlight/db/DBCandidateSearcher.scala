@@ -3,6 +3,7 @@ package org.dbpedia.spotlight.db
 import model.{ResourceStore, SurfaceFormStore, CandidateMapStore}
 import org.dbpedia.spotlight.model._
 import org.dbpedia.spotlight.exceptions.SurfaceFormNotFoundException
+import org.dbpedia.spotlight.util.LatencyMetrics
 
 /**
  * A database-backed candidate searcher to retrieve candidates for a surface form.
@@ -24,7 +25,7 @@ class DBCandidateSearcher(val resStore: ResourceStore, val sfStore: SurfaceFormS
    * @param sf the surface form
    * @return
    */
-  def getCandidates(sf: SurfaceForm): Set[Candidate] = {
+  def getCandidates(sf: SurfaceForm): Set[Candidate] = LatencyMetrics.candidateLookup.time {
 
     var cands = Set[Candidate]()
 
@@ -46,6 +47,34 @@ class DBCandidateSearcher(val resStore: ResourceStore, val sfStore: SurfaceFormS
   }
 
 
+  /**
+   * Retrieves the (at most) k DBpedia Resources with the highest prior that can be confused with surface form sf.
+   * Only the returned candidates are materialized.
+   *
+   * @param sf the surface form
+   * @param k maximum number of candidates
+   * @return candidates, highest prior first
+   */
+  def getTopCandidates(sf: SurfaceForm, k: Int): Seq[Candidate] = LatencyMetrics.candidateLookup.time {
+
+    val cands = if(sf.id > 0)
+      candidateMap.getTopCandidates(sf, k)
+    else
+      try {
+        candidateMap.getTopCandidates(sfStore.getSurfaceForm(sf.name), k)
+      } catch {
+        case e: SurfaceFormNotFoundException => Seq[Candidate]()
+      }
+
+    if (cands.size == 0)
+      sfStore.getRankedSurfaceFormCandidates(sf.name).take(ADD_TOP_NORMALIZED_SFS).flatMap(p =>
+        candidateMap.getTopCandidates(p._1, k)
+      ).distinct.sortBy(-_.prior).take(k)
+    else
+      cands
+  }
+
+
   /**
    * Retrieves the number of DBpedia Resources that can be confused with surface form sf.
    *
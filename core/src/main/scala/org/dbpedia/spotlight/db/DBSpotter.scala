@@ -13,6 +13,7 @@ import opennlp.tools.namefind.RegexNameFinder
 import java.util.regex.Pattern
 import org.apache.commons.lang.StringUtils
 import org.dbpedia.spotlight.log.SpotlightLog
+import org.dbpedia.spotlight.util.LatencyMetrics
 
 abstract class DBSpotter(
  surfaceFormStore: SurfaceFormStore,
@@ -35,21 +36,28 @@ abstract class DBSpotter(
     case None => None
   }
 
-  def generateCandidates(sentence: List[Token]): Seq[Span]
+  /**
+   * Generate the candidate spans for the tokens start until end of a sentence. Spans are relative to the start of the sentence.
+   */
+  def generateCandidates(text: TokenizedText, start: Int, end: Int): Seq[Span]
 
   def extract(text: Text): java.util.List[SurfaceFormOccurrence] = {
 
     if (tokenizer != null)
       tokenizer.tokenizeMaybe(text)
 
+    val start = System.nanoTime()
+    var candidateGenerationTime = 0L
+
     var spots = ListBuffer[SurfaceFormOccurrence]()
-    val sentences: List[List[Token]] = DBSpotter.tokensToSentences(text.featureValue[List[Token]]("tokens").get)
+    val tokenizedText = TokenizedText.of(text).get
 
     //Go through all sentences
-    sentences.foreach{ sentence: List[Token] =>
-      val spans = generateCandidates(sentence)
-
-      val tokenTypes = sentence.map(_.tokenType).toArray
+    (0 until tokenizedText.sentenceCount).foreach{ sentence: Int =>
+      val sentenceStart = tokenizedText.sentenceStart(sentence)
+      val generationStart = System.nanoTime()
+      val spans = generateCandidates(tokenizedText, sentenceStart, tokenizedText.sentenceEnd(sentence))
+      candidateGenerationTime += System.nanoTime() - generationStart
 
       spans.sorted
         .foreach(chunkSpan => {
@@ -72,8 +80,8 @@ abstract class DBSpotter(
 
           tokenSeqs.foreach{
             case (startToken: Int, endToken: Int) => {
-              val startOffset = sentence(startToken).offset
-              val endOffset = sentence(endToken).offset + sentence(endToken).token.length
+              val startOffset = tokenizedText.offsets(sentenceStart + startToken)
+              val endOffset = tokenizedText.ends(sentenceStart + endToken)
 
               val spot = text.text.substring(startOffset, endOffset)
 
@@ -85,7 +93,7 @@ abstract class DBSpotter(
                 //The sub-chunk is in the dictionary, finish the processing of this chunk
                 val spotOcc = new SurfaceFormOccurrence(sfMatch.get, text, startOffset, Provenance.Annotation, spotScore(spot)._2)
                 spotOcc.setFeature(new Nominal("spot_type", chunkSpan.getType))
-                spotOcc.setFeature(new Feature("token_types", tokenTypes.slice(startToken, lastToken)))
+                spotOcc.setFeature(new Feature("token_types", tokenizedText.tokenTypes.slice(sentenceStart + startToken, sentenceStart + lastToken)))
                 spots += spotOcc
                 break()
               }
@@ -95,7 +103,10 @@ abstract class DBSpotter(
       })
     }
 
-    dropOverlappingSpots(spots)
+    val result = dropOverlappingSpots(spots)
+    LatencyMetrics.spotCandidates.record(candidateGenerationTime)
+    LatencyMetrics.spotting.recordSince(start)
+    result
   }
 
 
@@ -233,24 +244,4 @@ object DBSpotter {
       //Bias:
       1.0
     )
-
-  def tokensToSentences(allTokens: List[Token]): List[List[Token]] = {
-
-    val sentences = ListBuffer[List[Token]]()
-    val sentence = ListBuffer[Token]()
-
-    allTokens foreach { token: Token =>
-      sentence.append(token)
-
-      token.feature("end-of-sentence") match {
-        case Some(b) => {
-          sentences.append(sentence.toList)
-          sentence.clear()
-        }
-        case None =>
-      }
-    }
-
-    sentences.toList
-  }
 }
@@ -9,9 +9,9 @@ import org.dbpedia.spotlight.exceptions.{SurfaceFormNotFoundException, InputExce
 import scala.Predef._
 import breeze.linalg
 import scala.collection.JavaConversions._
-import scala.collection.mutable.ArrayBuffer
+import scala.collection.mutable
 import org.dbpedia.spotlight.log.SpotlightLog
-import org.dbpedia.spotlight.util.MathUtil
+import org.dbpedia.spotlight.util.{LatencyMetrics, MathUtil}
 
 
 /**
@@ -43,7 +43,7 @@ class DBTwoStepDisambiguator(
   val MAX_CANDIDATES = 10
 
   //maximum context window in tokens in both directions
-  val MAX_CONTEXT = 200
+  val MAX_CONTEXT = DBTwoStepDisambiguator.MAX_CONTEXT
 
 
   def bestK(paragraph: Paragraph, k: Int): Map[SurfaceFormOccurrence, List[DBpediaResourceOccurrence]] = {
@@ -56,83 +56,101 @@ class DBTwoStepDisambiguator(
     //Tokenize the text if it wasn't tokenized before:
     if (tokenizer != null) {
       SpotlightLog.info(this.getClass, "Tokenizing input text...")
-      val tokens = tokenizer.tokenize(paragraph.text)
-      paragraph.text.setFeature(new Feature("tokens", tokens))
+      paragraph.text.setFeature(new Feature(TokenizedText.FEATURE, tokenizer.tokenizeText(paragraph.text)))
     }
 
-    val sentences = DBSpotter.tokensToSentences(paragraph.text.featureValue[List[Token]]("tokens").get)
+    val start = System.nanoTime()
+    val tokenizedText = TokenizedText.of(paragraph.text).get
+
+    //Candidates are searched only once for each surface form in the paragraph:
+    val candidateCache = mutable.HashMap[(String, Int), List[Candidate]]()
 
-    if (sentences.size <= MAX_CONTEXT)
-      bestK_(paragraph, paragraph.getOccurrences().toList, sentences.flatMap(_.map(_.tokenType)), k)
+    val best = if (tokenizedText.sentenceCount <= MAX_CONTEXT)
+      bestK_(paragraph, paragraph.getOccurrences().toList, tokenizedText.tokenTypes, k, candidateCache)
     else {
       val occurrenceStack = paragraph.getOccurrences().toBuffer
-      val currentTokens = ArrayBuffer[Token]()
+      var windowStart = 0
 
-      sentences.flatMap{
-        sentence: List[Token] =>
+      //Collect the windows of the paragraph first, so that all of them share the candidate cache:
+      val windows = (0 until tokenizedText.sentenceCount).flatMap{
+        sentence: Int =>
 
-          currentTokens ++= sentence
+          val windowEnd = tokenizedText.sentenceEnd(sentence)
 
-          if (currentTokens.size >= MAX_CONTEXT || sentence.equals(sentences.last)) {
+          if (windowEnd - windowStart >= MAX_CONTEXT || sentence == tokenizedText.sentenceCount - 1) {
 
             //Take all surface form occurrences within the current token window and remove them afterwards.
-            val sliceOccs = occurrenceStack.takeWhile{ occ: SurfaceFormOccurrence => occ.textOffset <= currentTokens.last.offset}.toList
+            val lastOffset = tokenizedText.offsets(windowEnd - 1)
+            val sliceOccs = occurrenceStack.takeWhile{ occ: SurfaceFormOccurrence => occ.textOffset <= lastOffset}.toList
             occurrenceStack.remove(0, sliceOccs.size)
 
-            //Remember the tokens and clear the temporary token collection:
-            val sliceTokens = currentTokens.map(_.tokenType)
-            currentTokens.clear()
+            //Remember the tokens of the window and start the next one:
+            val sliceTokens = tokenizedText.tokenTypes.slice(windowStart, windowEnd).toSeq
+            windowStart = windowEnd
 
-            //Disambiguate all occs in the current window:
-            Some( bestK_(paragraph, sliceOccs, sliceTokens, k) )
+            Some( (sliceOccs, sliceTokens) )
           } else {
             None
           }
-      }.toList.reduce(_ ++ _)
+      }
+
+      //Disambiguate all occs window by window:
+      windows.map{ case (sliceOccs, sliceTokens) => bestK_(paragraph, sliceOccs, sliceTokens, k, candidateCache) }.reduce(_ ++ _)
     }
+
+    LatencyMetrics.disambiguation.recordSince(start)
+    best
   }
 
 
-  def bestK_(paragraph: Paragraph, occurrences: List[SurfaceFormOccurrence], tokens: Seq[TokenType], k: Int): Map[SurfaceFormOccurrence, List[DBpediaResourceOccurrence]] = {
+  def bestK_(paragraph: Paragraph, occurrences: List[SurfaceFormOccurrence], tokens: Seq[TokenType], k: Int): Map[SurfaceFormOccurrence, List[DBpediaResourceOccurrence]] =
+    bestK_(paragraph, occurrences, tokens, k, mutable.HashMap[(String, Int), List[Candidate]]())
+
+
+  /**
+   * Get the candidates for a surface form, reduced to the MAX_CANDIDATES candidates with the highest prior.
+   */
+  private def getCandidates(surfaceForm: SurfaceForm): List[Candidate] = {
+    SpotlightLog.debug(this.getClass, "Searching...")
+
+    val cands = candidateSearcher.getTopCandidates(surfaceForm, MAX_CANDIDATES).toList
+    SpotlightLog.debug(this.getClass, "# candidates for: %s = %s.", surfaceForm, cands.size)
+
+    //TODO remove verboose candidate logging again
+    SpotlightLog.debug(this.getClass, "candidates: %s", cands)
+
+    cands
+  }
+
+
+  /**
+   * Disambiguate all surface form occurrences in a window of tokens. The NIL context score and the
+   * context scores of all candidates are calculated once for the window, candidates are searched
+   * via the candidate cache, which may be shared between the windows of a paragraph.
+   */
+  def bestK_(paragraph: Paragraph, occurrences: List[SurfaceFormOccurrence], tokens: Seq[TokenType], k: Int, candidateCache: mutable.Map[(String, Int), List[Candidate]]): Map[SurfaceFormOccurrence, List[DBpediaResourceOccurrence]] = {
 
     if (occurrences.size == 0)
       return Map[SurfaceFormOccurrence, List[DBpediaResourceOccurrence]]()
 
     // step1: get candidates for all surface forms
-    var allCandidateResources = Set[DBpediaResource]()
-    val occs = occurrences.foldLeft(
-      Map[SurfaceFormOccurrence, List[Candidate]]())(
-      (acc, sfOcc) => {
-
-        SpotlightLog.debug(this.getClass, "Searching...")
-
-        val candidateRes = {
-
-          val cands = candidateSearcher.getCandidates(sfOcc.surfaceForm)
-          SpotlightLog.debug(this.getClass, "# candidates for: %s = %s.", sfOcc.surfaceForm, cands.size)
-          
-          //TODO remove verboose candidate logging again
-          SpotlightLog.debug(this.getClass, "candidates: %s", cands.toList.sortBy( -_.prior ))
-          
-          if (cands.size > MAX_CANDIDATES) {
-            SpotlightLog.debug(this.getClass, "Reducing number of candidates to %d.", MAX_CANDIDATES)
-            cands.toList.sortBy( -_.prior ).take(MAX_CANDIDATES).toSet
-          } else {
-            cands
-          }
-        }
+    val occs = occurrences.map{ sfOcc: SurfaceFormOccurrence =>
+      (sfOcc, candidateCache.getOrElseUpdate((sfOcc.surfaceForm.name, sfOcc.surfaceForm.id), getCandidates(sfOcc.surfaceForm)))
+    }
 
-        allCandidateResources ++= candidateRes.map(_.resource)
-        acc + (sfOcc -> candidateRes.toList)
-      })
+    val allCandidateResources = occs.flatMap(_._2.map(_.resource)).distinct.toArray
+    val tokensDistinct = tokens.distinct.sortBy(_.id).toArray
 
-    val tokensDistinct = tokens.distinct.sortBy(_.id)
+    // step2: query once for the window context, get scores for each candidate resource and the NIL entity
+    val scores = contextSimilarity.scoreCandidates(tokensDistinct, allCandidateResources)
+    val contextScores = allCandidateResources.zip(scores).toMap
 
-    // step2: query once for the paragraph context, get scores for each candidate resource
-    val contextScores = contextSimilarity.score(tokensDistinct, allCandidateResources)
+    val nilContextScore = contextSimilarity.nilScore(tokensDistinct)
+    val nilEntityPrior = MathUtil.ln( 1 / surfaceFormStore.getTotalAnnotatedCount.toDouble ) //surfaceFormStore.getTotalAnnotatedCount = total number of entity mentions
 
     // pick the best k for each surface form
-    occs.keys.foldLeft(Map[SurfaceFormOccurrence, List[DBpediaResourceOccurrence]]())( (acc, aSfOcc) => {
+    occs.foldLeft(Map[SurfaceFormOccurrence, List[DBpediaResourceOccurrence]]())( (acc, occAndCandidates) => {
+      val (aSfOcc, candidates) = occAndCandidates
 
       //Get the NIL entity:
       val eNIL = new DBpediaResourceOccurrence(
@@ -147,14 +165,12 @@ class DBTwoStepDisambiguator(
         case _ =>
       }
 
-      val nilContextScore = contextSimilarity.nilScore(tokensDistinct)
-
       eNIL.setFeature(new Score("P(c|e)", nilContextScore))
-      eNIL.setFeature(new Score("P(e)",   MathUtil.ln( 1 / surfaceFormStore.getTotalAnnotatedCount.toDouble ) )) //surfaceFormStore.getTotalAnnotatedCount = total number of entity mentions
+      eNIL.setFeature(new Score("P(e)",   nilEntityPrior))
       val nilEntityScore = mixture.getScore(eNIL)
 
       //Get all other entities:
-      val candOccs = occs.getOrElse(aSfOcc, List[Candidate]())
+      val candOccs = candidates
         .map{ cand: Candidate => {
         val resOcc = new DBpediaResourceOccurrence(
           "",
@@ -225,3 +241,10 @@ class DBTwoStepDisambiguator(
   def name = "Database-backed 2 Step disambiguator (%s, %s)".format(contextSimilarity.getClass.getSimpleName, mixture.toString)
 
 }
+
+object DBTwoStepDisambiguator {
+
+  //maximum context window in tokens in both directions
+  val MAX_CONTEXT = 200
+
+}
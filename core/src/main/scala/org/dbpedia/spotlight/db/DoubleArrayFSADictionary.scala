@@ -0,0 +1,147 @@
+package org.dbpedia.spotlight.db
+
+import memory.MemoryStore
+import java.util.BitSet
+
+
+/**
+ * A spotter dictionary stored as a double array over token type IDs.
+ *
+ * Every state s of the automaton has a base. The transition from s via token t is stored at
+ * position p = base(s) + t of the double array: da(2*p) holds the next state (or the initial
+ * state if there are no further transitions) and da(2*p+1) holds the state the transition
+ * belongs to and whether it is accepting (s << 1 | accepting). The transition exists if the
+ * state stored at p is s. Hence, each transition is resolved with three array reads and no
+ * search. Since next states are stored explicitly, the automaton may be minimal, i.e. states
+ * can be shared by several transitions (see [[org.dbpedia.spotlight.db.FSADictionaryBuilder]]).
+ *
+ * @author Joachim Daiber
+ */
+
+@SerialVersionUID(2002001)
+class DoubleArrayFSADictionary extends MemoryStore with SpotterDictionary {
+
+  var base: Array[Int] = null
+  var da: Array[Int] = null
+
+  def size = base.length
+
+  def transition(state: Int, token: Int): Int = {
+    val b = base(state)
+    if (b == DoubleArrayFSADictionary.NO_TRANSITIONS)
+      return FSASpotter.NO_TRANSITION
+
+    val p = b + token
+    if (p < 0 || 2 * p >= da.length)
+      return FSASpotter.NO_TRANSITION
+
+    val check = da(2 * p + 1)
+    if ((check >>> 1) != state)
+      return FSASpotter.NO_TRANSITION
+
+    (da(2 * p) << 1) | (check & 1)
+  }
+
+}
+
+object DoubleArrayFSADictionary {
+
+  //Base of a state without outgoing transitions
+  val NO_TRANSITIONS = Int.MinValue
+
+  //State of an unused position
+  val UNUSED = -1
+
+  //State IDs must fit into 30 bits, see FSASpotter:
+  val MAX_STATES = 1 << 30
+
+  /**
+   * Packs an automaton into a double array. The root is state 0, it must not be the next state of any transition.
+   *
+   * @param stateStarts the transitions of state s are stored in stateStarts(s) until stateStarts(s+1)
+   * @param tokens token of each transition
+   * @param targets next state of each transition, 0 if there are no further transitions
+   * @param accepting whether the transition is accepting
+   * @return
+   */
+  def fromAutomaton(stateStarts: Array[Int], tokens: Array[Int], targets: Array[Int], accepting: Array[Boolean]): DoubleArrayFSADictionary = {
+    val n = stateStarts.length - 1
+    if (n >= MAX_STATES)
+      throw new IllegalStateException("The spotter dictionary has too many states for a double array.")
+
+    val base = new Array[Int](n)
+    var da = new Array[Int](2 * 1024)
+    java.util.Arrays.fill(da, UNUSED)
+
+    val used = new BitSet()
+    var firstFree = 0
+
+    var s = 0
+    while (s < n) {
+      val start = stateStarts(s)
+      val end = stateStarts(s + 1)
+
+      if (start == end) {
+        base(s) = NO_TRANSITIONS
+      } else {
+        val stateTokens = java.util.Arrays.copyOfRange(tokens, start, end)
+        val order = (start until end).sortBy(tokens(_))
+        java.util.Arrays.sort(stateTokens)
+        val minToken = stateTokens(0)
+
+        //Find the first base for which the positions of all tokens are unused:
+        firstFree = used.nextClearBit(firstFree)
+        var position = firstFree
+        var b = position - minToken
+        while (stateTokens.exists(t => used.get(b + t))) {
+          position = used.nextClearBit(position + 1)
+          b = position - minToken
+        }
+
+        val last = b.toLong + stateTokens.last
+        if (2 * last + 1 >= Int.MaxValue)
+          throw new IllegalStateException("The spotter dictionary is too large for a double array.")
+
+        if (2 * last + 2 > da.length) {
+          val oldLength = da.length
+          da = java.util.Arrays.copyOf(da, math.max(2 * last + 2, math.min(2L * oldLength, Int.MaxValue - 8L)).toInt)
+          java.util.Arrays.fill(da, oldLength, da.length, UNUSED)
+        }
+
+        base(s) = b
+        order.foreach { j: Int =>
+          val p = b + tokens(j)
+          used.set(p)
+          da(2 * p) = targets(j)
+          da(2 * p + 1) = (s << 1) | (if (accepting(j)) 1 else 0)
+        }
+      }
+
+      s += 1
+    }
+
+    val d = new DoubleArrayFSADictionary()
+    d.base = base
+    d.da = java.util.Arrays.copyOf(da, 2 * used.length())
+    d
+  }
+
+  /**
+   * Packs a trie, whose states are identified by their index, into a double array. The root is state 0.
+   *
+   * @param transitions transitions to the next state for each state of the trie
+   * @param accepting accepting tokens for each state of the trie
+   * @return
+   */
+  def fromTrie(transitions: IndexedSeq[collection.Map[Int, Int]], accepting: IndexedSeq[collection.Set[Int]]): DoubleArrayFSADictionary = {
+    val stateStarts = new Array[Int](transitions.size + 1)
+    val edges = (0 until transitions.size).flatMap { s: Int =>
+      val stateTokens = (transitions(s).keySet ++ accepting(s)).toArray.sorted
+      stateStarts(s + 1) = stateStarts(s) + stateTokens.length
+      stateTokens.map(t => (t, transitions(s).getOrElse(t, 0), accepting(s).contains(t)))
+    }
+
+    fromAutomaton(stateStarts, edges.map(_._1).toArray, edges.map(_._2).toArray, edges.map(_._3).toArray)
+  }
+
+}
@@ -0,0 +1,283 @@
+package org.dbpedia.spotlight.db
+
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap
+import java.io._
+import java.util.{Comparator, PriorityQueue}
+
+
+/**
+ * Builds a minimal acyclic automaton over token type ID sequences incrementally from sorted input
+ * (J. Daciuk, S. Mihov, B. Watson, R. Watson: Incremental construction of minimal acyclic finite-state
+ * automata. Computational Linguistics, 26(1), 2000).
+ *
+ * Only the states along the path of the last added sequence are mutable, all other states are
+ * registered and stored in primitive arrays. Equivalent states are merged as soon as they are
+ * registered, hence memory usage is proportional to the minimal automaton.
+ *
+ * Sequences must be added in lexicographic order (see [[org.dbpedia.spotlight.db.FSADictionaryBuilder.compare]]).
+ */
+
+class FSADictionaryBuilder {
+
+  //Registered states, their edges are edgeTokens/edgeTargets(edgeOffsets(i) until edgeOffsets(i+1)):
+  private val stateFinal = new IntArrayList()
+  private val edgeOffsets = new IntArrayList()
+  private val edgeTokens = new IntArrayList()
+  private val edgeTargets = new IntArrayList()
+
+  private val register = new Object2IntOpenHashMap[FSADictionaryBuilder.StateSignature]()
+  register.defaultReturnValue(-1)
+
+  private var previous: Array[Int] = Array[Int]()
+
+  private var count = 0
+
+  //The root is state 0, its edges stay in the mutable root state until the dictionary is built:
+  stateFinal.add(0)
+  edgeOffsets.add(0)
+  edgeOffsets.add(0)
+
+  //Mutable states along the path of the last sequence, the last edge of each leads to the next state:
+  private val root = new FSADictionaryBuilder.MutableState()
+  private val states = new java.util.ArrayList[FSADictionaryBuilder.MutableState]()
+  states.add(root)
+
+  def size: Int = count
+
+  /**
+   * Add a sequence of token type IDs. Sequences must be added in sorted order, duplicates are ignored.
+   *
+   * @param sequence token type IDs of a surface form
+   */
+  def add(sequence: Array[Int]) {
+    if (sequence.length == 0)
+      return
+
+    val c = FSADictionaryBuilder.compare(previous, sequence)
+    if (c == 0)
+      return
+    if (c > 0)
+      throw new IllegalArgumentException("Sequences must be added in sorted order.")
+
+    //Length of the common prefix with the previous sequence:
+    var prefix = 0
+    while (prefix < previous.length && prefix < sequence.length && previous(prefix) == sequence(prefix))
+      prefix += 1
+
+    //States behind the common prefix will not change anymore:
+    freeze(prefix)
+
+    var d = prefix
+    while (d < sequence.length) {
+      val next = new FSADictionaryBuilder.MutableState()
+      states.get(d).tokens.add(sequence(d))
+      states.get(d).targets.add(-1)
+      states.add(next)
+      d += 1
+    }
+    states.get(sequence.length).isFinal = true
+
+    previous = sequence
+    count += 1
+  }
+
+  /**
+   * Register all mutable states deeper than depth, replacing them with equivalent registered states.
+   */
+  private def freeze(depth: Int) {
+    var d = states.size - 1
+    while (d > depth) {
+      val id = registerState(states.get(d))
+      val parent = states.get(d - 1)
+      parent.targets.set(parent.targets.size - 1, id)
+      states.remove(d)
+      d -= 1
+    }
+  }
+
+  private def registerState(state: FSADictionaryBuilder.MutableState): Int = {
+    val signature = new FSADictionaryBuilder.StateSignature(state)
+    val existing = register.getInt(signature)
+
+    if (existing >= 0) {
+      existing
+    } else {
+      val id = stateFinal.size
+      stateFinal.add(if (state.isFinal) 1 else 0)
+
+      var i = 0
+      while (i < state.tokens.size) {
+        edgeTokens.add(state.tokens.getInt(i))
+        edgeTargets.add(state.targets.getInt(i))
+        i += 1
+      }
+      edgeOffsets.add(edgeTokens.size)
+
+      register.put(signature, id)
+      id
+    }
+  }
+
+  /**
+   * Build the dictionary from all added sequences.
+   */
+  def build(): DoubleArrayFSADictionary = {
+    freeze(0)
+
+    val n = stateFinal.size
+    val stateStarts = new Array[Int](n + 1)
+    val tokens = new Array[Int](edgeTokens.size + root.tokens.size)
+    val targets = new Array[Int](tokens.length)
+    val accepting = new Array[Boolean](tokens.length)
+
+    def hasEdges(state: Int) = edgeOffsets.getInt(state + 1) > edgeOffsets.getInt(state)
+
+    def addEdge(j: Int, token: Int, target: Int) {
+      tokens(j) = token
+      accepting(j) = stateFinal.getInt(target) == 1
+      targets(j) = if (hasEdges(target)) target else 0
+    }
+
+    //Edges of the root first, then the edges of all registered states:
+    var j = 0
+    while (j < root.tokens.size) {
+      addEdge(j, root.tokens.getInt(j), root.targets.getInt(j))
+      j += 1
+    }
+
+    var state = 1
+    while (state < n) {
+      stateStarts(state) = j
+      var e = edgeOffsets.getInt(state)
+      while (e < edgeOffsets.getInt(state + 1)) {
+        addEdge(j, edgeTokens.getInt(e), edgeTargets.getInt(e))
+        j += 1
+        e += 1
+      }
+      state += 1
+    }
+    stateStarts(n) = j
+
+    DoubleArrayFSADictionary.fromAutomaton(stateStarts, tokens, targets, accepting)
+  }
+
+}
+
+
+object FSADictionaryBuilder {
+
+  class MutableState {
+    val tokens = new IntArrayList()
+    val targets = new IntArrayList()
+    var isFinal = false
+  }
+
+  /**
+   * The right language of a registered state is determined by its finality and its edges.
+   */
+  class StateSignature(state: MutableState) {
+    val signature: Array[Int] = {
+      val s = new Array[Int](1 + 2 * state.tokens.size)
+      s(0) = if (state.isFinal) 1 else 0
+      var i = 0
+      while (i < state.tokens.size) {
+        s(1 + 2 * i) = state.tokens.getInt(i)
+        s(2 + 2 * i) = state.targets.getInt(i)
+        i += 1
+      }
+      s
+    }
+
+    override val hashCode: Int = java.util.Arrays.hashCode(signature)
+
+    override def equals(obj: Any): Boolean = obj match {
+      case that: StateSignature => java.util.Arrays.equals(signature, that.signature)
+      case _ => false
+    }
+  }
+
+  /**
+   * Lexicographic order of token type ID sequences, a sequence comes before its extensions.
+   */
+  def compare(a: Array[Int], b: Array[Int]): Int = {
+    var i = 0
+    while (i < a.length && i < b.length) {
+      if (a(i) != b(i))
+        return if (a(i) < b(i)) -1 else 1
+      i += 1
+    }
+    a.length - b.length
+  }
+
+  val sequenceOrdering = new Ordering[Array[Int]] {
+    def compare(a: Array[Int], b: Array[Int]): Int = FSADictionaryBuilder.compare(a, b)
+  }
+
+
+  /**
+   * Sort a chunk of sequences and write it to a temporary run file.
+   */
+  def writeRun(sequences: Seq[Array[Int]]): File = {
+    val file = File.createTempFile("fsa_run", ".bin")
+    file.deleteOnExit()
+
+    val out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))
+    sequences.sorted(sequenceOrdering).foreach { sequence: Array[Int] =>
+      out.writeInt(sequence.length)
+      sequence.foreach(out.writeInt(_))
+    }
+    out.writeInt(-1)
+    out.close()
+
+    file
+  }
+
+  private class RunReader(val file: File) {
+    private val in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))
+    var current: Array[Int] = null
+
+    def advance(): Boolean = {
+      val length = in.readInt()
+      if (length < 0) {
+        in.close()
+        file.delete()
+        current = null
+        false
+      } else {
+        current = new Array[Int](length)
+        var i = 0
+        while (i < length) {
+          current(i) = in.readInt()
+          i += 1
+        }
+        true
+      }
+    }
+  }
+
+  /**
+   * Merge sorted run files and add their sequences to the builder in sorted order.
+   * The run files are deleted afterwards.
+   */
+  def mergeRuns(runs: Seq[File], builder: FSADictionaryBuilder) {
+    val queue = new PriorityQueue[RunReader](math.max(runs.size, 1), new Comparator[RunReader] {
+      def compare(a: RunReader, b: RunReader): Int = FSADictionaryBuilder.compare(a.current, b.current)
+    })
+
+    runs.foreach { run: File =>
+      val reader = new RunReader(run)
+      if (reader.advance())
+        queue.add(reader)
+    }
+
+    while (!queue.isEmpty) {
+      val reader = queue.poll()
+      builder.add(reader.current)
+
+      if (reader.advance())
+        queue.add(reader)
+    }
+  }
+
+}
@@ -4,8 +4,6 @@ import memory.MemoryStore
 import org.dbpedia.spotlight.model._
 import model.{TextTokenizer, StringTokenizer, SurfaceFormStore}
 import opennlp.tools.util.Span
-import collection.mutable.ArrayBuffer
-import collection.mutable.Map
 import tokenize.LanguageIndependentTokenizer
 
 
@@ -14,36 +12,37 @@ import tokenize.LanguageIndependentTokenizer
  */
 
 class FSASpotter(
-  fsaDictionary: FSADictionary,
+  fsaDictionary: SpotterDictionary,
   surfaceFormStore: SurfaceFormStore,
   spotFeatureWeights: Option[Seq[Double]],
   stopwords: Set[String]
 ) extends DBSpotter(surfaceFormStore, spotFeatureWeights, stopwords) {
 
-  def generateCandidates(sentence: List[Token]): Seq[Span] = {
+  def generateCandidates(text: TokenizedText, start: Int, end: Int): Seq[Span] = {
 
-    var spans = findUppercaseSequences(sentence.map(_.token).toArray)
+    var spans = findUppercaseSequences(text.tokens(start, end))
 
-    val ids = sentence.map(_.tokenType.id)
-    sentence.zipWithIndex.foreach {
-      case (t: Token, i: Int) => {
+    val ids = text.tokenTypeIds
 
-        var currentState = FSASpotter.INITIAL_STATE
-        var j = i
+    var i = start
+    while (i < end) {
+      var currentState = FSASpotter.INITIAL_STATE
+      var j = i
 
-        do {
-          //Get the transition for the next token:
-          val (endState, nextState) = fsaDictionary.next(currentState, ids(j))
+      do {
+        //Get the transition for the next token:
+        val transition = fsaDictionary.transition(currentState, ids(j))
 
-          //Add a span if this is a possible spot:
-          if (endState == FSASpotter.ACCEPTING_STATE)
-            spans :+= new Span(i, j+1, "m")
+        //Add a span if this is a possible spot:
+        if (FSASpotter.isAccepting(transition))
+          spans :+= new Span(i - start, j+1 - start, "m")
 
-          //Keep traversing the FSA until a rejecting state or the end of the sentence:
-          currentState = nextState
-          j += 1
-        } while ( currentState != FSASpotter.REJECTING_STATE && j < sentence.length )
-      }
+        //Keep traversing the FSA until a rejecting state or the end of the sentence:
+        currentState = FSASpotter.nextState(transition)
+        j += 1
+      } while ( currentState != FSASpotter.INITIAL_STATE && j < end )
+
+      i += 1
     }
 
     spans
@@ -70,83 +69,70 @@ object FSASpotter {
   //State ID for None
   val REJECTING_STATE = -2
 
-  def buildDictionary(sfStore: SurfaceFormStore, tokenizer: TextTokenizer): FSADictionary = {
-
-    //Temporary FSA DSs:
-    val transitions: ArrayBuffer[Map[Int, Int]] = ArrayBuffer[Map[Int, Int]]()
-    val transitionsToX: ArrayBuffer[Set[Int]] = ArrayBuffer[Set[Int]]()
-    transitions.append( Map[Int, Int]() )
-    transitionsToX.append(Set[Int]())
-
-    //Get the next state given token during training:
-    def nextTrain(state: Int, token: Int): Option[Int] = transitions(state).get(token)
-
-    //Add transition to nextState
-    def addTransition(state: Int, token: Int, nextState: Int) {
-      if (nextState == ACCEPTING_STATE)
-        transitionsToX(state) += token
-      else
-        transitions(state).put(token, nextState)
-    }
-
-    //Add transition to a new state
-    def addNewTransition(state: Int, token: Int): Int = {
-      if (nextTrain(state, token).isDefined) {
-        nextTrain(state, token).get
-      } else {
-        transitions.append( Map[Int, Int]() )
-        transitionsToX.append(Set[Int]())
-
-        addTransition(state, token, transitions.size-1)
-        transitions.size-1
-      }
-    }
-
-    var z = 0
-
-    System.err.println("Tokenizing SFs...")
-    sfStore.iterateSurfaceForms.filter(_.annotationProbability >= 0.1).grouped(100000).toList.par.flatMap(_.map{
-      sf: SurfaceForm =>
-        //Tokenize all SFs first
-        ( sf, tokenizer.tokenize(new Text(sf.name)) )
-    }).seq.foreach{
-      case (sf: SurfaceForm, tokens: Seq[Token]) if tokens.size > 0 => {
+  /*
+   * Transitions of a SpotterDictionary are encoded in a single int: the next state is stored in the
+   * upper 31 bits, the lowest bit is set if the transition is accepting. The initial state is never the
+   * target of a transition, hence a next state of INITIAL_STATE means that there are no further transitions.
+   */
+  val NO_TRANSITION = 0
 
-        z+=1
-        if ((z % 100000) == 0)
-          System.err.println("Processed %d SFs.".format(z))
+  def isAccepting(transition: Int): Boolean = (transition & 1) != 0
 
-        val ids = tokens.map(_.tokenType.id).toArray
+  def nextState(transition: Int): Int = transition >>> 1
 
-        //For each token in the SF, add the transitions to the FSA:
-        var currentState = INITIAL_STATE
-        if (ids.size > 1)
-          (0 until ids.size-1).foreach { j: Int =>
-            currentState = addNewTransition(currentState, ids(j))
-          }
+  //Number of surface forms per sorted run:
+  val RUN_SIZE = 100000
 
-        addTransition(currentState, ids.last, ACCEPTING_STATE)
-      }
-      case _ =>
-    }
+  /**
+   * Build the spotter dictionary for all surface forms with an annotation probability >= 0.1.
+   *
+   * The tokenized surface forms are sorted in runs of RUN_SIZE in parallel and written to temporary files.
+   * The runs are merged and the minimal automaton is built incrementally from the merged sequences,
+   * so that only a single run per thread and the minimal automaton are kept in memory.
+   *
+   * @param sfStore the surface form store
+   * @param tokenizer tokenizer for the surface forms
+   * @return
+   */
+  def buildDictionary(sfStore: SurfaceFormStore, tokenizer: TextTokenizer): DoubleArrayFSADictionary = {
+
+    System.err.println("Tokenizing and sorting SFs...")
+    val runs = sfStore.iterateSurfaceForms.filter(_.annotationProbability >= 0.1).grouped(RUN_SIZE).toList.par.map{
+      sfs: Seq[SurfaceForm] =>
+        FSADictionaryBuilder.writeRun(
+          sfs.map( sf => tokenizer.tokenizeText(new Text(sf.name)).tokenTypeIds ).filter(_.length > 0)
+        )
+    }.seq
+    System.err.println("Sorted %d runs.".format(runs.size))
+
+    val builder = new FSADictionaryBuilder()
+    FSADictionaryBuilder.mergeRuns(runs, builder)
+    System.err.println("Processed %d SFs.".format(builder.size))
+
+    builder.build()
+  }
 
-    val d = new FSADictionary()
+}
 
-    //Convert the temporary transition storage to arrays:
-    val pairs = transitions.zip(transitionsToX).map{ case (ts: Map[Int, Int], es: Set[Int]) =>
-      (ts.iterator ++ es.map{ t: Int => (t, ACCEPTING_STATE) }).toList.sortBy(p => (p._1, p._2))
-    }
 
-    d.transitionsTokens = pairs.map(_.map(_._1).toArray).toArray
-    d.transitionsStates = pairs.map(_.map(_._2).toArray).toArray
+/**
+ * A dictionary of surface forms as a finite state automaton over token type IDs, used by the [[org.dbpedia.spotlight.db.FSASpotter]].
+ */
+trait SpotterDictionary {
 
-    d
-  }
+  /**
+   * Returns the transition from the state via the token, encoded as described in [[org.dbpedia.spotlight.db.FSASpotter]].
+   *
+   * @param state the current state
+   * @param token the token type ID
+   * @return
+   */
+  def transition(state: Int, token: Int): Int
 
 }
 
 @SerialVersionUID(2001001)
-class FSADictionary extends MemoryStore {
+class FSADictionary extends MemoryStore with SpotterDictionary {
 
   var transitionsTokens: Array[Array[Int]] = null
   var transitionsStates: Array[Array[Int]] = null
@@ -176,6 +162,23 @@ class FSADictionary extends MemoryStore {
     }
   }
 
+  def transition(state: Int, token: Int): Int = {
+    val i = java.util.Arrays.binarySearch(transitionsTokens(state), token)
+
+    if(i < 0) {
+      FSASpotter.NO_TRANSITION
+    } else {
+
+      if (transitionsTokens(state).length > i+1 && transitionsTokens(state)(i+1) == token)
+        (transitionsStates(state)(i+1) << 1) | 1
+      else if (transitionsStates(state)(i) != FSASpotter.ACCEPTING_STATE)
+        transitionsStates(state)(i) << 1
+      else
+        1
+
+    }
+  }
+
   def size = transitionsStates.size
 
 }
@@ -7,6 +7,7 @@ import opennlp.tools.namefind.{RegexNameFinder, TokenNameFinderModel, NameFinder
 import opennlp.tools.util.Span
 import java.util.regex.Pattern
 import scala.Some
+import org.dbpedia.spotlight.util.OpenNLPMetrics
 
 
 /**
@@ -16,6 +17,9 @@ import scala.Some
  *
  * This is similar to OpenNLPNGramSpotter but a bit simpler and uses a dictionary of known surface forms.
  *
+ * The spotter is thread-safe: the chunker and NE models are loaded once and shared, each thread
+ * uses its own ChunkerME and NameFinderME instances for them.
+ *
  */
 
 class OpenNLPSpotter(
@@ -28,35 +32,39 @@ class OpenNLPSpotter(
   nnTag: String = "NN"
 ) extends DBSpotter(surfaceFormStore, spotFeatureWeights, stopwords) {
 
-  val chunker = chunkerModel match {
-    case Some(m) => Some(new ChunkerME(m))
-    case None => None
+  private val chunker = new ThreadLocal[Option[ChunkerME]] {
+    override def initialValue() = chunkerModel match {
+      case Some(m) => {
+        OpenNLPMetrics.created("chunker")
+        Some(new ChunkerME(m))
+      }
+      case None => None
+    }
   }
 
-  val ners = nerModels.map{ m: TokenNameFinderModel =>
-    new NameFinderME(m)
+  private val ners = new ThreadLocal[List[NameFinderME]] {
+    override def initialValue() = nerModels.map{ m: TokenNameFinderModel =>
+      OpenNLPMetrics.created("name_finder")
+      new NameFinderME(m)
+    }
   }
 
-  def generateCandidates(sentence: List[Token]): Seq[Span] = {
+  def generateCandidates(text: TokenizedText, start: Int, end: Int): Seq[Span] = {
 
-    val tokens = sentence.map(_.token).toArray
+    val tokens = text.tokens(start, end)
 
     var spans = findUppercaseSequences(tokens)
 
-    chunker match {
+    chunker.get() match {
       case Some(c) => {
-        val tags = sentence.map(_.featureValue[String]("pos").get).toArray
-        this.synchronized {
-          spans ++= c.chunkAsSpans(tokens, tags).filter(chunkSpan => phraseTags.contains(chunkSpan.getType))
-        }
+        val tags = text.posTags(start, end)
+        spans ++= c.chunkAsSpans(tokens, tags).filter(chunkSpan => phraseTags.contains(chunkSpan.getType))
       }
       case None =>
     }
 
-    if (!ners.isEmpty)
-      this.synchronized {
-        spans ++= ners.flatMap(_.find(tokens))
-      }
+    if (!nerModels.isEmpty)
+      spans ++= ners.get().flatMap(_.find(tokens))
 
     spans
   }
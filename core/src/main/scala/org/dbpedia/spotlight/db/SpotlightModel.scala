@@ -1,11 +1,11 @@
 package org.dbpedia.spotlight.db
 
-import concurrent.{TokenizerWrapper, SpotterWrapper}
-import org.dbpedia.spotlight.db.memory.{MemoryContextStore, MemoryStore}
+import org.dbpedia.spotlight.db.memory.MemoryStore
+import mmap.{MMapContextStore, MMapCandidateMapStore, MMapResourceStore, MMapSurfaceFormStore}
 import model._
-import opennlp.tools.tokenize.{TokenizerModel, TokenizerME}
-import opennlp.tools.sentdetect.{SentenceModel, SentenceDetectorME}
-import opennlp.tools.postag.{POSModel, POSTaggerME}
+import opennlp.tools.tokenize.TokenizerModel
+import opennlp.tools.sentdetect.SentenceModel
+import opennlp.tools.postag.POSModel
 import org.dbpedia.spotlight.disambiguate.mixtures.UnweightedMixture
 import org.dbpedia.spotlight.db.similarity.{NoContextSimilarity, GenerativeContextSimilarity, ContextSimilarity}
 import scala.collection.JavaConverters._
@@ -22,6 +22,7 @@ import stem.SnowballStemmer
 import tokenize.{OpenNLPTokenizer, LanguageIndependentTokenizer}
 import org.dbpedia.spotlight.exceptions.ConfigurationException
 import org.dbpedia.spotlight.util.MathUtil
+import org.dbpedia.spotlight.log.SpotlightLog
 
 
 class SpotlightModel(val tokenizer: TextTokenizer,
@@ -37,27 +38,40 @@ object SpotlightModel {
   def storesFromFolder(modelFolder: File): (TokenTypeStore, SurfaceFormStore, ResourceStore, CandidateMapStore, ContextStore) = {
     val modelDataFolder = new File(modelFolder, "model")
 
-    List(
-      new File(modelDataFolder, "tokens.mem"),
-      new File(modelDataFolder, "sf.mem"),
-      new File(modelDataFolder, "res.mem"),
-      new File(modelDataFolder, "candmap.mem")
-    ).foreach {
-      modelFile: File =>
-        if (!modelFile.exists())
-          throw new IOException("Invalid Spotlight model folder: Could not read required file %s in %s.".format(modelFile.getName, modelFile.getPath))
+    //Stores in the memory-mapped format (see MMapStoreConverter) are preferred over the Kryo-serialized ones:
+    def mmapFolder(name: String): Option[File] = Some(new File(modelDataFolder, name + ".mmap")).filter(_.isDirectory)
+    def mem(name: String): File = new File(modelDataFolder, name + ".mem")
+
+    List("tokens", "sf", "res", "candmap").foreach {
+      name: String =>
+        if (!mem(name).exists() && mmapFolder(name).isEmpty)
+          throw new IOException("Invalid Spotlight model folder: Could not read required file %s in %s.".format(mem(name).getName, mem(name).getPath))
+    }
+
+    val quantizedCountsStore = MemoryStore.loadQuantizedCountStore(new FileInputStream(mem("quantized_counts")))
+
+    val tokenTypeStore = MemoryStore.loadTokenTypeStore(new FileInputStream(mem("tokens")))
+
+    val sfStore = mmapFolder("sf") match {
+      case Some(folder) => new MMapSurfaceFormStore(folder, quantizedCountsStore)
+      case None => MemoryStore.loadSurfaceFormStore(new FileInputStream(mem("sf")), quantizedCountsStore)
+    }
+
+    val resStore = mmapFolder("res") match {
+      case Some(folder) => new MMapResourceStore(folder, quantizedCountsStore)
+      case None => MemoryStore.loadResourceStore(new FileInputStream(mem("res")), quantizedCountsStore)
     }
 
-    val quantizedCountsStore = MemoryStore.loadQuantizedCountStore(new FileInputStream(new File(modelDataFolder, "quantized_counts.mem")))
+    val candMapStore = mmapFolder("candmap") match {
+      case Some(folder) => new MMapCandidateMapStore(folder, resStore, quantizedCountsStore)
+      case None => MemoryStore.loadCandidateMapStore(new FileInputStream(mem("candmap")), resStore, quantizedCountsStore)
+    }
 
-    val tokenTypeStore = MemoryStore.loadTokenTypeStore(new FileInputStream(new File(modelDataFolder, "tokens.mem")))
-    val sfStore = MemoryStore.loadSurfaceFormStore(new FileInputStream(new File(modelDataFolder, "sf.mem")), quantizedCountsStore)
-    val resStore = MemoryStore.loadResourceStore(new FileInputStream(new File(modelDataFolder, "res.mem")), quantizedCountsStore)
-    val candMapStore = MemoryStore.loadCandidateMapStore(new FileInputStream(new File(modelDataFolder, "candmap.mem")), resStore, quantizedCountsStore)
-    val contextStore = if (new File(modelDataFolder, "context.mem").exists())
-      MemoryStore.loadContextStore(new FileInputStream(new File(modelDataFolder, "context.mem")), tokenTypeStore, quantizedCountsStore)
-    else
-      null
+    val contextStore: ContextStore = mmapFolder("context") match {
+      case Some(folder) => new MMapContextStore(folder, tokenTypeStore, quantizedCountsStore)
+      case None if mem("context").exists() => MemoryStore.loadContextStore(new FileInputStream(mem("context")), tokenTypeStore, quantizedCountsStore)
+      case None => null
+    }
 
     (tokenTypeStore, sfStore, resStore, candMapStore, contextStore)
   }
@@ -77,21 +91,23 @@ object SpotlightModel {
     if (modelVersion < supportedVersion)
       throw new ConfigurationException("Incompatible model version %s. This version of DBpedia Spotlight requires models of version 1.0 or newer. Please download a current model from http://spotlight.sztaki.hu/downloads/.".format(modelVersion))
 
+    //The OpenNLP components are no longer pooled, each thread creates its own instances (see OpenNLPMetrics):
+    List("opennlp_parallel", "opennlp_pool_wait").filter(properties.containsKey(_)).foreach{ p: String =>
+      SpotlightLog.warn(this.getClass, "The property %s is ignored, each thread uses its own instances of the OpenNLP components.", p)
+    }
+
 
-    //Load the stemmer from the model file:
-    def stemmer(): Stemmer = properties.getProperty("stemmer") match {
-      case s: String if s equals "None" => null
+    //Load the stemmer from the model file, it is thread-safe and shared by all tokenizers:
+    val stemmer: Stemmer = properties.getProperty("stemmer") match {
+      case s: String if s equals "None" => new Stemmer()
       case s: String => new SnowballStemmer(s)
     }
 
     def contextSimilarity(): ContextSimilarity = contextStore match {
-      case store:MemoryContextStore => new GenerativeContextSimilarity(tokenTypeStore, contextStore)
+      case store: ContextStore => new GenerativeContextSimilarity(tokenTypeStore, contextStore)
       case _ => new NoContextSimilarity(MathUtil.ln(1.0))
     }
 
-    val c = properties.getProperty("opennlp_parallel", Runtime.getRuntime.availableProcessors().toString).toInt
-    val cores = (1 to c)
-
     val tokenizer: TextTokenizer = if(new File(modelFolder, "opennlp").exists()) {
 
       //Create the tokenizer:
@@ -99,23 +115,19 @@ object SpotlightModel {
       val tokenizerModel = new TokenizerModel(new FileInputStream(new File(modelFolder, "opennlp/token.bin")))
       val sentenceModel = new SentenceModel(new FileInputStream(new File(modelFolder, "opennlp/sent.bin")))
 
-      def createTokenizer() = new OpenNLPTokenizer(
-        new TokenizerME(tokenizerModel),
+      //The OpenNLP tokenizer is thread-safe, all threads share one instance and its models:
+      new OpenNLPTokenizer(
+        tokenizerModel,
         stopwords,
-        stemmer(),
-        new SentenceDetectorME(sentenceModel),
-        if (posTagger.exists()) new POSTaggerME(new POSModel(new FileInputStream(posTagger))) else null,
+        stemmer,
+        sentenceModel,
+        if (posTagger.exists()) Some(new POSModel(new FileInputStream(posTagger))) else None,
         tokenTypeStore
       ).asInstanceOf[TextTokenizer]
 
-      if(cores.size == 1)
-        createTokenizer()
-      else
-        new TokenizerWrapper(cores.map(_ => createTokenizer())).asInstanceOf[TextTokenizer]
-
     } else {
       val locale = properties.getProperty("locale").split("_")
-      new LanguageIndependentTokenizer(stopwords, stemmer(), new Locale(locale(0), locale(1)), tokenTypeStore)
+      new LanguageIndependentTokenizer(stopwords, stemmer, new Locale(locale(0), locale(1)), tokenTypeStore)
     }
 
     val searcher      = new DBCandidateSearcher(resStore, sfStore, candMapStore)
@@ -142,7 +154,8 @@ object SpotlightModel {
       else
         None
 
-      def createSpotter() = new OpenNLPSpotter(
+      //The OpenNLP spotter is thread-safe, all threads share one instance:
+      new OpenNLPSpotter(
         chunkerModel,
         nerModels,
         sfStore,
@@ -150,13 +163,6 @@ object SpotlightModel {
         Some(loadSpotterThresholds(new File(modelFolder, "spotter_thresholds.txt")))
       ).asInstanceOf[Spotter]
 
-      if(cores.size == 1)
-        createSpotter()
-      else
-        new SpotterWrapper(
-          cores.map(_ => createSpotter())
-        ).asInstanceOf[Spotter]
-
     } else {
       val dict = MemoryStore.loadFSADictionary(new FileInputStream(new File(modelFolder, "fsa_dict.mem")))
 
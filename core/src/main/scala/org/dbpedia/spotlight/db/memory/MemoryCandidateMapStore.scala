@@ -2,10 +2,12 @@ package org.dbpedia.spotlight.db.memory
 
 import org.dbpedia.spotlight.model.{Candidate, SurfaceForm}
 import org.dbpedia.spotlight.db.model.{ResourceStore, CandidateMapStore}
+import org.dbpedia.spotlight.log.SpotlightLog
 import scala.Array
 
 /**
- *
+ * The candidates of each surface form are sorted by their count (highest first),
+ * so that the top candidates can be taken without sorting.
  *
  * @author Joachim Daiber
  */
@@ -23,13 +25,102 @@ class MemoryCandidateMapStore
   @transient
   var resourceStore: ResourceStore = null
 
-  def getCandidates(surfaceform: SurfaceForm): Set[Candidate] = {
-    try {
-      candidates(surfaceform.id).zip(candidateCounts(surfaceform.id)).map {
-            case (resID, count) => new Candidate(surfaceform, resourceStore.getResource(resID), qc(count))
-      }.toSet
-    } catch {
-      case e: NullPointerException => Set[Candidate]()
+  /**
+   * Models created before the candidates were sorted by the indexer are sorted once after loading.
+   */
+  override def loaded() {
+    var sorted = 0
+    var i = 0
+    while (i < candidates.length) {
+      if (sortCandidates(i))
+        sorted += 1
+      i += 1
+    }
+
+    if (sorted > 0)
+      SpotlightLog.info(this.getClass, "Sorted the candidates of %d surface forms by count.", sorted)
+  }
+
+  /**
+   * Sort the candidates of the surface form by their count, highest count first.
+   *
+   * @return true if the candidates were not sorted before
+   */
+  def sortCandidates(sfID: Int): Boolean = {
+    val ids = candidates(sfID)
+    val counts = candidateCounts(sfID)
+
+    if (ids == null)
+      return false
+
+    var j = 1
+    while (j < ids.length && qc(counts(j-1)) >= qc(counts(j)))
+      j += 1
+    if (j >= ids.length)
+      return false
+
+    //Sort the positions by count (highest first) and position, packed into a long:
+    val order = new Array[Long](ids.length)
+    j = 0
+    while (j < ids.length) {
+      order(j) = ((Int.MaxValue - qc(counts(j))).toLong << 32) | j
+      j += 1
+    }
+    java.util.Arrays.sort(order)
+
+    val sortedIDs = new Array[Int](ids.length)
+    val sortedCounts = new Array[Short](ids.length)
+    j = 0
+    while (j < ids.length) {
+      val k = order(j).toInt
+      sortedIDs(j) = ids(k)
+      sortedCounts(j) = counts(k)
+      j += 1
+    }
+
+    candidates(sfID) = sortedIDs
+    candidateCounts(sfID) = sortedCounts
+    true
+  }
+
+  private def hasCandidates(surfaceform: SurfaceForm): Boolean =
+    surfaceform.id >= 0 && surfaceform.id < candidates.length && candidates(surfaceform.id) != null
+
+  def getCandidates(surfaceform: SurfaceForm): Set[Candidate] = getTopCandidates(surfaceform, Int.MaxValue).toSet
+
+  /**
+   * Returns the resource ids and counts of the (at most) k candidates of the surface form with the highest counts.
+   *
+   * @param surfaceform the surface form object
+   * @param k maximum number of candidates
+   * @return resource ids and counts of the candidates, highest count first
+   */
+  def getTopCandidateIDs(surfaceform: SurfaceForm, k: Int): (Array[Int], Array[Int]) = {
+    if (!hasCandidates(surfaceform))
+      return (Array[Int](), Array[Int]())
+
+    val ids = candidates(surfaceform.id)
+    val counts = candidateCounts(surfaceform.id)
+    val n = math.min(k, ids.length)
+
+    val topIDs = new Array[Int](n)
+    val topCounts = new Array[Int](n)
+    var j = 0
+    while (j < n) {
+      topIDs(j) = ids(j)
+      topCounts(j) = qc(counts(j))
+      j += 1
+    }
+
+    (topIDs, topCounts)
+  }
+
+  override def getTopCandidates(surfaceform: SurfaceForm, k: Int): Seq[Candidate] = {
+    val (ids, counts) = getTopCandidateIDs(surfaceform, k)
+
+    //Only the top candidates are materialized as DBpedia resources:
+    (0 until ids.length).map { j: Int =>
+      new Candidate(surfaceform, resourceStore.getResource(ids(j)), counts(j))
     }
   }
 
@@ -1,19 +1,21 @@
 package org.dbpedia.spotlight.db.memory
 
 import java.util.{Map, HashMap}
-import scala.collection.JavaConversions._
 import org.dbpedia.spotlight.db.model.{TokenTypeStore, ContextStore}
 import com.esotericsoftware.kryo.io.{Input, Output}
-import org.apache.commons.lang.{SerializationException, NotImplementedException}
 import com.esotericsoftware.kryo.{KryoException, Kryo, KryoSerializable}
-import org.dbpedia.spotlight.model.{TokenType, Token, DBpediaResource}
+import org.dbpedia.spotlight.model.{TokenType, DBpediaResource}
 
 
 /**
- * @author Joachim Daiber
- *
+ * Context store for DBpedia resources.
  *
+ * The contexts of all DBpedia resources are stored in compressed sparse row form:
+ * the token ids and quantized counts of resource i are stored in tokenIds and
+ * counts at the positions offsets(i) until offsets(i+1). Token ids within each row
+ * are sorted.
  *
+ * @author Joachim Daiber
  */
 
 @SerialVersionUID(1007001)
@@ -28,13 +30,108 @@ class MemoryContextStore
   @transient
   var totalTokenCounts: Array[Int] = null
 
-  var tokens: Array[Array[Int]] = null
-  var counts: Array[Array[Short]] = null
+  var offsets: Array[Int] = null
+  var tokenIds: Array[Int] = null
+  var counts: Array[Short] = null
+
+  def size = offsets.length - 1
+
+  def rowStart(id: Int): Int = offsets(id)
+  def rowEnd(id: Int): Int = offsets(id + 1)
+
+  /**
+   * Sets the contexts of all DBpedia resources from one row per resource. Null rows are
+   * stored as empty rows.
+   *
+   * @param tokenRows token ids for each DBpedia resource
+   * @param countRows quantized counts for each DBpedia resource
+   */
+  def setRows(tokenRows: Array[Array[Int]], countRows: Array[Array[Short]]) {
+    offsets = new Array[Int](tokenRows.length + 1)
+
+    var i = 0
+    while (i < tokenRows.length) {
+      offsets(i + 1) = offsets(i) + (if (tokenRows(i) == null) 0 else tokenRows(i).length)
+      i += 1
+    }
+
+    tokenIds = new Array[Int](offsets(tokenRows.length))
+    counts = new Array[Short](offsets(tokenRows.length))
+
+    i = 0
+    while (i < tokenRows.length) {
+      if (tokenRows(i) != null) {
+        System.arraycopy(tokenRows(i), 0, tokenIds, offsets(i), tokenRows(i).length)
+        System.arraycopy(countRows(i), 0, counts, offsets(i), countRows(i).length)
+      }
+      i += 1
+    }
+  }
+
+  /**
+   * Replaces the rows of some DBpedia resources and appends empty rows up to the specified size.
+   * All other rows are kept.
+   *
+   * @param newSize number of DBpedia resources, at least the current size
+   * @param ids the DBpedia resources whose rows are replaced, in ascending order
+   * @param tokenRows new token ids for each of the DBpedia resources, sorted
+   * @param countRows new quantized counts for each of the DBpedia resources
+   */
+  def updateRows(newSize: Int, ids: Array[Int], tokenRows: Array[Array[Int]], countRows: Array[Array[Short]]) {
+    val oldSize = size
+    val rowLength = new Array[Int](newSize)
 
-  def size = tokens.length
+    var i = 0
+    while (i < oldSize) {
+      rowLength(i) = rowEnd(i) - rowStart(i)
+      i += 1
+    }
+    i = 0
+    while (i < ids.length) {
+      rowLength(ids(i)) = tokenRows(i).length
+      i += 1
+    }
+
+    val newOffsets = new Array[Int](newSize + 1)
+    i = 0
+    while (i < newSize) {
+      newOffsets(i + 1) = newOffsets(i) + rowLength(i)
+      i += 1
+    }
+
+    val newTokenIds = new Array[Int](newOffsets(newSize))
+    val newCounts = new Array[Short](newOffsets(newSize))
+
+    //Copy the unchanged rows between two replaced rows at once:
+    var from = 0
+    i = 0
+    while (i <= ids.length) {
+      val to = if (i < ids.length) math.min(ids(i), oldSize) else oldSize
+      if (to > from) {
+        System.arraycopy(tokenIds, rowStart(from), newTokenIds, newOffsets(from), rowStart(to) - rowStart(from))
+        System.arraycopy(counts, rowStart(from), newCounts, newOffsets(from), rowStart(to) - rowStart(from))
+      }
+
+      if (i < ids.length) {
+        System.arraycopy(tokenRows(i), 0, newTokenIds, newOffsets(ids(i)), tokenRows(i).length)
+        System.arraycopy(countRows(i), 0, newCounts, newOffsets(ids(i)), countRows(i).length)
+        from = math.min(ids(i) + 1, oldSize)
+      }
+      i += 1
+    }
+
+    offsets = newOffsets
+    tokenIds = newTokenIds
+    counts = newCounts
+  }
 
   def getContextCount(resource: DBpediaResource, token: TokenType): Int = {
-    throw new NotImplementedException()
+    val j = java.util.Arrays.binarySearch(tokenIds, rowStart(resource.id), rowEnd(resource.id), token.id)
+
+    if (j < 0)
+      0
+    else
+      qc(counts(j))
   }
 
   def getTotalTokenCount(resource: DBpediaResource): Int = totalTokenCounts(resource.id)
@@ -42,44 +139,65 @@ class MemoryContextStore
   def getContextCounts(resource: DBpediaResource): Map[TokenType, Int] = {
 
     val contextCounts = new HashMap[TokenType, Int]()
-    val i = resource.id
-
-    if (tokens(i) != null) {
-      val t = tokens(i)
-      val c = counts(i)
 
-      (0 to t.length-1) foreach { j =>
-        contextCounts.put(tokenStore.getTokenTypeByID(t(j)), qc(c(j)))
-      }
+    var j = rowStart(resource.id)
+    val end = rowEnd(resource.id)
+    while (j < end) {
+      contextCounts.put(tokenStore.getTokenTypeByID(tokenIds(j)), qc(counts(j)))
+      j += 1
     }
 
     contextCounts
   }
 
 
+  /**
+   * Returns views on the row of the DBpedia resource, the arrays of the store are not copied.
+   */
   def getRawContextCounts(resource: DBpediaResource): (Seq[Int], Seq[Int]) = {
-    if(tokens(resource.id) == null)
-      (Seq[Int](), Seq[Int]())
-    else
-      (tokens(resource.id), counts(resource.id).map(qc))
+    val start = rowStart(resource.id)
+    val end = rowEnd(resource.id)
+
+    (new TokenIdView(start, end), new CountView(start, end))
+  }
+
+  private class TokenIdView(start: Int, end: Int) extends IndexedSeq[Int] {
+    def length: Int = end - start
+    def apply(j: Int): Int = tokenIds(start + j)
   }
 
+  private class CountView(start: Int, end: Int) extends IndexedSeq[Int] {
+    def length: Int = end - start
+    def apply(j: Int): Int = qc(counts(start + j))
+  }
+
+
+  /*
+   * The serialized form is written row by row and is the same as for the
+   * previous row-based layout of the store, so existing models can still be read.
+   */
   def write(kryo: Kryo, output: Output) {
-    output.writeInt(tokens.length)
-
-    (0 to tokens.length-1).foreach { i =>
-      if (tokens(i) == null) {
-        output.writeInt(0)
-      } else {
-        output.writeInt(tokens(i).length)
-
-        (0 to tokens(i).length-1).foreach{ j =>
-          output.writeInt(tokens(i)(j))
-        }
-        (0 to tokens(i).length-1).foreach{ j =>
-          output.writeShort(counts(i)(j).toInt)
-        }
+    output.writeInt(size)
+
+    var i = 0
+    while (i < size) {
+      val start = rowStart(i)
+      val end = rowEnd(i)
+      output.writeInt(end - start)
+
+      var j = start
+      while (j < end) {
+        output.writeInt(tokenIds(j))
+        j += 1
+      }
+
+      j = start
+      while (j < end) {
+        output.writeShort(counts(j).toInt)
+        j += 1
       }
+
+      i += 1
     }
     output.writeChar('#')
   }
@@ -88,18 +206,18 @@ class MemoryContextStore
   * Calculates totalTokenCounts once kryo has read the Serialized Object
   * */
   def calculateTotalTokenCounts(){
-    var i = 0
-    while(i < counts.size){
-
-      if (counts(i).isInstanceOf[Array[Short]]){
-        var j = 0
+    totalTokenCounts = new Array[Int](size)
 
-        while(j < counts(i).size ){
-          totalTokenCounts(i) += qc(counts(i)(j))
-          j += 1
-        }
+    var i = 0
+    while(i < size){
+      var j = rowStart(i)
+      val end = rowEnd(i)
 
+      while(j < end){
+        totalTokenCounts(i) += qc(counts(j))
+        j += 1
       }
+
       i += 1
     }
   }
@@ -108,38 +226,51 @@ class MemoryContextStore
   def read(kryo: Kryo, input: Input) {
     val size = input.readInt()
 
-    tokens = new Array[Array[Int]](size)
-    counts = new Array[Array[Short]](size)
-    totalTokenCounts = new Array[Int](size)
+    offsets = new Array[Int](size + 1)
+
+    //The total number of tokens is not part of the serialized form, the flat arrays grow while reading:
+    var capacity = math.max(size, 16)
+    tokenIds = new Array[Int](capacity)
+    counts = new Array[Short](capacity)
 
     var i = 0
-    var j = 0
+    var n = 0
 
     while(i < size) {
       val subsize = input.readInt()
 
-      if (subsize > 0) {
-        tokens(i) = new Array[Int](subsize)
-        counts(i) = new Array[Short](subsize)
+      if (n + subsize > capacity) {
+        while (n + subsize > capacity)
+          capacity = math.min(Int.MaxValue - 8L, capacity * 2L).toInt
 
-        j = 0
-        while(j < subsize) {
-          tokens(i)(j) = input.readInt()
-          j += 1
-        }
+        tokenIds = java.util.Arrays.copyOf(tokenIds, capacity)
+        counts = java.util.Arrays.copyOf(counts, capacity)
+      }
+
+      var j = 0
+      while(j < subsize) {
+        tokenIds(n + j) = input.readInt()
+        j += 1
+      }
+
+      j = 0
+      while(j < subsize) {
+        counts(n + j) = input.readShort()
+        j += 1
+      }
 
-        j = 0
-        while(j < subsize) {
-          counts(i)(j) = input.readShort()
-          j += 1
-        }
-     }
+      n += subsize
+      offsets(i + 1) = n
+      i += 1
+    }
 
-     i += 1
-   }
+    if (n < capacity) {
+      tokenIds = java.util.Arrays.copyOf(tokenIds, n)
+      counts = java.util.Arrays.copyOf(counts, n)
+    }
 
-   if(input.readChar() != '#')
-     throw new KryoException("Error in deserializing context store...")
+    if(input.readChar() != '#')
+      throw new KryoException("Error in deserializing context store...")
 
   }
 
@@ -5,23 +5,50 @@ import scala.collection.mutable
 
 class MemoryQuantizedCountStore extends MemoryStore with QuantizedCountStore {
 
+  //Serialized form of the store, the counts are looked up in the dense array below:
   var countMap: java.util.Map[Short, Int] = new java.util.HashMap[Short, Int]()
 
-  def getCount(quantized: Short): Int = countMap.get(quantized)
+  /*
+   * Dense dequantization table, the count of a quantized value q is at q - Short.MinValue.
+   * Counts are looked up for every candidate and context token, the array avoids boxing the
+   * Short and probing the map. Unknown quantized values have the count 0, as before.
+   */
+  @transient
+  var counts: Array[Int] = new Array[Int](MemoryQuantizedCountStore.QUANTIZED_VALUES)
+
+  def getCount(quantized: Short): Int = counts(quantized - Short.MinValue)
+
+  override def loaded() {
+    counts = new Array[Int](MemoryQuantizedCountStore.QUANTIZED_VALUES)
+
+    val it = countMap.entrySet().iterator()
+    while (it.hasNext) {
+      val e = it.next()
+      counts(e.getKey - Short.MinValue) = e.getValue
+    }
+  }
 
   @transient
   var countLookup: mutable.HashMap[Int, Short] = null
 
   def addCount(count: Int): Short = {
 
-    if(countLookup == null)
+    if(countLookup == null) {
+      //Reuse the quantized values of a loaded store:
       countLookup = mutable.HashMap[Int, Short]()
+      val it = countMap.entrySet().iterator()
+      while (it.hasNext) {
+        val e = it.next()
+        countLookup.put(e.getValue, e.getKey)
+      }
+    }
 
     countLookup.get(count) match {
       case Some(s) => s
       case None => {
         val s = (Short.MinValue + 100 + countMap.size()).toShort
         countMap.put(s, count)
+        counts(s - Short.MinValue) = count
         countLookup.put(count, s)
         s
       }
@@ -32,3 +59,10 @@ class MemoryQuantizedCountStore extends MemoryStore with QuantizedCountStore {
 
 
 }
+
+object MemoryQuantizedCountStore {
+
+  //Number of distinct Short values:
+  val QUANTIZED_VALUES = 1 << 16
+
+}
@@ -1,7 +1,7 @@
 package org.dbpedia.spotlight.db.memory
 
 import org.dbpedia.spotlight.log.SpotlightLog
-import org.dbpedia.spotlight.model.DBpediaResource
+import org.dbpedia.spotlight.model.{OntologyType, DBpediaResource}
 import java.lang.String
 import scala.collection.JavaConversions._
 import scala.{throws, transient}
@@ -9,8 +9,14 @@ import org.dbpedia.spotlight.exceptions.DBpediaResourceNotFoundException
 import org.dbpedia.spotlight.db.model.{OntologyTypeStore, ResourceStore}
 import java.lang.Integer
 import util.StringToIDMapFactory
+import java.util.concurrent.atomic.AtomicReferenceArray
 
 /**
+ * DBpedia resources are materialized on demand. Recently requested resources are kept in a
+ * small lock-free cache, hence the returned objects are shared between callers and must not be
+ * modified. Callers that only need the URI, support or prior of a resource can use the id-based
+ * methods instead, which do not create any objects.
+ *
  * @author Joachim Daiber
  */
 
@@ -23,19 +29,33 @@ class MemoryResourceStore
 
   var supportForID: Array[Short] = null
   var uriForID: Array[String] = null
+
+  //Serialized form of the types, it is packed into typeOffsets and typeIDs after loading:
   var typesForID: Array[Array[java.lang.Short]] = null
 
+  //Ontology type IDs of resource i are typeIDs(typeOffsets(i)) until typeIDs(typeOffsets(i+1)):
+  @transient
+  var typeOffsets: Array[Int] = null
+
+  @transient
+  var typeIDs: Array[Short] = null
+
   @transient
   var idFromURI: java.util.Map[String, Integer] = null
 
   @transient
   var totalSupport = 0.0
 
+  @transient
+  private var cache: AtomicReferenceArray[DBpediaResource] = null
+
   override def loaded() {
     createReverseLookup()
+    packTypes()
     SpotlightLog.info(this.getClass, "Counting total support...")
     totalSupport = supportForID.map(q => qc(q)).sum.toDouble
     SpotlightLog.info(this.getClass, "Done.")
+    cache = new AtomicReferenceArray[DBpediaResource](MemoryResourceStore.CACHE_SIZE)
   }
 
   def size = uriForID.size
@@ -54,26 +74,98 @@ class MemoryResourceStore
     }
   }
 
+  /**
+   * Pack the types of all resources into one primitive array.
+   */
+  def packTypes() {
+    if (typesForID != null) {
+      typeOffsets = new Array[Int](typesForID.length + 1)
+
+      var i = 0
+      while (i < typesForID.length) {
+        typeOffsets(i + 1) = typeOffsets(i) + (if (typesForID(i) == null) 0 else typesForID(i).length)
+        i += 1
+      }
+
+      typeIDs = new Array[Short](typeOffsets(typesForID.length))
+      i = 0
+      while (i < typesForID.length) {
+        var j = 0
+        while (typesForID(i) != null && j < typesForID(i).length) {
+          typeIDs(typeOffsets(i) + j) = typesForID(i)(j).shortValue()
+          j += 1
+        }
+        i += 1
+      }
+
+      typesForID = null
+    }
+  }
+
+  override def dumping() {
+    unpackTypes()
+  }
+
+  /**
+   * Unpack the types into their serialized form, called before the store is written again.
+   */
+  def unpackTypes() {
+    if (typesForID == null && typeOffsets != null) {
+      typesForID = (0 until typeOffsets.length - 1).map { i: Int =>
+        (typeOffsets(i) until typeOffsets(i + 1)).map(j => java.lang.Short.valueOf(typeIDs(j))).toArray
+      }.toArray
+    }
+  }
+
+  private def isValid(id: Int): Boolean = id >= 0 && id < uriForID.length && uriForID(id) != null
+
+  def getURI(id: Int): String = if (isValid(id)) uriForID(id) else null
+
+  def getSupport(id: Int): Int = qc(supportForID(id))
+
+  def getPrior(id: Int): Double = getSupport(id) / totalSupport
+
+  /**
+   * Returns the internal ID of the DBpedia resource with the specified name or -1 if there is no such resource.
+   */
+  def getResourceID(name: String): Int = idFromURI.get(name) match {
+    case id: Integer if id > 0 => id
+    case _ => -1
+  }
+
   @throws(classOf[DBpediaResourceNotFoundException])
   def getResource(id: Int): DBpediaResource = {
 
-    val uri = try {
-      uriForID(id)
-    } catch {
-      case e: java.lang.ArrayIndexOutOfBoundsException => null
-    }
+    if (!isValid(id))
+      throw new DBpediaResourceNotFoundException("DBpediaResource %s not found.".format(id))
+
+    val slot = id & (MemoryResourceStore.CACHE_SIZE - 1)
+    val cached = cache.get(slot)
 
-    if (uri == null)
-      throw new DBpediaResourceNotFoundException("DBpediaResource %s not found.".format(uri))
+    if (cached != null && cached.id == id) {
+      cached
+    } else {
+      val res = createResource(id)
+      cache.lazySet(slot, res)
+      res
+    }
+  }
 
-    val support = supportForID(id)
-    val typeIDs = typesForID(id)
+  private def createResource(id: Int): DBpediaResource = {
+    val uri = uriForID(id)
 
-    val res = new DBpediaResource(uri, qc(support))
+    val res = new DBpediaResource(uri, getSupport(id))
     res.uri = uri
 
     res.id = id
-    res.setTypes((typeIDs map { typeID: java.lang.Short => ontologyTypeStore.getOntologyType(typeID) }).toList)
+
+    var types = List[OntologyType]()
+    var j = typeOffsets(id + 1) - 1
+    while (j >= typeOffsets(id)) {
+      types ::= ontologyTypeStore.getOntologyType(typeIDs(j))
+      j -= 1
+    }
+    res.types = types
 
     res.setPrior(res.support / totalSupport)
 
@@ -82,12 +174,17 @@ class MemoryResourceStore
 
   @throws(classOf[DBpediaResourceNotFoundException])
   def getResourceByName(name: String): DBpediaResource = {
-    idFromURI.get(name) match {
-      case id: Integer if id > 0 => getResource(id)
-      case _ => throw new DBpediaResourceNotFoundException("Could not find %s".format(name))
+    getResourceID(name) match {
+      case -1 => throw new DBpediaResourceNotFoundException("Could not find %s".format(name))
+      case id: Int => getResource(id)
     }
   }
 
+}
+
+object MemoryResourceStore {
 
+  //Number of slots in the cache of materialized resources, must be a power of two:
+  val CACHE_SIZE = 1 << 16
 
 }
@@ -12,7 +12,7 @@ import org.dbpedia.spotlight.log.SpotlightLog
 import com.esotericsoftware.kryo.serializers.DefaultSerializers.KryoSerializableSerializer
 import com.esotericsoftware.kryo.Kryo
 import org.dbpedia.spotlight.db.model.{TokenTypeStore, ResourceStore}
-import org.dbpedia.spotlight.db.FSADictionary
+import org.dbpedia.spotlight.db.{SpotterDictionary, DoubleArrayFSADictionary, FSADictionary}
 import scala.Some
 import it.unimi.dsi.fastutil.objects.Object2ShortOpenHashMap
 import scala.Some
@@ -41,6 +41,12 @@ abstract class MemoryStore extends Serializable {
    */
   def loaded() {}
 
+  /**
+   * Method called before the store is serialized. Implementations may override
+   * this method in order to restore fields that were replaced after loading.
+   */
+  def dumping() {}
+
   def size: Int
 }
 
@@ -138,6 +144,14 @@ object MemoryStore {
   }
   )
 
+  kryos.put(classOf[DoubleArrayFSADictionary].getSimpleName,
+  {
+    val kryo = new Kryo()
+    kryo.setRegistrationRequired(false)
+    kryo
+  }
+  )
+
   kryos.put(classOf[MemoryQuantizedCountStore].getSimpleName,
   {
     val kryo = new Kryo()
@@ -189,8 +203,11 @@ object MemoryStore {
     s
   }
 
-  def loadFSADictionary(in: InputStream): FSADictionary = {
-    load[FSADictionary](in, classOf[FSADictionary].getSimpleName)
+  /**
+   * Loads a spotter dictionary. This may be a DoubleArrayFSADictionary or an FSADictionary of an older model.
+   */
+  def loadFSADictionary(in: InputStream): SpotterDictionary = {
+    load[SpotterDictionary](in, classOf[FSADictionary].getSimpleName)
   }
 
   def loadQuantizedCountStore(in: InputStream): MemoryQuantizedCountStore = {
@@ -202,6 +219,7 @@ object MemoryStore {
 
     //The QC store may not be serialized as part of the store, it is serialized separately
     store.quantizedCountStore = null
+    store.dumping()
 
     SpotlightLog.info(this.getClass, "Writing %s...".format(store.getClass.getSimpleName))
     val output = new Output(new FileOutputStream(out))
@@ -124,7 +124,27 @@ class MemorySurfaceFormStore
   }
 
 
-  private def editDistanceScore(sData: String, sReal: String): Double = {
+  def getRankedSurfaceFormCandidates(surfaceform: String): Seq[(SurfaceForm, Double)] =
+    MemorySurfaceFormStore.rankSurfaceFormCandidates(this, surfaceform)
+
+
+  /**
+   * Get the count of the lowercase version of a surface form (for working with ill-cased text).
+   *
+   * @param surfaceform the queried surface form
+   * @return
+   */
+  def getLowercaseSurfaceFormCount(surfaceform: String): Int = lowercaseMap.get(surfaceform).headOption match {
+    case Some(c) => c
+    case _ => 0
+  }
+
+}
+
+
+object MemorySurfaceFormStore {
+
+  def editDistanceScore(sData: String, sReal: String): Double = {
     val ed = StringUtils.getLevenshteinDistance(sData, sReal)
 
     if (sReal.equals(sData))
@@ -135,10 +155,17 @@ class MemorySurfaceFormStore
       0.85 * (1.0 - (ed / sReal.length.toDouble))
   }
 
-  def getRankedSurfaceFormCandidates(surfaceform: String): Seq[(SurfaceForm, Double)] = {
+  /**
+   * Ranks the normalized surface form candidates for a surface form (for working with ill-cased text).
+   *
+   * @param sfStore the surface form store
+   * @param surfaceform the queried surface form
+   * @return
+   */
+  def rankSurfaceFormCandidates(sfStore: SurfaceFormStore, surfaceform: String): Seq[(SurfaceForm, Double)] = {
 
-    getSurfaceFormsNormalized(surfaceform).map{ candSf: SurfaceForm =>
-      val cLower = getLowercaseSurfaceFormCount(surfaceform.toLowerCase)
+    sfStore.getSurfaceFormsNormalized(surfaceform).map{ candSf: SurfaceForm =>
+      val cLower = sfStore.getLowercaseSurfaceFormCount(surfaceform.toLowerCase)
       val cTotal = candSf.totalCount
 
       SpotlightLog.debug(this.getClass, surfaceform + " p: "+ candSf.annotationProbability)
@@ -155,16 +182,4 @@ class MemorySurfaceFormStore
 
   }
 
-
-  /**
-   * Get the count of the lowercase version of a surface form (for working with ill-cased text).
-   *
-   * @param surfaceform the queried surface form
-   * @return
-   */
-  def getLowercaseSurfaceFormCount(surfaceform: String): Int = lowercaseMap.get(surfaceform).headOption match {
-    case Some(c) => c
-    case _ => 0
-  }
-
 }
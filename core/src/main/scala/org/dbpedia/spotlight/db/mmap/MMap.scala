@@ -0,0 +1,314 @@
+package org.dbpedia.spotlight.db.mmap
+
+import java.io._
+import java.nio.{ShortBuffer, IntBuffer, ByteBuffer}
+import java.nio.channels.FileChannel
+
+/**
+ * Utilities for reading and writing the memory-mapped model format.
+ *
+ * Every array of a memory-mapped store lives in its own file as a flat sequence of
+ * big-endian values, so that it can be mapped via FileChannel.map without any
+ * deserialization. Mapped files are shared in the page cache between JVMs. Since a single
+ * mapping is limited to 2GB, arrays are mapped in chunks of CHUNK_SIZE elements.
+ *
+ * Variable-length rows (e.g. the context of a DBpedia resource) are stored in
+ * compressed sparse row form: an offsets file with n+1 entries and a values file,
+ * row i spans the values offsets(i) until offsets(i+1).
+ */
+
+object MMap {
+
+  val CHUNK_BITS = 28
+  val CHUNK_SIZE = 1 << CHUNK_BITS
+  val CHUNK_MASK = CHUNK_SIZE - 1
+
+  /**
+   * Maps a file read-only in chunks of CHUNK_SIZE elements.
+   *
+   * @param file the mapped file
+   * @param elementSize size of a single element in bytes
+   * @return
+   */
+  def map(file: File, elementSize: Int): Array[ByteBuffer] = {
+    if (!file.exists())
+      throw new IOException("Could not find memory-mapped store file %s.".format(file.getPath))
+
+    val raf = new RandomAccessFile(file, "r")
+    try {
+      val channel = raf.getChannel
+      val size = channel.size()
+      val bytesPerChunk = CHUNK_SIZE.toLong * elementSize
+      val chunks = ((size + bytesPerChunk - 1) / bytesPerChunk).toInt
+
+      (0 until chunks).map { i: Int =>
+        val start = i * bytesPerChunk
+        channel.map(FileChannel.MapMode.READ_ONLY, start, math.min(bytesPerChunk, size - start)).asInstanceOf[ByteBuffer]
+      }.toArray
+    } finally {
+      //The mapping stays valid after the channel is closed.
+      raf.close()
+    }
+  }
+
+  def output(file: File): DataOutputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))
+
+  def writeInts(file: File, values: Array[Int]) {
+    val out = output(file)
+    var i = 0
+    while (i < values.length) {
+      out.writeInt(values(i))
+      i += 1
+    }
+    out.close()
+  }
+
+  def writeShorts(file: File, values: Array[Short]) {
+    val out = output(file)
+    var i = 0
+    while (i < values.length) {
+      out.writeShort(values(i))
+      i += 1
+    }
+    out.close()
+  }
+
+  /**
+   * Writes variable-length int rows in compressed sparse row form. Null rows are written as empty rows.
+   *
+   * @param offsetsFile file for the n+1 row offsets
+   * @param valuesFile file for the concatenated row values
+   * @param rows the rows
+   */
+  def writeIntRows(offsetsFile: File, valuesFile: File, rows: Array[Array[Int]]) {
+    writeOffsets(offsetsFile, rows.map(row => if (row == null) 0 else row.length))
+    writeIntValues(valuesFile, rows)
+  }
+
+  def writeShortRows(offsetsFile: File, valuesFile: File, rows: Array[Array[Short]]) {
+    writeOffsets(offsetsFile, rows.map(row => if (row == null) 0 else row.length))
+    writeShortValues(valuesFile, rows)
+  }
+
+  /**
+   * Writes the n+1 row offsets for rows of the specified lengths.
+   */
+  def writeOffsets(file: File, rowLengths: Array[Int]) {
+    val out = output(file)
+    var offset = 0L
+    rowLengths.foreach { length: Int =>
+      out.writeInt(checkedOffset(offset))
+      offset += length
+    }
+    out.writeInt(checkedOffset(offset))
+    out.close()
+  }
+
+  /**
+   * Writes only the concatenated row values, e.g. for a second array sharing the offsets of another one.
+   */
+  def writeIntValues(file: File, rows: Array[Array[Int]]) {
+    val out = output(file)
+    rows.foreach { row: Array[Int] =>
+      if (row != null)
+        row.foreach(out.writeInt(_))
+    }
+    out.close()
+  }
+
+  def writeShortValues(file: File, rows: Array[Array[Short]]) {
+    val out = output(file)
+    rows.foreach { row: Array[Short] =>
+      if (row != null)
+        row.foreach(v => out.writeShort(v))
+    }
+    out.close()
+  }
+
+  def checkedOffset(offset: Long): Int = {
+    if (offset > Int.MaxValue)
+      throw new IOException("Memory-mapped store is too large: offset %d does not fit into an int.".format(offset))
+    offset.toInt
+  }
+
+  /**
+   * FNV-1a hash over the UTF-8 bytes of a String. This is used for the on-disk
+   * hash tables, hence it must not depend on the JVM.
+   */
+  def hash(bytes: Array[Byte]): Int = {
+    var h = 0x811c9dc5
+    var i = 0
+    while (i < bytes.length) {
+      h ^= (bytes(i) & 0xff)
+      h *= 16777619
+      i += 1
+    }
+    h ^ (h >>> 16)
+  }
+
+  /**
+   * Writes a table of Strings with an open-addressing hash table for the
+   * reverse lookup (String to id). This creates the files name.offsets, name.bytes
+   * and name.hash in the folder. Null Strings are stored as empty and are not
+   * added to the hash table.
+   *
+   * @param folder the store folder
+   * @param name base name of the table files
+   * @param strings Strings indexed by their id
+   */
+  def writeStrings(folder: File, name: String, strings: Array[String]) {
+    val encoded = strings.map(s => if (s == null) null else s.getBytes("UTF-8"))
+
+    val offsets = output(new File(folder, name + ".offsets"))
+    val bytes = output(new File(folder, name + ".bytes"))
+
+    var offset = 0L
+    encoded.foreach { b: Array[Byte] =>
+      offsets.writeInt(checkedOffset(offset))
+      if (b != null) {
+        bytes.write(b)
+        offset += b.length
+      }
+    }
+    offsets.writeInt(checkedOffset(offset))
+    offsets.close()
+    bytes.close()
+
+    //Hash table with a load factor <= 0.5, slots contain id+1, 0 marks an empty slot:
+    var capacity = 2
+    while (capacity < strings.length * 2)
+      capacity *= 2
+    val table = new Array[Int](capacity)
+    val mask = capacity - 1
+
+    var id = 0
+    while (id < encoded.length) {
+      if (encoded(id) != null) {
+        var slot = hash(encoded(id)) & mask
+        while (table(slot) != 0 && !java.util.Arrays.equals(encoded(table(slot) - 1), encoded(id)))
+          slot = (slot + 1) & mask
+
+        //As in the Kryo-based stores, the last id for a duplicate String wins:
+        table(slot) = id + 1
+      }
+      id += 1
+    }
+
+    writeInts(new File(folder, name + ".hash"), table)
+  }
+
+}
+
+
+/**
+ * Read-only view on a memory-mapped int array.
+ */
+class MMapIntArray(file: File) {
+
+  private val buffers: Array[IntBuffer] = MMap.map(file, 4).map(_.asIntBuffer())
+
+  val length: Int = (file.length() / 4).toInt
+
+  def apply(i: Int): Int = buffers(i >>> MMap.CHUNK_BITS).get(i & MMap.CHUNK_MASK)
+
+}
+
+
+/**
+ * Read-only view on a memory-mapped short array.
+ */
+class MMapShortArray(file: File) {
+
+  private val buffers: Array[ShortBuffer] = MMap.map(file, 2).map(_.asShortBuffer())
+
+  val length: Int = (file.length() / 2).toInt
+
+  def apply(i: Int): Short = buffers(i >>> MMap.CHUNK_BITS).get(i & MMap.CHUNK_MASK)
+
+}
+
+
+/**
+ * Read-only view on a memory-mapped byte array.
+ */
+class MMapByteArray(file: File) {
+
+  private val buffers: Array[ByteBuffer] = MMap.map(file, 1)
+
+  val length: Int = file.length().toInt
+
+  def apply(i: Int): Byte = buffers(i >>> MMap.CHUNK_BITS).get(i & MMap.CHUNK_MASK)
+
+}
+
+
+/**
+ * A memory-mapped table of Strings with a reverse lookup, written by [[org.dbpedia.spotlight.db.mmap.MMap.writeStrings]].
+ * The reverse lookup compares the UTF-8 bytes in place, Strings are only decoded when they are requested by id.
+ */
+class MMapStringTable(folder: File, name: String) {
+
+  private val offsets = new MMapIntArray(new File(folder, name + ".offsets"))
+  private val bytes   = new MMapByteArray(new File(folder, name + ".bytes"))
+  private val table   = new MMapIntArray(new File(folder, name + ".hash"))
+
+  def size: Int = offsets.length - 1
+
+  /**
+   * Returns the String for the id or null if there is no String for the id.
+   */
+  def apply(id: Int): String = {
+    val start = offsets(id)
+    val end = offsets(id + 1)
+
+    if (start == end) {
+      null
+    } else {
+      val b = new Array[Byte](end - start)
+      var i = 0
+      while (i < b.length) {
+        b(i) = bytes(start + i)
+        i += 1
+      }
+      new String(b, "UTF-8")
+    }
+  }
+
+  private def equalsAt(id: Int, b: Array[Byte]): Boolean = {
+    val start = offsets(id)
+    if (offsets(id + 1) - start != b.length)
+      return false
+
+    var i = 0
+    while (i < b.length) {
+      if (bytes(start + i) != b(i))
+        return false
+      i += 1
+    }
+    true
+  }
+
+  /**
+   * Returns the id of the String or -1 if it is not in the table.
+   */
+  def indexOf(s: String): Int = {
+    if (s == null || table.length == 0)
+      return -1
+
+    val b = s.getBytes("UTF-8")
+    val mask = table.length - 1
+
+    var slot = MMap.hash(b) & mask
+    var entry = table(slot)
+    while (entry != 0) {
+      if (equalsAt(entry - 1, b))
+        return entry - 1
+
+      slot = (slot + 1) & mask
+      entry = table(slot)
+    }
+
+    -1
+  }
+
+}
@@ -0,0 +1,45 @@
+package org.dbpedia.spotlight.db.mmap
+
+import java.io.File
+import org.dbpedia.spotlight.db.model.{ResourceStore, CandidateMapStore}
+import org.dbpedia.spotlight.db.memory.MemoryQuantizedCountStore
+import org.dbpedia.spotlight.model.{Candidate, SurfaceForm}
+
+/**
+ * A memory-mapped candidate map. The candidate resource ids and their quantized counts
+ * for each surface form are stored in compressed sparse row form, the candidates of a surface form
+ * are sorted by count (as in [[org.dbpedia.spotlight.db.memory.MemoryCandidateMapStore]]).
+ *
+ * Files in the store folder:
+ *  - offsets:    n+1 row offsets
+ *  - candidates: candidate DBpedia resource ids
+ *  - counts:     quantized counts of the (surface form, resource) pairs
+ */
+
+class MMapCandidateMapStore(
+  folder: File,
+  val resourceStore: ResourceStore,
+  val quantizedCountStore: MemoryQuantizedCountStore
+) extends CandidateMapStore {
+
+  val offsets    = new MMapIntArray(new File(folder, "offsets"))
+  val candidates = new MMapIntArray(new File(folder, "candidates"))
+  val counts     = new MMapShortArray(new File(folder, "counts"))
+
+  def size = offsets.length - 1
+
+  def getCandidates(surfaceform: SurfaceForm): Set[Candidate] = getTopCandidates(surfaceform, Int.MaxValue).toSet
+
+  override def getTopCandidates(surfaceform: SurfaceForm, k: Int): Seq[Candidate] = {
+    if (surfaceform.id < 0 || surfaceform.id >= size)
+      return Seq[Candidate]()
+
+    val start = offsets(surfaceform.id)
+    val end = math.min(offsets(surfaceform.id + 1).toLong, start.toLong + k).toInt
+
+    (start until end).map { j: Int =>
+      new Candidate(surfaceform, resourceStore.getResource(candidates(j)), quantizedCountStore.getCount(counts(j)))
+    }
+  }
+
+}
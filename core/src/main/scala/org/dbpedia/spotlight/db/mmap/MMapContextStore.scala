@@ -0,0 +1,86 @@
+package org.dbpedia.spotlight.db.mmap
+
+import java.io.File
+import java.util.{Map, HashMap}
+import org.dbpedia.spotlight.db.model.{TokenTypeStore, ContextStore}
+import org.dbpedia.spotlight.db.memory.MemoryQuantizedCountStore
+import org.dbpedia.spotlight.model.{TokenType, DBpediaResource}
+
+/**
+ * A memory-mapped context store. The token ids and quantized counts of all
+ * DBpedia resources are stored in compressed sparse row form, token ids within each row
+ * are sorted.
+ *
+ * Files in the store folder:
+ *  - offsets: n+1 row offsets
+ *  - tokens:  token ids
+ *  - counts:  quantized token counts
+ *  - totals:  total token count for each DBpedia resource
+ */
+
+class MMapContextStore(
+  folder: File,
+  val tokenStore: TokenTypeStore,
+  val quantizedCountStore: MemoryQuantizedCountStore
+) extends ContextStore {
+
+  val offsets = new MMapIntArray(new File(folder, "offsets"))
+  val tokens  = new MMapIntArray(new File(folder, "tokens"))
+  val counts  = new MMapShortArray(new File(folder, "counts"))
+  val totalTokenCounts = new MMapIntArray(new File(folder, "totals"))
+
+  def size = offsets.length - 1
+
+  private def qc(quantizedCount: Short): Int = quantizedCountStore.getCount(quantizedCount)
+
+  def getContextCount(resource: DBpediaResource, token: TokenType): Int = {
+    //Binary search in the sorted row of the resource:
+    var low = offsets(resource.id)
+    var high = offsets(resource.id + 1) - 1
+
+    while (low <= high) {
+      val mid = (low + high) >>> 1
+      val t = tokens(mid)
+
+      if (t < token.id)
+        low = mid + 1
+      else if (t > token.id)
+        high = mid - 1
+      else
+        return qc(counts(mid))
+    }
+    0
+  }
+
+  def getTotalTokenCount(resource: DBpediaResource): Int = totalTokenCounts(resource.id)
+
+  def getContextCounts(resource: DBpediaResource): Map[TokenType, Int] = {
+    val contextCounts = new HashMap[TokenType, Int]()
+
+    var j = offsets(resource.id)
+    val end = offsets(resource.id + 1)
+    while (j < end) {
+      contextCounts.put(tokenStore.getTokenTypeByID(tokens(j)), qc(counts(j)))
+      j += 1
+    }
+
+    contextCounts
+  }
+
+  def getRawContextCounts(resource: DBpediaResource): (Seq[Int], Seq[Int]) = {
+    val start = offsets(resource.id)
+    val n = offsets(resource.id + 1) - start
+
+    val t = new Array[Int](n)
+    val c = new Array[Int](n)
+    var j = 0
+    while (j < n) {
+      t(j) = tokens(start + j)
+      c(j) = qc(counts(start + j))
+      j += 1
+    }
+
+    (t, c)
+  }
+
+}
@@ -0,0 +1,107 @@
+package org.dbpedia.spotlight.db.mmap
+
+import java.io.File
+import org.dbpedia.spotlight.log.SpotlightLog
+import org.dbpedia.spotlight.db.model.ResourceStore
+import org.dbpedia.spotlight.db.memory.{MemoryOntologyTypeStore, MemoryQuantizedCountStore}
+import org.dbpedia.spotlight.exceptions.DBpediaResourceNotFoundException
+import org.dbpedia.spotlight.model.{Factory, OntologyType, DBpediaResource}
+
+/**
+ * A memory-mapped store for DBpedia resources.
+ *
+ * Files in the store folder:
+ *  - uri.*:        URIs of the resources (see [[org.dbpedia.spotlight.db.mmap.MMapStringTable]])
+ *  - support:      quantized support of each resource
+ *  - type_offsets: n+1 row offsets into types
+ *  - types:        ontology type ids of each resource
+ *  - ontology.*:   names of the ontology types, indexed by their id
+ */
+
+class MMapResourceStore(
+  folder: File,
+  val quantizedCountStore: MemoryQuantizedCountStore
+) extends ResourceStore {
+
+  val uriForID     = new MMapStringTable(folder, "uri")
+  val supportForID = new MMapShortArray(new File(folder, "support"))
+  val typeOffsets  = new MMapIntArray(new File(folder, "type_offsets"))
+  val typesForID   = new MMapShortArray(new File(folder, "types"))
+
+  val ontologyTypeStore = MMapResourceStore.loadOntologyTypeStore(new MMapStringTable(folder, "ontology"))
+
+  private def qc(quantizedCount: Short): Int = quantizedCountStore.getCount(quantizedCount)
+
+  val totalSupport: Double = {
+    SpotlightLog.info(this.getClass, "Counting total support...")
+    var total = 0.0
+    var i = 0
+    while (i < supportForID.length) {
+      total += qc(supportForID(i))
+      i += 1
+    }
+    SpotlightLog.info(this.getClass, "Done.")
+    total
+  }
+
+  def size = uriForID.size
+
+  @throws(classOf[DBpediaResourceNotFoundException])
+  def getResource(id: Int): DBpediaResource = {
+
+    val uri = if (id < 0 || id >= size) null else uriForID(id)
+
+    if (uri == null)
+      throw new DBpediaResourceNotFoundException("DBpediaResource %s not found.".format(id))
+
+    val res = new DBpediaResource(uri, qc(supportForID(id)))
+    res.uri = uri
+    res.id = id
+
+    var types = List[OntologyType]()
+    var j = typeOffsets(id + 1) - 1
+    while (j >= typeOffsets(id)) {
+      types ::= ontologyTypeStore.getOntologyType(typesForID(j))
+      j -= 1
+    }
+    res.types = types
+
+    res.setPrior(res.support / totalSupport)
+
+    res
+  }
+
+  @throws(classOf[DBpediaResourceNotFoundException])
+  def getResourceByName(name: String): DBpediaResource = {
+    uriForID.indexOf(name) match {
+      case id: Int if id > 0 => getResource(id)
+      case _ => throw new DBpediaResourceNotFoundException("Could not find %s".format(name))
+    }
+  }
+
+}
+
+object MMapResourceStore {
+
+  def loadOntologyTypeStore(names: MMapStringTable): MemoryOntologyTypeStore = {
+    val idFromName = new java.util.HashMap[String, java.lang.Short]()
+    val ontologyTypeFromID = new java.util.HashMap[java.lang.Short, OntologyType]()
+
+    (0 until names.size).foreach { i: Int =>
+      val name = names(i)
+      if (name != null) {
+        val ontologyType = Factory.OntologyType.fromQName(name)
+        ontologyType.id = i.toShort
+
+        ontologyTypeFromID.put(ontologyType.id, ontologyType)
+        idFromName.put(ontologyType.typeID, ontologyType.id)
+      }
+    }
+
+    val otStore = new MemoryOntologyTypeStore()
+    otStore.idFromName = idFromName
+    otStore.ontologyTypeFromID = ontologyTypeFromID
+    otStore
+  }
+
+}
@@ -0,0 +1,96 @@
+package org.dbpedia.spotlight.db.mmap
+
+import java.io.{FileInputStream, File}
+import org.dbpedia.spotlight.log.SpotlightLog
+import org.dbpedia.spotlight.db.memory._
+import scala.collection.JavaConversions._
+
+/**
+ * Converts the Kryo-serialized stores of a Spotlight model folder into the
+ * memory-mapped format. The memory-mapped stores are written to
+ * model/sf.mmap, model/res.mmap, model/candmap.mmap and model/context.mmap next
+ * to the existing .mem files and are picked up by [[org.dbpedia.spotlight.db.SpotlightModel]]
+ * if they exist.
+ *
+ * Usage: mvn scala:run -DmainClass=org.dbpedia.spotlight.db.mmap.MMapStoreConverter -Dexec.args="/data/spotlight/en"
+ */
+
+object MMapStoreConverter {
+
+  def main(args: Array[String]) {
+    val modelDataFolder = new File(args(0), "model")
+
+    val quantizedCountStore = MemoryStore.loadQuantizedCountStore(new FileInputStream(new File(modelDataFolder, "quantized_counts.mem")))
+
+    val sfStore = MemoryStore.loadSurfaceFormStore(new FileInputStream(new File(modelDataFolder, "sf.mem")), quantizedCountStore)
+    writeSurfaceFormStore(sfStore, new File(modelDataFolder, "sf.mmap"))
+
+    val resStore = MemoryStore.loadResourceStore(new FileInputStream(new File(modelDataFolder, "res.mem")), quantizedCountStore)
+    writeResourceStore(resStore, new File(modelDataFolder, "res.mmap"))
+
+    val candMapStore = MemoryStore.loadCandidateMapStore(new FileInputStream(new File(modelDataFolder, "candmap.mem")), resStore, quantizedCountStore)
+    writeCandidateMapStore(candMapStore, new File(modelDataFolder, "candmap.mmap"))
+
+    if (new File(modelDataFolder, "context.mem").exists()) {
+      val tokenStore = MemoryStore.loadTokenTypeStore(new FileInputStream(new File(modelDataFolder, "tokens.mem")))
+      val contextStore = MemoryStore.loadContextStore(new FileInputStream(new File(modelDataFolder, "context.mem")), tokenStore, quantizedCountStore)
+      writeContextStore(contextStore, new File(modelDataFolder, "context.mmap"))
+    }
+  }
+
+  private def createFolder(folder: File): File = {
+    SpotlightLog.info(this.getClass, "Writing memory-mapped store %s...".format(folder.getName))
+    folder.mkdirs()
+    folder
+  }
+
+  def writeContextStore(store: MemoryContextStore, folder: File) {
+    createFolder(folder)
+
+    MMap.writeInts(new File(folder, "offsets"), store.offsets)
+    MMap.writeInts(new File(folder, "tokens"), store.tokenIds)
+    MMap.writeShorts(new File(folder, "counts"), store.counts)
+
+    MMap.writeInts(new File(folder, "totals"), store.totalTokenCounts)
+    SpotlightLog.info(this.getClass, "Done.")
+  }
+
+  def writeCandidateMapStore(store: MemoryCandidateMapStore, folder: File) {
+    createFolder(folder)
+
+    MMap.writeIntRows(new File(folder, "offsets"), new File(folder, "candidates"), store.candidates)
+    MMap.writeShortValues(new File(folder, "counts"), store.candidateCounts)
+    SpotlightLog.info(this.getClass, "Done.")
+  }
+
+  def writeResourceStore(store: MemoryResourceStore, folder: File) {
+    createFolder(folder)
+
+    MMap.writeStrings(folder, "uri", store.uriForID)
+    MMap.writeShorts(new File(folder, "support"), store.supportForID)
+    MMap.writeInts(new File(folder, "type_offsets"), store.typeOffsets)
+    MMap.writeShorts(new File(folder, "types"), store.typeIDs)
+
+    val ontologyTypes = store.ontologyTypeStore.asInstanceOf[MemoryOntologyTypeStore].ontologyTypeFromID
+    val ontologyNames = new Array[String](if (ontologyTypes.isEmpty) 0 else ontologyTypes.keySet().map(_.intValue()).max + 1)
+    ontologyTypes.foreach { case (id, ontologyType) => ontologyNames(id.intValue()) = ontologyType.typeID }
+    MMap.writeStrings(folder, "ontology", ontologyNames)
+
+    SpotlightLog.info(this.getClass, "Done.")
+  }
+
+  def writeSurfaceFormStore(store: MemorySurfaceFormStore, folder: File) {
+    createFolder(folder)
+
+    MMap.writeStrings(folder, "sf", store.stringForID)
+    MMap.writeShorts(new File(folder, "annotated"), store.annotatedCountForID)
+    MMap.writeShorts(new File(folder, "total"), store.totalCountForID)
+
+    val lowercase = store.lowercaseMap.toSeq
+    MMap.writeStrings(folder, "lowercase", lowercase.map(_._1).toArray)
+    MMap.writeIntRows(new File(folder, "lowercase_offsets"), new File(folder, "lowercase_values"), lowercase.map(_._2).toArray)
+
+    SpotlightLog.info(this.getClass, "Done.")
+  }
+
+}
@@ -0,0 +1,106 @@
+package org.dbpedia.spotlight.db.mmap
+
+import java.io.File
+import org.dbpedia.spotlight.log.SpotlightLog
+import org.dbpedia.spotlight.model.SurfaceForm
+import org.dbpedia.spotlight.db.model.SurfaceFormStore
+import org.dbpedia.spotlight.db.memory.{MemorySurfaceFormStore, MemoryQuantizedCountStore}
+import org.dbpedia.spotlight.exceptions.SurfaceFormNotFoundException
+
+/**
+ * A memory-mapped store for surface forms.
+ *
+ * Files in the store folder:
+ *  - sf.*:             surface form Strings (see [[org.dbpedia.spotlight.db.mmap.MMapStringTable]])
+ *  - annotated:        quantized annotated count of each surface form
+ *  - total:            quantized total count of each surface form
+ *  - lowercase.*:      lowercased surface forms
+ *  - lowercase_offsets, lowercase_values: rows for the lowercased surface forms, the first value
+ *                      in a row is the lowercase count, followed by the ids of the surface forms
+ */
+
+class MMapSurfaceFormStore(
+  folder: File,
+  val quantizedCountStore: MemoryQuantizedCountStore
+) extends SurfaceFormStore {
+
+  val stringForID         = new MMapStringTable(folder, "sf")
+  val annotatedCountForID = new MMapShortArray(new File(folder, "annotated"))
+  val totalCountForID     = new MMapShortArray(new File(folder, "total"))
+
+  val lowercaseForID   = new MMapStringTable(folder, "lowercase")
+  val lowercaseOffsets = new MMapIntArray(new File(folder, "lowercase_offsets"))
+  val lowercaseValues  = new MMapIntArray(new File(folder, "lowercase_values"))
+
+  private def qc(quantizedCount: Short): Int = quantizedCountStore.getCount(quantizedCount)
+
+  val (totalAnnotatedCount, totalOccurrenceCount) = {
+    SpotlightLog.info(this.getClass, "Summing total SF counts.")
+    var annotated = 0
+    var total = 0
+    var i = 0
+    while (i < annotatedCountForID.length) {
+      annotated += qc(annotatedCountForID(i))
+      total += qc(totalCountForID(i))
+      i += 1
+    }
+    (annotated, total)
+  }
+
+  def size = stringForID.size
+
+  def getTotalAnnotatedCount: Int = totalAnnotatedCount
+  def getTotalOccurrenceCount: Int = totalOccurrenceCount
+
+  def iterateSurfaceForms: Seq[SurfaceForm] = {
+    (0 until size).flatMap { id: Int =>
+      if (qc(annotatedCountForID(id)) > 0) Some(sfForID(id)) else None
+    }
+  }
+
+  private def sfForID(id: Int) = new SurfaceForm(stringForID(id), id, qc(annotatedCountForID(id)), qc(totalCountForID(id)))
+
+  @throws(classOf[SurfaceFormNotFoundException])
+  def getSurfaceForm(surfaceform: String): SurfaceForm = {
+    val id = stringForID.indexOf(surfaceform)
+
+    if (id == -1)
+      throw new SurfaceFormNotFoundException("SurfaceForm %s not found.".format(surfaceform))
+
+    sfForID(id)
+  }
+
+  def getSurfaceFormsNormalized(surfaceform: String): Set[SurfaceForm] = {
+    val i = lowercaseForID.indexOf(surfaceform.toLowerCase)
+
+    if (i == -1) {
+      Set[SurfaceForm]()
+    } else {
+      //Skip the lowercase count in the first position of the row:
+      (lowercaseOffsets(i) + 1 until lowercaseOffsets(i + 1)).map( j => sfForID(lowercaseValues(j)) ).toSet
+    }
+  }
+
+  @throws(classOf[SurfaceFormNotFoundException])
+  def getSurfaceFormNormalized(surfaceform: String): SurfaceForm = {
+    val sfs = getRankedSurfaceFormCandidates(surfaceform)
+
+    if (sfs.isEmpty)
+      throw new SurfaceFormNotFoundException(surfaceform)
+    else
+      sfs.head._1
+  }
+
+  def getRankedSurfaceFormCandidates(surfaceform: String): Seq[(SurfaceForm, Double)] =
+    MemorySurfaceFormStore.rankSurfaceFormCandidates(this, surfaceform)
+
+  def getLowercaseSurfaceFormCount(surfaceform: String): Int = {
+    val i = lowercaseForID.indexOf(surfaceform)
+
+    if (i == -1 || lowercaseOffsets(i) == lowercaseOffsets(i + 1))
+      0
+    else
+      lowercaseValues(lowercaseOffsets(i))
+  }
+
+}
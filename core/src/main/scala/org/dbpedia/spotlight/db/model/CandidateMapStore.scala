@@ -20,4 +20,14 @@ trait CandidateMapStore {
    */
   def getCandidates(surfaceform: SurfaceForm): Set[Candidate]
 
+  /**
+   * Returns the (at most) k candidates with the highest count for a surface form.
+   *
+   * @param surfaceform the surface form object
+   * @param k maximum number of candidates
+   * @return candidate objects, highest count first
+   */
+  def getTopCandidates(surfaceform: SurfaceForm, k: Int): Seq[Candidate] =
+    getCandidates(surfaceform).toSeq.sortBy(-_.support).take(k)
+
 }
@@ -1,12 +1,15 @@
 package org.dbpedia.spotlight.db.model
 
-import org.dbpedia.spotlight.model.{Token, Text}
+import org.dbpedia.spotlight.model.{TokenizedText, Token, Text}
 
 /**
  * A Tokenizer splits a [[org.dbpedia.spotlight.model.Text]] into its [[org.dbpedia.spotlight.model.Token]]s.
  * Tokens may have additional information, e.g. part-of-speech tags and the [[org.dbpedia.spotlight.model.Text]]
  * may be assigned features like the sentence boundaries.
  *
+ * tokenizeMaybe stores the tokens as a [[org.dbpedia.spotlight.model.TokenizedText]] in the feature
+ * TokenizedText.FEATURE of the Text.
+ *
  * @author Joachim Daiber
  */
 
@@ -14,6 +17,8 @@ trait TextTokenizer {
 
   def tokenize(text: Text): List[Token]
 
+  def tokenizeText(text: Text): TokenizedText
+
   def tokenizeMaybe(text: Text)
 
   def getStringTokenizer: StringTokenizer
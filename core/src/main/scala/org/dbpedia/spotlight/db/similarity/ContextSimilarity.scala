@@ -23,6 +23,20 @@ trait ContextSimilarity {
   def score(query: Seq[TokenType], candidates: Set[DBpediaResource]): mutable.Map[DBpediaResource, Double]
 
 
+  /**
+   * Calculate the context score for an array of DBpedia resource candidates. The tokens of the query
+   * must be distinct and sorted by their id.
+   *
+   * @param query the text context of the document
+   * @param candidates the DBpedia resource candidates
+   * @return the context scores, aligned with the candidates
+   */
+  def scoreCandidates(query: Array[TokenType], candidates: Array[DBpediaResource]): Array[Double] = {
+    val scores = score(query, candidates.toSet)
+    candidates.map(scores)
+  }
+
+
   /**
    * Calculate the context score for the context alone, not assuming that there is any entity generating it.
    *
@@ -4,8 +4,9 @@ import org.dbpedia.spotlight.model.{DBpediaResource, TokenType}
 import collection.mutable
 import org.dbpedia.spotlight.db.model.{ContextStore, TokenTypeStore}
 import scala.collection.JavaConversions._
-import org.dbpedia.spotlight.util.MathUtil
+import org.dbpedia.spotlight.util.{LatencyMetrics, MathUtil}
 import org.apache.commons.logging.LogFactory
+import org.dbpedia.spotlight.db.memory.MemoryContextStore
 
 /**
  * Generative context similarity based on Han et. al
@@ -27,6 +28,18 @@ class GenerativeContextSimilarity(tokenTypeStore: TokenTypeStore, contextStore:
   val lambda = 0.2
 
 
+  private val lnLambda = MathUtil.ln(lambda)
+  private val lnOneMinusLambda = MathUtil.ln(1-lambda)
+
+  /* Normalization of the general language model, this is constant for the token type store. */
+  private lazy val lnLMTotal = MathUtil.ln(tokenTypeStore.getTotalTokenCount + tokenTypeStore.getVocabularySize)
+
+  private val memoryContextStore = contextStore match {
+    case store: MemoryContextStore => store
+    case _ => null
+  }
+
+
   /**
    * Calculate a smoothed LM probability for a single token.
    *
@@ -37,7 +50,7 @@ class GenerativeContextSimilarity(tokenTypeStore: TokenTypeStore, contextStore:
     /* TODO: We use simple Laplace smoothing here because it does not require heldout estimation,
      but a more advanced smoothing method may be used here. */
 
-    MathUtil.ln(token.count + 1.0) - MathUtil.ln(tokenTypeStore.getTotalTokenCount + tokenTypeStore.getVocabularySize)
+    MathUtil.ln(token.count + 1.0) - lnLMTotal
   }
 
 
@@ -49,57 +62,122 @@ class GenerativeContextSimilarity(tokenTypeStore: TokenTypeStore, contextStore:
    * @return
    */
   def p(token: TokenType, res: DBpediaResource, cResAndToken: Int): Double = {
+    val totalTokenCount = contextStore.getTotalTokenCount(res)
+    val lm = lnOneMinusLambda + pLM(token)
 
-    val pML = if (cResAndToken == 0 || contextStore.getTotalTokenCount(res) == 0 )
-      0.0
+    if (cResAndToken == 0 || totalTokenCount == 0)
+      lm
     else
-      cResAndToken.toDouble / contextStore.getTotalTokenCount(res)
+      MathUtil.lnsum(lm, ml(cResAndToken, MathUtil.ln(totalTokenCount)))
+  }
+
+  /* Weighted maximum likelihood estimate of the token in the context of the resource. */
+  private def ml(cResAndToken: Int, lnTotalTokenCount: Double): Double =
+    lnLambda + MathUtil.ln(cResAndToken) - lnTotalTokenCount
 
-    val ml = MathUtil.lnproduct(MathUtil.ln(lambda), MathUtil.ln(pML))
-    val lm = MathUtil.lnproduct(MathUtil.ln(1-lambda), pLM(token))
 
-    MathUtil.lnsum( lm, if(ml.isNaN) MathUtil.LOGZERO else ml )
+  def score(query: Seq[TokenType], candidates: Set[DBpediaResource]): mutable.Map[DBpediaResource, Double] = {
+    val resources = candidates.toArray
+    val scores = scoreCandidates(query.toArray, resources)
+
+    val contextScores = mutable.HashMap[DBpediaResource, Double]()
+    var i = 0
+    while (i < resources.length) {
+      contextScores.put(resources(i), scores(i))
+      i += 1
+    }
+    contextScores
   }
 
-  def intersect(query: Seq[TokenType], res: DBpediaResource): Seq[(TokenType, Int)] = {
-    val (tokens, counts) = contextStore.getRawContextCounts(res)
-    if (tokens.length == 0) {
-      query.map( t => (t, 0))
+
+  /**
+   * Scores all candidates at once. The smoothed LM probabilities of the query tokens are
+   * calculated once per query, the context of each candidate is then merge-joined with
+   * the sorted query. Since the LM probability is never zero, the score of a candidate is the
+   * sum of the LM probabilities plus a correction for each query token in its context.
+   */
+  override def scoreCandidates(query: Array[TokenType], candidates: Array[DBpediaResource]): Array[Double] = LatencyMetrics.contextScoring.time {
+    val queryIds = new Array[Int](query.length)
+    val lm = new Array[Double](query.length)
+
+    var lmTotal = 0.0
+    var i = 0
+    while (i < query.length) {
+      queryIds(i) = query(i).id
+      lm(i) = lnOneMinusLambda + pLM(query(i))
+      lmTotal += lm(i)
+      i += 1
+    }
+
+    val scores = new Array[Double](candidates.length)
+    var c = 0
+    while (c < candidates.length) {
+      scores(c) = lmTotal + contextCorrection(queryIds, lm, candidates(c))
+      c += 1
+    }
+    scores
+  }
+
+  private def contextCorrection(queryIds: Array[Int], lm: Array[Double], res: DBpediaResource): Double = {
+    val totalTokenCount = contextStore.getTotalTokenCount(res)
+    if (totalTokenCount == 0)
+      return 0.0
+
+    val lnTotalTokenCount = MathUtil.ln(totalTokenCount)
+
+    var correction = 0.0
+    var i = 0
+
+    if (memoryContextStore != null) {
+      //Walk the row of the resource directly on the arrays of the store:
+      val tokenIds = memoryContextStore.tokenIds
+      val counts = memoryContextStore.counts
+      var j = memoryContextStore.rowStart(res.id)
+      val end = memoryContextStore.rowEnd(res.id)
+
+      while (i < queryIds.length && j < end) {
+        if (tokenIds(j) < queryIds(i)) {
+          j += 1
+        } else if (tokenIds(j) > queryIds(i)) {
+          i += 1
+        } else {
+          correction += correct(lm(i), memoryContextStore.qc(counts(j)), lnTotalTokenCount)
+          i += 1
+          j += 1
+        }
+      }
     } else {
+      val (tokenIds, counts) = contextStore.getRawContextCounts(res)
       var j = 0
-      query.map { t: TokenType =>
-        while(j < tokens.length-1 && tokens(j) < t.id) {
+
+      while (i < queryIds.length && j < tokenIds.length) {
+        if (tokenIds(j) < queryIds(i)) {
+          j += 1
+        } else if (tokenIds(j) > queryIds(i)) {
+          i += 1
+        } else {
+          correction += correct(lm(i), counts(j), lnTotalTokenCount)
+          i += 1
           j += 1
         }
-
-        if(tokens(j) == t.id) (t, counts(j))
-        else (t, 0)
       }
     }
 
+    correction
   }
 
-
-  def score(query: Seq[TokenType], candidates: Set[DBpediaResource]): mutable.Map[DBpediaResource, Double] = {
-    val contextScores = mutable.HashMap[DBpediaResource, Double]()
-
-    candidates.map( res => {
-      contextScores.put(
-        res,
-        MathUtil.lnproduct(
-          intersect(query, res).map({ case(token: TokenType, cResAndToken: Int) =>p(token, res, cResAndToken) })
-            .filter(s => !MathUtil.isLogZero(s))
-        )
-      )
-    })
-    contextScores
+  private def correct(lm: Double, cResAndToken: Int, lnTotalTokenCount: Double): Double = {
+    if (cResAndToken == 0)
+      0.0
+    else
+      MathUtil.lnsum(lm, ml(cResAndToken, lnTotalTokenCount)) - lm
   }
 
 
   def nilScore(query: Seq[TokenType]): Double = {
     MathUtil.lnproduct(
       query.map{ t: TokenType =>
-        MathUtil.lnproduct(MathUtil.ln(1-lambda), pLM(t))
+        MathUtil.lnproduct(lnOneMinusLambda, pLM(t))
       }
     )
   }
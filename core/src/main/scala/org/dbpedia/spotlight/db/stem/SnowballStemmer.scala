@@ -3,16 +3,29 @@ package org.dbpedia.spotlight.db.stem
 import org.dbpedia.spotlight.db.model.Stemmer
 import org.tartarus.snowball.SnowballProgram
 
-class SnowballStemmer(stemmer: SnowballProgram) extends Stemmer {
+/**
+ * Stemmer based on a Snowball stemming program. SnowballPrograms are stateful, hence
+ * each thread uses its own instance and the stemmer can be shared without locking.
+ */
+class SnowballStemmer(programClass: Class[_ <: SnowballProgram]) extends Stemmer {
 
   def this(s: String) {
-    this(Class.forName("org.tartarus.snowball.ext.%s".format(s)).newInstance().asInstanceOf[SnowballProgram])
+    this(Class.forName("org.tartarus.snowball.ext.%s".format(s)).asSubclass(classOf[SnowballProgram]))
   }
 
-  override def stem(token: String): String = this.synchronized {
-    stemmer.setCurrent(token.toLowerCase)
-    stemmer.stem()
-    stemmer.getCurrent
+  def this(stemmer: SnowballProgram) {
+    this(stemmer.getClass)
+  }
+
+  private val stemmer = new ThreadLocal[SnowballProgram] {
+    override def initialValue() = programClass.newInstance()
+  }
+
+  override def stem(token: String): String = {
+    val s = stemmer.get()
+    s.setCurrent(token.toLowerCase)
+    s.stem()
+    s.getCurrent
   }
 
 }
@@ -1,20 +1,47 @@
 package org.dbpedia.spotlight.db.tokenize
 
-import org.dbpedia.spotlight.model.{TokenType, Feature, Token, Text}
+import org.dbpedia.spotlight.model._
 import org.dbpedia.spotlight.db.model.{StringTokenizer, TextTokenizer, Stemmer, TokenTypeStore}
+import com.google.common.cache.{Cache, CacheBuilder}
 
 
 abstract class BaseTextTokenizer(tokenTypeStore: TokenTypeStore, stemmer: Stemmer) extends TextTokenizer {
 
-  def tokenize(text: Text): List[Token]
+  def tokenizeText(text: Text): TokenizedText
+
+  def tokenize(text: Text): List[Token] = tokenizeText(text).toTokens
 
   def tokenizeMaybe(text: Text) {
-    if(text.feature("tokens").isEmpty)
-      text.setFeature(new Feature("tokens", tokenize(text)))
+    if(text.feature(TokenizedText.FEATURE).isEmpty)
+      text.setFeature(new Feature(TokenizedText.FEATURE, tokenizeText(text)))
   }
 
-  protected def getStemmedTokenType(token: String): TokenType = tokenTypeStore.getTokenType(stemmer.stem(token))
+  /*
+   * Token frequencies are Zipfian, so most tokens are found in a bounded cache from the
+   * unstemmed token to its token type, skipping both the stemmer and the token type store.
+   */
+  private val tokenTypeCache: Cache[String, TokenType] = CacheBuilder.newBuilder()
+    .maximumSize(BaseTextTokenizer.TOKEN_TYPE_CACHE_SIZE)
+    .build[String, TokenType]()
+
+  protected def getStemmedTokenType(token: String): TokenType = {
+    val cached = tokenTypeCache.getIfPresent(token)
+    if (cached != null) {
+      cached
+    } else {
+      val tokenType = tokenTypeStore.getTokenType(stemmer.stem(token))
+      tokenTypeCache.put(token, tokenType)
+      tokenType
+    }
+  }
 
   def getStringTokenizer: StringTokenizer
 
 }
+
+object BaseTextTokenizer {
+
+  //Maximum number of cached token types per tokenizer, set with -Dspotlight.tokenizer.cacheSize:
+  val TOKEN_TYPE_CACHE_SIZE: Long = java.lang.Long.getLong("spotlight.tokenizer.cacheSize", 100000L).longValue()
+
+}
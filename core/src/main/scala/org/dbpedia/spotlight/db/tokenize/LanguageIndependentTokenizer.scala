@@ -1,12 +1,13 @@
 package org.dbpedia.spotlight.db.tokenize
 
 import org.tartarus.snowball.SnowballProgram
-import org.dbpedia.spotlight.model.{Feature, TokenType, Token, Text}
+import org.dbpedia.spotlight.model.{TokenizedText, TokenType, Text}
 import opennlp.tools.util.Span
 import java.util.Locale
 import java.text.BreakIterator
 import collection.mutable.ArrayBuffer
 import org.dbpedia.spotlight.db.model.{TokenTypeStore, Stemmer}
+import org.dbpedia.spotlight.util.LatencyMetrics
 
 
 /**
@@ -22,28 +23,34 @@ class LanguageIndependentTokenizer(
 
   def getStringTokenizer: BaseStringTokenizer = new LanguageIndependentStringTokenizer(locale, stemmer)
 
-  def tokenize(text: Text): List[Token] = {
+  def tokenizeText(text: Text): TokenizedText = {
+    val start = System.nanoTime()
+    val tokenizedText = new TokenizedText.Builder(text.text)
 
-    Helper.tokenizeSentences(locale, text.text).map{ sentencePos: Span =>
+    Helper.tokenizeSentences(locale, text.text).foreach{ sentencePos: Span =>
 
       val sentence = text.text.substring(sentencePos.getStart, sentencePos.getEnd)
 
       val sentenceTokenPos = Helper.tokenizeWords(locale, sentence)
-      val sentenceTokens   = sentenceTokenPos.map(s => sentence.substring(s.getStart, s.getEnd))
 
-      (0 to sentenceTokens.size-1).map{ i: Int =>
-        val token = if (stopWords contains sentenceTokens(i)) {
-          new Token(sentenceTokens(i), sentencePos.getStart + sentenceTokenPos(i).getStart, TokenType.STOPWORD)
-        } else {
-          new Token(sentenceTokens(i), sentencePos.getStart + sentenceTokenPos(i).getStart, getStemmedTokenType(sentenceTokens(i)))
-        }
+      var i = 0
+      while (i < sentenceTokenPos.size) {
+        val sentenceToken = sentence.substring(sentenceTokenPos(i).getStart, sentenceTokenPos(i).getEnd)
+        val tokenType = if (stopWords contains sentenceToken)
+          TokenType.STOPWORD
+        else
+          getStemmedTokenType(sentenceToken)
 
-        if(i == sentenceTokens.size-1)
-          token.setFeature(new Feature("end-of-sentence", true))
-
-        token
+        tokenizedText.add(sentencePos.getStart + sentenceTokenPos(i).getStart, sentencePos.getStart + sentenceTokenPos(i).getEnd, tokenType, null)
+        i += 1
       }
-    }.flatten.toList
+
+      tokenizedText.endSentence()
+    }
+
+    val result = tokenizedText.build()
+    LatencyMetrics.tokenization.recordSince(start)
+    result
   }
 }
 
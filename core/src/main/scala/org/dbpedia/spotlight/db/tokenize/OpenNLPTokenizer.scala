@@ -1,59 +1,129 @@
 package org.dbpedia.spotlight.db.tokenize
 
-import opennlp.tools.sentdetect.SentenceDetector
-import opennlp.tools.postag.POSTagger
-import org.dbpedia.spotlight.model.{Feature, TokenType, Token, Text}
+import opennlp.tools.sentdetect.{SentenceModel, SentenceDetectorME}
+import opennlp.tools.postag.{POSModel, POSTaggerME}
+import opennlp.tools.tokenize.{TokenizerModel, TokenizerME}
+import org.dbpedia.spotlight.model.{TokenizedText, TokenType, Text}
 import opennlp.tools.util.Span
 import org.dbpedia.spotlight.db.model.{TokenTypeStore, Stemmer}
+import org.dbpedia.spotlight.util.{OpenNLPMetrics, LatencyMetrics}
 
 /**
  * @author Joachim Daiber
+ *
+ * The tokenizer is thread-safe: the OpenNLP models are loaded once and shared, each thread uses
+ * its own TokenizerME, SentenceDetectorME and POSTaggerME instances for them. The sentences of
+ * large documents are tokenized and tagged in parallel.
  */
 
 class OpenNLPTokenizer(
-  tokenizer: opennlp.tools.tokenize.Tokenizer,
+  tokenizerModel: TokenizerModel,
   stopWords: Set[String],
   stemmer: Stemmer,
-  sentenceDetector: SentenceDetector,
-  var posTagger: POSTagger,
+  sentenceModel: SentenceModel,
+  posModel: Option[POSModel],
   tokenTypeStore: TokenTypeStore
 ) extends BaseTextTokenizer(tokenTypeStore, stemmer) {
 
-  def tokenize(text: Text): List[Token] = this.synchronized {
-    sentenceDetector.sentPosDetect(text.text).map{ sentencePos: Span =>
+  private val tokenizer = new ThreadLocal[TokenizerME] {
+    override def initialValue() = {
+      OpenNLPMetrics.created("tokenizer")
+      new TokenizerME(tokenizerModel)
+    }
+  }
+
+  private val sentenceDetector = new ThreadLocal[SentenceDetectorME] {
+    override def initialValue() = {
+      OpenNLPMetrics.created("sentence_detector")
+      new SentenceDetectorME(sentenceModel)
+    }
+  }
+
+  private val posTagger = new ThreadLocal[Option[POSTaggerME]] {
+    override def initialValue() = posModel match {
+      case Some(m) => {
+        OpenNLPMetrics.created("pos_tagger")
+        Some(new POSTaggerME(m))
+      }
+      case None => None
+    }
+  }
 
-      val sentence = text.text.substring(sentencePos.getStart, sentencePos.getEnd)
+  private class TokenizedSentence(val start: Int, val tokenPos: Array[Span], val tokenTypes: Array[TokenType], val posTags: Array[String])
 
-      val sentenceTokens   = tokenizer.tokenize(sentence)
-      val sentenceTokenPos = tokenizer.tokenizePos(sentence)
-      val posTags          = if(posTagger != null) posTagger.tag(sentenceTokens) else Array[String]()
+  private def tokenizeSentence(text: String, sentencePos: Span): TokenizedSentence = {
 
-      (0 to sentenceTokens.size-1).map{ i: Int =>
-        val token = if (stopWords contains sentenceTokens(i)) {
-          new Token(sentenceTokens(i), sentencePos.getStart + sentenceTokenPos(i).getStart, TokenType.STOPWORD)
-        } else {
-          new Token(sentenceTokens(i), sentencePos.getStart + sentenceTokenPos(i).getStart, getStemmedTokenType(sentenceTokens(i)))
-        }
+    val sentence = text.substring(sentencePos.getStart, sentencePos.getEnd)
 
-        if(posTagger != null)
-          token.setFeature(new Feature("pos", posTags(i)))
+    val sentenceTokenPos = tokenizer.get().tokenizePos(sentence)
+    val sentenceTokens   = sentenceTokenPos.map(s => sentence.substring(s.getStart, s.getEnd))
+    val posTags          = posTagger.get() match {
+      case Some(t) => t.tag(sentenceTokens)
+      case None => null
+    }
 
-        if(i == sentenceTokens.size-1)
-          token.setFeature(new Feature("end-of-sentence", true))
+    val tokenTypes = sentenceTokens.map{ token: String =>
+      if (stopWords contains token)
+        TokenType.STOPWORD
+      else
+        getStemmedTokenType(token)
+    }
+
+    new TokenizedSentence(sentencePos.getStart, sentenceTokenPos, tokenTypes, posTags)
+  }
 
-        token
+  def tokenizeText(text: Text): TokenizedText = {
+    val start = System.nanoTime()
+    val sentences = sentenceDetector.get().sentPosDetect(text.text)
+
+    //Sentences of large documents are tokenized and tagged in parallel:
+    val tokenizedSentences = if (sentences.length >= OpenNLPTokenizer.PARALLEL_SENTENCES)
+      sentences.par.map(tokenizeSentence(text.text, _)).seq
+    else
+      sentences.toSeq.map(tokenizeSentence(text.text, _))
+
+    val tokenizedText = new TokenizedText.Builder(text.text)
+    tokenizedSentences.foreach{ sentence: TokenizedSentence =>
+      var i = 0
+      while (i < sentence.tokenPos.length) {
+        tokenizedText.add(
+          sentence.start + sentence.tokenPos(i).getStart,
+          sentence.start + sentence.tokenPos(i).getEnd,
+          sentence.tokenTypes(i),
+          if (sentence.posTags != null) sentence.posTags(i) else null
+        )
+        i += 1
       }
-    }.flatten.toList
+      tokenizedText.endSentence()
+    }
+
+    val result = tokenizedText.build()
+    LatencyMetrics.tokenization.recordSince(start)
+    result
   }
 
-  def getStringTokenizer: BaseStringTokenizer = new OpenNLPStringTokenizer(tokenizer, stemmer)
+  def getStringTokenizer: BaseStringTokenizer = new OpenNLPStringTokenizer(tokenizerModel, stemmer)
 
 }
 
-class OpenNLPStringTokenizer(tokenizer: opennlp.tools.tokenize.Tokenizer, stemmer: Stemmer) extends BaseStringTokenizer(stemmer) {
+object OpenNLPTokenizer {
+
+  //Minimum number of sentences of a document to tokenize them in parallel:
+  val PARALLEL_SENTENCES = 16
+
+}
+
+class OpenNLPStringTokenizer(tokenizerModel: TokenizerModel, stemmer: Stemmer) extends BaseStringTokenizer(stemmer) {
+
+  private val tokenizer = new ThreadLocal[TokenizerME] {
+    override def initialValue() = {
+      OpenNLPMetrics.created("tokenizer")
+      new TokenizerME(tokenizerModel)
+    }
+  }
 
-  def tokenizeUnstemmed(text: String): Seq[String] = this.synchronized{ tokenizer.tokenize(text) }
+  def tokenizeUnstemmed(text: String): Seq[String] = tokenizer.get().tokenize(text)
 
-  def tokenizePos(text: String): Array[Span] = this.synchronized{ tokenizer.tokenizePos(text) }
+  def tokenizePos(text: String): Array[Span] = tokenizer.get().tokenizePos(text)
 
 }
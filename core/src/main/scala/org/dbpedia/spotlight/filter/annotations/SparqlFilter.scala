@@ -29,14 +29,15 @@ import scala.collection.JavaConversions._
 
 class SparqlFilter(val executer : SparqlQueryExecuter, val sparqlQuery: String, val listColor : FilterPolicy.ListColor) extends AnnotationFilter with FilterElement  {
 
-    val uriSet =
+    //Repeated queries are answered from the cache of the executer:
+    val uriSet: java.util.Set[String] =
         if(sparqlQuery != null && sparqlQuery != "") {
-            val s = executer.query(sparqlQuery).asScala.map( r => r.uri ).toSet
+            val s = executer.resolve(sparqlQuery)
             SpotlightLog.debug(this.getClass, "SPARQL %s:%s", listColor, s)
             s
         }
         else {
-            Set[String]()
+            java.util.Collections.emptySet[String]()
         }
 
     private val acceptable = listColor match {
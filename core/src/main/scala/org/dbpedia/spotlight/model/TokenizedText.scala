@@ -0,0 +1,173 @@
+package org.dbpedia.spotlight.model
+
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import java.util.concurrent.{CopyOnWriteArrayList, ConcurrentHashMap}
+
+/**
+ * A tokenized [[org.dbpedia.spotlight.model.Text]] in columnar form: the i-th token is described
+ * by the i-th element of each array. Sentences are stored as the exclusive end of their last token,
+ * hence the tokens of sentence s are sentenceStart(s) until sentenceEnd(s).
+ *
+ * Tokenizers produce a TokenizedText directly and store it as a feature of the Text, so that spotters
+ * and disambiguators can work on the arrays without creating an object per token.
+ *
+ * @param text the tokenized text
+ * @param offsets character offset of each token in the text
+ * @param ends exclusive character end of each token in the text
+ * @param tokenTypeIds token type ID of each token
+ * @param tokenTypes token type of each token
+ * @param posIds POS tag ID of each token (see [[org.dbpedia.spotlight.model.TokenizedText.posTag]]), NO_POS if not tagged
+ * @param sentenceEnds exclusive end token of each sentence
+ */
+class TokenizedText(
+  val text: String,
+  val offsets: Array[Int],
+  val ends: Array[Int],
+  val tokenTypeIds: Array[Int],
+  val tokenTypes: Array[TokenType],
+  val posIds: Array[Int],
+  val sentenceEnds: Array[Int]
+) {
+
+  def size: Int = offsets.length
+
+  def sentenceCount: Int = sentenceEnds.length
+
+  def sentenceStart(sentence: Int): Int = if (sentence == 0) 0 else sentenceEnds(sentence - 1)
+
+  def sentenceEnd(sentence: Int): Int = sentenceEnds(sentence)
+
+  def token(i: Int): String = text.substring(offsets(i), ends(i))
+
+  def tokens(start: Int, end: Int): Array[String] = {
+    val t = new Array[String](end - start)
+    var i = start
+    while (i < end) {
+      t(i - start) = token(i)
+      i += 1
+    }
+    t
+  }
+
+  def posTag(i: Int): String = if (posIds(i) == TokenizedText.NO_POS) null else TokenizedText.posTag(posIds(i))
+
+  def posTags(start: Int, end: Int): Array[String] = {
+    val t = new Array[String](end - start)
+    var i = start
+    while (i < end) {
+      t(i - start) = posTag(i)
+      i += 1
+    }
+    t
+  }
+
+  /**
+   * Returns the tokens as [[org.dbpedia.spotlight.model.Token]]s with the features "pos" and "end-of-sentence".
+   */
+  def toTokens: List[Token] = {
+    val tokenList = List.newBuilder[Token]
+
+    var s = 0
+    while (s < sentenceCount) {
+      var i = sentenceStart(s)
+      while (i < sentenceEnd(s)) {
+        val t = new Token(token(i), offsets(i), tokenTypes(i))
+
+        if (posIds(i) != TokenizedText.NO_POS)
+          t.setFeature(new Feature("pos", posTag(i)))
+
+        if (i == sentenceEnd(s) - 1)
+          t.setFeature(new Feature("end-of-sentence", true))
+
+        tokenList += t
+        i += 1
+      }
+      s += 1
+    }
+
+    tokenList.result()
+  }
+
+}
+
+object TokenizedText {
+
+  //Name of the feature of a Text that holds its TokenizedText:
+  val FEATURE = "tokenized_text"
+
+  val NO_POS = -1
+
+  /*
+   * POS tags are shared by all texts, there are only a few dozen of them per tag set.
+   */
+  private val posTagIds = new ConcurrentHashMap[String, Integer]()
+  private val posTagNames = new CopyOnWriteArrayList[String]()
+
+  def posTagId(tag: String): Int = {
+    val id = posTagIds.get(tag)
+    if (id != null)
+      id.intValue
+    else posTagIds.synchronized {
+      val existing = posTagIds.get(tag)
+      if (existing != null) {
+        existing.intValue
+      } else {
+        posTagNames.add(tag)
+        val newId = posTagNames.size - 1
+        posTagIds.put(tag, newId)
+        newId
+      }
+    }
+  }
+
+  def posTag(id: Int): String = posTagNames.get(id)
+
+  /**
+   * Returns the TokenizedText of a text if it was tokenized before.
+   */
+  def of(text: Text): Option[TokenizedText] = text.featureValue[TokenizedText](FEATURE)
+
+  /**
+   * Collects the tokens of a text sentence by sentence.
+   */
+  class Builder(text: String) {
+
+    private val offsets = new IntArrayList()
+    private val ends = new IntArrayList()
+    private val tokenTypeIds = new IntArrayList()
+    private val tokenTypes = new java.util.ArrayList[TokenType]()
+    private val posIds = new IntArrayList()
+    private val sentenceEnds = new IntArrayList()
+
+    def add(offset: Int, end: Int, tokenType: TokenType, posTag: String) {
+      offsets.add(offset)
+      ends.add(end)
+      tokenTypeIds.add(tokenType.id)
+      tokenTypes.add(tokenType)
+      posIds.add(if (posTag == null) NO_POS else posTagId(posTag))
+    }
+
+    /**
+     * Ends the current sentence, empty sentences are skipped.
+     */
+    def endSentence() {
+      val lastEnd = if (sentenceEnds.isEmpty) 0 else sentenceEnds.getInt(sentenceEnds.size - 1)
+      if (offsets.size > lastEnd)
+        sentenceEnds.add(offsets.size)
+    }
+
+    def build(): TokenizedText = {
+      endSentence()
+      new TokenizedText(
+        text,
+        offsets.toIntArray,
+        ends.toIntArray,
+        tokenTypeIds.toIntArray,
+        tokenTypes.toArray(new Array[TokenType](tokenTypes.size)),
+        posIds.toIntArray,
+        sentenceEnds.toIntArray
+      )
+    }
+  }
+
+}
@@ -0,0 +1,126 @@
+package org.dbpedia.spotlight.util
+
+import java.util.concurrent.atomic.{AtomicLong, AtomicLongArray}
+
+/**
+ * A histogram of latencies in nanoseconds with a bounded relative error, similar to an HdrHistogram.
+ *
+ * Values below SUB_BUCKETS are counted exactly. Each larger power of two is split into SUB_BUCKETS
+ * linear buckets, hence a value is reported with a relative error below 1/SUB_BUCKETS (about 3%).
+ * Recording is lock-free and does not allocate, so that it can be used on every request.
+ * Values above MAX_VALUE are counted as MAX_VALUE.
+ */
+class LatencyHistogram {
+
+  import LatencyHistogram._
+
+  private val counts = new AtomicLongArray(BUCKETS)
+  private val count = new AtomicLong(0)
+  private val sum = new AtomicLong(0)
+  private val max = new AtomicLong(0)
+
+  def record(nanos: Long) {
+    val value = if (nanos < 0) 0L else if (nanos > MAX_VALUE) MAX_VALUE else nanos
+
+    counts.incrementAndGet(bucket(value))
+    count.incrementAndGet()
+    sum.addAndGet(value)
+
+    var m = max.get()
+    while (value > m && !max.compareAndSet(m, value))
+      m = max.get()
+  }
+
+  /**
+   * Records the time since start, which must be a value of System.nanoTime.
+   */
+  def recordSince(start: Long) {
+    record(System.nanoTime() - start)
+  }
+
+  /**
+   * Runs body and records its time.
+   */
+  def time[T](body: => T): T = {
+    val start = System.nanoTime()
+    try {
+      body
+    } finally {
+      recordSince(start)
+    }
+  }
+
+  def getCount: Long = count.get()
+
+  def getSum: Long = sum.get()
+
+  def getMax: Long = max.get()
+
+  /**
+   * Returns the smallest recorded value (within the precision of the histogram) such that the
+   * given fraction of all recorded values is less than or equal to it.
+   *
+   * @param quantile the fraction, between 0 and 1
+   * @return the value in nanoseconds, 0 if nothing was recorded
+   */
+  def getValueAtQuantile(quantile: Double): Long = {
+    val total = count.get()
+    if (total == 0)
+      return 0
+
+    val target = math.max(1L, math.ceil(quantile * total).toLong)
+
+    var seen = 0L
+    var i = 0
+    while (i < BUCKETS) {
+      seen += counts.get(i)
+      if (seen >= target)
+        return math.min(highestValueIn(i), max.get())
+      i += 1
+    }
+    max.get()
+  }
+
+}
+
+object LatencyHistogram {
+
+  val SUB_BUCKET_BITS = 5
+  val SUB_BUCKETS = 1 << SUB_BUCKET_BITS
+
+  //Largest value that can be recorded, about 18 minutes:
+  val MAX_MAGNITUDE = 40
+  val MAX_VALUE: Long = (1L << (MAX_MAGNITUDE + 1)) - 1
+
+  val BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS
+
+  /*
+   * Values up to 2 * SUB_BUCKETS map to themselves. Larger values are shifted to SUB_BUCKET_BITS + 1
+   * significant bits, the shift selects the group of buckets and the lower bits the bucket in the group.
+   */
+  def bucket(value: Long): Int = {
+    if (value < SUB_BUCKETS)
+      value.toInt
+    else {
+      val shift = 63 - java.lang.Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS
+      (shift + 1) * SUB_BUCKETS + ((value >>> shift) & (SUB_BUCKETS - 1)).toInt
+    }
+  }
+
+  def lowestValueIn(bucket: Int): Long = {
+    val group = bucket / SUB_BUCKETS
+    if (group == 0)
+      bucket
+    else
+      (SUB_BUCKETS + bucket % SUB_BUCKETS).toLong << (group - 1)
+  }
+
+  def highestValueIn(bucket: Int): Long = {
+    val group = bucket / SUB_BUCKETS
+    if (group == 0)
+      bucket
+    else
+      lowestValueIn(bucket) + (1L << (group - 1)) - 1
+  }
+
+}
@@ -0,0 +1,69 @@
+package org.dbpedia.spotlight.util
+
+import java.util.concurrent.ConcurrentHashMap
+import scala.collection.JavaConverters._
+
+/**
+ * Latency histograms of the stages of a request, shared by all components of the JVM.
+ *
+ * Each stage records the time of every call into its [[org.dbpedia.spotlight.util.LatencyHistogram]],
+ * the histograms can be exported in the Prometheus text format to be scraped by a monitoring system.
+ */
+object LatencyMetrics {
+
+  private val stages = new ConcurrentHashMap[String, LatencyHistogram]()
+
+  /**
+   * Returns the histogram of the stage, it is created on first use.
+   */
+  def stage(name: String): LatencyHistogram = {
+    val histogram = stages.get(name)
+    if (histogram != null)
+      histogram
+    else {
+      stages.putIfAbsent(name, new LatencyHistogram())
+      stages.get(name)
+    }
+  }
+
+  //Stages of the core components:
+  val tokenization = stage("tokenization")
+  val spotting = stage("spotting")
+  val spotCandidates = stage("spot_candidate_generation")
+  val candidateLookup = stage("candidate_lookup")
+  val contextScoring = stage("context_scoring")
+  val disambiguation = stage("disambiguation")
+
+  //Stages of the server, annotation is the time of all stages before the serialization:
+  val filtering = stage("filtering")
+  val annotation = stage("annotation")
+  val serialization = stage("serialization")
+  val jsonConversion = stage("json_conversion")
+
+  val QUANTILES = List(0.5, 0.9, 0.99, 0.999)
+
+  /**
+   * Writes all histograms as a Prometheus summary with the stage as a label. The values are in
+   * seconds and cumulative since the start of the JVM.
+   */
+  def toPrometheus: String = {
+    val out = new StringBuilder()
+    val metric = "spotlight_stage_latency_seconds"
+
+    out.append("# HELP %s Latency of the stages of a request.\n".format(metric))
+    out.append("# TYPE %s summary\n".format(metric))
+
+    stages.asScala.toList.sortBy(_._1).foreach{ case (name, histogram) =>
+      QUANTILES.foreach{ q: Double =>
+        out.append("%s{stage=\"%s\",quantile=\"%s\"} %s\n".format(metric, name, q, seconds(histogram.getValueAtQuantile(q))))
+      }
+      out.append("%s_sum{stage=\"%s\"} %s\n".format(metric, name, seconds(histogram.getSum)))
+      out.append("%s_count{stage=\"%s\"} %d\n".format(metric, name, histogram.getCount))
+    }
+
+    out.toString()
+  }
+
+  private def seconds(nanos: Long): String = (nanos / 1e9).toString
+
+}
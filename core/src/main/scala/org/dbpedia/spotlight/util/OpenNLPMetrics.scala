@@ -0,0 +1,54 @@
+package org.dbpedia.spotlight.util
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import scala.collection.JavaConverters._
+
+/**
+ * Counts the instances of the OpenNLP components that are created, shared by all components of the JVM.
+ *
+ * The OpenNLP components (TokenizerME, ChunkerME, NameFinderME etc.) are not thread-safe, each thread that uses
+ * one creates its own instance of it on first use. The counts show how many instances the request threads
+ * needed, they can be exported in the Prometheus text format like the [[org.dbpedia.spotlight.util.LatencyMetrics]].
+ */
+object OpenNLPMetrics {
+
+  private val instances = new ConcurrentHashMap[String, AtomicLong]()
+
+  private def counter(component: String): AtomicLong = {
+    val count = instances.get(component)
+    if (count != null)
+      count
+    else {
+      instances.putIfAbsent(component, new AtomicLong())
+      instances.get(component)
+    }
+  }
+
+  /**
+   * Counts a new instance of the component, it is called when a thread creates its own instance.
+   */
+  def created(component: String) {
+    counter(component).incrementAndGet()
+  }
+
+  def getCreated(component: String): Long = counter(component).get()
+
+  /**
+   * Writes the number of instances of each component as a Prometheus counter with the component as a label.
+   */
+  def toPrometheus: String = {
+    val out = new StringBuilder()
+    val metric = "spotlight_opennlp_instances_created_total"
+
+    out.append("# HELP %s Instances of the OpenNLP components created by the threads that use them.\n".format(metric))
+    out.append("# TYPE %s counter\n".format(metric))
+
+    instances.asScala.toList.sortBy(_._1).foreach{ case (name, count) =>
+      out.append("%s{component=\"%s\"} %d\n".format(metric, name, count.get()))
+    }
+
+    out.toString()
+  }
+
+}
@@ -0,0 +1,47 @@
+package org.dbpedia.spotlight.db
+
+import org.junit.Test
+import org.junit.Assert._
+import collection.mutable
+
+/**
+ * Tests the transitions of the double-array trie spotter dictionary.
+ */
+class DoubleArrayFSADictionaryTest {
+
+  //Dictionary for the token sequences [5], [5, 7], [5, 7, 9] and [100000, 3]:
+  val dictionary = DoubleArrayFSADictionary.fromTrie(
+    IndexedSeq(
+      mutable.Map(5 -> 1, 100000 -> 3),
+      mutable.Map(7 -> 2),
+      mutable.Map[Int, Int](),
+      mutable.Map[Int, Int]()
+    ),
+    IndexedSeq(Set[Int](5), Set[Int](), Set(9), Set(3))
+  )
+
+  @Test
+  def acceptsSequences() {
+    val t1 = dictionary.transition(FSASpotter.INITIAL_STATE, 5)
+    assertTrue(FSASpotter.isAccepting(t1))
+
+    val t2 = dictionary.transition(FSASpotter.nextState(t1), 7)
+    assertFalse(FSASpotter.isAccepting(t2))
+    assertTrue(FSASpotter.nextState(t2) != FSASpotter.INITIAL_STATE)
+
+    val t3 = dictionary.transition(FSASpotter.nextState(t2), 9)
+    assertTrue(FSASpotter.isAccepting(t3))
+    assertEquals(FSASpotter.INITIAL_STATE, FSASpotter.nextState(t3))
+
+    val t4 = dictionary.transition(FSASpotter.nextState(dictionary.transition(FSASpotter.INITIAL_STATE, 100000)), 3)
+    assertTrue(FSASpotter.isAccepting(t4))
+  }
+
+  @Test
+  def rejectsUnknownTokens() {
+    assertEquals(FSASpotter.NO_TRANSITION, dictionary.transition(FSASpotter.INITIAL_STATE, 7))
+    assertEquals(FSASpotter.NO_TRANSITION, dictionary.transition(FSASpotter.INITIAL_STATE, 3))
+    assertEquals(FSASpotter.NO_TRANSITION, dictionary.transition(FSASpotter.nextState(dictionary.transition(FSASpotter.INITIAL_STATE, 5)), 9))
+  }
+
+}
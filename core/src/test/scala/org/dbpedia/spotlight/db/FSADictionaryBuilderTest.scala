@@ -0,0 +1,51 @@
+package org.dbpedia.spotlight.db
+
+import org.junit.Test
+import org.junit.Assert._
+
+/**
+ * Tests the incremental construction of the minimal spotter dictionary.
+ */
+class FSADictionaryBuilderTest {
+
+  val sequences = Seq(Array(1, 2), Array(1, 2, 3), Array(4, 2), Array(4, 2, 3), Array(7))
+
+  def accepts(dictionary: SpotterDictionary, sequence: Array[Int]): Boolean = {
+    var state = FSASpotter.INITIAL_STATE
+    var transition = FSASpotter.NO_TRANSITION
+    var i = 0
+    while (i < sequence.length) {
+      if (i > 0 && state == FSASpotter.INITIAL_STATE)
+        return false
+      transition = dictionary.transition(state, sequence(i))
+      state = FSASpotter.nextState(transition)
+      i += 1
+    }
+    FSASpotter.isAccepting(transition)
+  }
+
+  @Test
+  def buildsMinimalDictionary() {
+    val builder = new FSADictionaryBuilder()
+    FSADictionaryBuilder.mergeRuns(Seq(FSADictionaryBuilder.writeRun(sequences.reverse), FSADictionaryBuilder.writeRun(sequences.take(2))), builder)
+    val dictionary = builder.build()
+
+    assertEquals(sequences.size, builder.size)
+    sequences.foreach(s => assertTrue(accepts(dictionary, s)))
+
+    assertFalse(accepts(dictionary, Array(1)))
+    assertFalse(accepts(dictionary, Array(2, 3)))
+    assertFalse(accepts(dictionary, Array(7, 2)))
+
+    //Root, the state after 1/4, the state after 1 2/4 2 and the final state after 1 2 3/4 2 3/7 are shared:
+    assertEquals(4, dictionary.size)
+  }
+
+  @Test(expected = classOf[IllegalArgumentException])
+  def rejectsUnsortedInput() {
+    val builder = new FSADictionaryBuilder()
+    builder.add(Array(2))
+    builder.add(Array(1))
+  }
+
+}
@@ -0,0 +1,50 @@
+package org.dbpedia.spotlight.db.memory
+
+import org.junit.Test
+import org.junit.Assert._
+
+/**
+ * Tests replacing rows of the compressed sparse rows of the MemoryContextStore.
+ */
+class MemoryContextStoreTest {
+
+  private def row(store: MemoryContextStore, id: Int): (List[Int], List[Short]) =
+    (store.tokenIds.slice(store.rowStart(id), store.rowEnd(id)).toList, store.counts.slice(store.rowStart(id), store.rowEnd(id)).toList)
+
+  private def counts(tokens: Array[Int]): Array[Short] = tokens.map(t => (t * 10).toShort)
+
+  @Test
+  def updateRows() {
+    val tokenRows = Array(Array(1, 2), Array(3), null, Array(4, 5, 6), Array(7), Array(8, 9))
+    val store = new MemoryContextStore()
+    store.setRows(tokenRows, tokenRows.map(r => if (r == null) null else counts(r)))
+    assertEquals(6, store.size)
+
+    //First row, adjacent rows, the last row and a row after the current size:
+    val ids = Array(0, 2, 3, 5, 7)
+    val newRows = Array(Array(10, 11, 12), Array(13), Array[Int](), Array(14, 15), Array(16))
+    store.updateRows(8, ids, newRows, newRows.map(counts))
+
+    val expected = Array(Array(10, 11, 12), Array(3), Array(13), Array[Int](), Array(7), Array(14, 15), Array[Int](), Array(16))
+    assertEquals(expected.length, store.size)
+    assertEquals(expected.map(_.length).sum, store.tokenIds.length)
+
+    (0 until expected.length).foreach{ id: Int =>
+      assertEquals("row %d".format(id), (expected(id).toList, counts(expected(id)).toList), row(store, id))
+    }
+  }
+
+  @Test
+  def appendOnly() {
+    val store = new MemoryContextStore()
+    store.setRows(Array(Array(1), Array(2, 3)), Array(counts(Array(1)), counts(Array(2, 3))))
+
+    store.updateRows(4, Array(3), Array(Array(4)), Array(counts(Array(4))))
+
+    assertEquals((List(1), counts(Array(1)).toList), row(store, 0))
+    assertEquals((List(2, 3), counts(Array(2, 3)).toList), row(store, 1))
+    assertEquals((Nil, Nil), row(store, 2))
+    assertEquals((List(4), counts(Array(4)).toList), row(store, 3))
+  }
+
+}
@@ -0,0 +1,42 @@
+package org.dbpedia.spotlight.db.memory
+
+import java.io.{FileInputStream, File}
+import org.junit.Test
+import org.junit.Assert._
+
+/**
+ * Tests the dense dequantization table of the MemoryQuantizedCountStore.
+ */
+class MemoryQuantizedCountStoreTest {
+
+  @Test
+  def addAndGet() {
+    val store = new MemoryQuantizedCountStore()
+    val counts = List(0, 1, 42, 1000000, Int.MaxValue)
+    val quantized = counts.map(store.addCount)
+
+    assertEquals(quantized, counts.map(store.addCount))
+    assertEquals(counts, quantized.map(store.getCount))
+    assertEquals(counts.size, store.size)
+  }
+
+  @Test
+  def dumpAndLoad() {
+    val store = new MemoryQuantizedCountStore()
+    val quantized = List(3, 5, 7).map(store.addCount)
+
+    val file = File.createTempFile("quantized_counts", ".mem")
+    file.deleteOnExit()
+    MemoryStore.dump(store, file)
+
+    val loaded = MemoryStore.loadQuantizedCountStore(new FileInputStream(file))
+    assertEquals(List(3, 5, 7), quantized.map(loaded.getCount))
+
+    //New counts continue after the loaded ones:
+    val q = loaded.addCount(11)
+    assertFalse(quantized.contains(q))
+    assertEquals(11, loaded.getCount(q))
+    assertEquals(5, loaded.getCount(loaded.addCount(5)))
+  }
+
+}
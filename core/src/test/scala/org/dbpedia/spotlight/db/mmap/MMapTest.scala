@@ -0,0 +1,49 @@
+package org.dbpedia.spotlight.db.mmap
+
+import java.io.File
+import org.junit.Test
+import org.junit.Assert._
+
+/**
+ * Tests reading back the files of the memory-mapped store format.
+ */
+class MMapTest {
+
+  private def tempFolder(): File = {
+    val folder = File.createTempFile("mmap", "")
+    folder.delete()
+    folder.mkdirs()
+    folder.deleteOnExit()
+    folder
+  }
+
+  @Test
+  def intRows() {
+    val folder = tempFolder()
+    MMap.writeIntRows(new File(folder, "offsets"), new File(folder, "values"), Array(Array(1, 2, 3), null, Array(4)))
+
+    val offsets = new MMapIntArray(new File(folder, "offsets"))
+    val values = new MMapIntArray(new File(folder, "values"))
+
+    assertEquals(4, offsets.length)
+    assertEquals(3, offsets(1))
+    assertEquals(offsets(1), offsets(2))
+    assertEquals(4, values(offsets(2)))
+  }
+
+  @Test
+  def stringTable() {
+    val folder = tempFolder()
+    MMap.writeStrings(folder, "sf", Array(null, "Berlin", "Bärlin", "Paris"))
+
+    val table = new MMapStringTable(folder, "sf")
+
+    assertEquals(4, table.size)
+    assertNull(table(0))
+    assertEquals("Bärlin", table(2))
+    assertEquals(3, table.indexOf("Paris"))
+    assertEquals(1, table.indexOf("Berlin"))
+    assertEquals(-1, table.indexOf("London"))
+  }
+
+}
@@ -14,4 +14,12 @@ class SnowballStemmerTest  {
     assertTrue( "buy".equals(snowballStemmer.stem("buying")))
     assertTrue( "poni".equals(snowballStemmer.stem("ponies")))
   }
+
+  @Test
+  def concurrentStemming(){
+    val snowballStemmer = new SnowballStemmer("EnglishStemmer")
+    val tokens = (1 to 10000).map(i => if (i % 2 == 0) "buying" else "ponies")
+    val stems = tokens.par.map(snowballStemmer.stem(_)).seq
+    assertTrue( stems.zip(tokens).forall{ case (stem, token) => stem.equals(if (token equals "buying") "buy" else "poni") } )
+  }
 }
@@ -0,0 +1,56 @@
+package org.dbpedia.spotlight.model
+
+import org.junit.Test
+import org.junit.Assert._
+
+/**
+ * Tests the columnar TokenizedText and its conversion to Tokens.
+ */
+class TokenizedTextTest {
+
+  def berlin: TokenizedText = {
+    val text = "Berlin is big. It is old."
+    val builder = new TokenizedText.Builder(text)
+    builder.add(0, 6, new TokenType(1, "berlin", 10), "NNP")
+    builder.add(7, 9, TokenType.STOPWORD, "VBZ")
+    builder.add(10, 13, new TokenType(2, "big", 5), "JJ")
+    builder.endSentence()
+    builder.endSentence()
+    builder.add(15, 17, TokenType.STOPWORD, "PRP")
+    builder.add(18, 20, TokenType.STOPWORD, "VBZ")
+    builder.add(21, 24, new TokenType(3, "old", 7), "JJ")
+    builder.build()
+  }
+
+  @Test
+  def sentences() {
+    val tokenizedText = berlin
+
+    assertEquals(6, tokenizedText.size)
+    assertEquals(2, tokenizedText.sentenceCount)
+    assertEquals(3, tokenizedText.sentenceStart(1))
+    assertEquals(6, tokenizedText.sentenceEnd(1))
+    assertArrayEquals(Array(1, 0, 2, 0, 0, 3), tokenizedText.tokenTypeIds)
+  }
+
+  @Test
+  def tokensAndTags() {
+    val tokenizedText = berlin
+
+    assertEquals("Berlin", tokenizedText.token(0))
+    assertEquals(List("It", "is", "old"), tokenizedText.tokens(3, 6).toList)
+    assertEquals(List("PRP", "VBZ", "JJ"), tokenizedText.posTags(3, 6).toList)
+    assertEquals(TokenizedText.posTagId("VBZ"), tokenizedText.posIds(4))
+  }
+
+  @Test
+  def toTokens() {
+    val tokens = berlin.toTokens
+
+    assertEquals(6, tokens.size)
+    assertEquals(15, tokens(3).offset)
+    assertEquals(Some("JJ"), tokens(2).featureValue[String]("pos"))
+    assertEquals(List(2, 5), tokens.zipWithIndex.filter(_._1.feature("end-of-sentence").isDefined).map(_._2))
+  }
+
+}
@@ -0,0 +1,63 @@
+package org.dbpedia.spotlight.sparql
+
+import java.io.{PrintWriter, File}
+import org.junit.Test
+import org.junit.Assert._
+import scala.collection.JavaConverters._
+import org.dbpedia.spotlight.exceptions.SparqlExecutionException
+import org.dbpedia.spotlight.model.DBpediaResource
+import org.dbpedia.spotlight.filter.annotations.{FilterPolicy, SparqlFilter}
+
+/**
+ * Tests the result cache of the SparqlQueryExecuter with the file-backed stand-in for an endpoint.
+ */
+class SparqlQueryExecuterTest {
+
+  val politicians = "select distinct ?pol where {?pol a <http://dbpedia.org/ontology/Politician> }"
+
+  trait Counting extends FileSparqlQueryExecuter {
+    var queries = 0
+
+    override def query(query: String): java.util.List[DBpediaResource] = {
+      queries += 1
+      super.query(query)
+    }
+  }
+
+  private def executer(): FileSparqlQueryExecuter with Counting = {
+    val file = File.createTempFile("sparql", ".tsv")
+    file.deleteOnExit()
+
+    val out = new PrintWriter(file, "UTF-8")
+    out.println("# test results")
+    out.println(politicians + "\thttp://dbpedia.org/resource/Barack_Obama Angela_Merkel")
+    out.close()
+
+    new FileSparqlQueryExecuter(file) with Counting
+  }
+
+  @Test
+  def fileResults() {
+    val e = executer()
+    assertEquals(List("Barack_Obama", "Angela_Merkel"), e.query(politicians).asScala.map(_.uri).toList)
+  }
+
+  @Test(expected = classOf[SparqlExecutionException])
+  def unknownQuery() {
+    executer().query("select ?s where { ?s ?p ?o }")
+  }
+
+  @Test
+  def cachedByNormalizedQuery() {
+    val e = executer()
+
+    assertEquals(Set("Barack_Obama", "Angela_Merkel"), e.resolve(politicians).asScala.toSet)
+    assertEquals(Set("Barack_Obama", "Angela_Merkel"), e.resolve("  " + politicians.replace(" ", "\n  ")).asScala.toSet)
+
+    val filter = new SparqlFilter(e, politicians, FilterPolicy.Whitelist)
+    assertTrue(filter.uriSet.contains("Angela_Merkel"))
+
+    assertEquals(1, e.queries)
+  }
+
+}
@@ -0,0 +1,41 @@
+package org.dbpedia.spotlight.util
+
+import org.junit.Test
+import org.junit.Assert._
+
+/**
+ * Tests the buckets and quantiles of the LatencyHistogram.
+ */
+class LatencyHistogramTest {
+
+  @Test
+  def buckets() {
+    //Small values are exact, larger values are within the bucket precision:
+    (0L until 64L).foreach{ v: Long => assertEquals(v, LatencyHistogram.lowestValueIn(LatencyHistogram.bucket(v))) }
+
+    List(100L, 1000L, 123456L, 987654321L, LatencyHistogram.MAX_VALUE).foreach{ v: Long =>
+      val b = LatencyHistogram.bucket(v)
+      assertTrue(b < LatencyHistogram.BUCKETS)
+      assertTrue(LatencyHistogram.lowestValueIn(b) <= v)
+      assertTrue(LatencyHistogram.highestValueIn(b) >= v)
+      assertTrue((LatencyHistogram.highestValueIn(b) - LatencyHistogram.lowestValueIn(b)).toDouble / v < 1.0 / LatencyHistogram.SUB_BUCKETS)
+    }
+  }
+
+  @Test
+  def quantiles() {
+    val histogram = new LatencyHistogram()
+    assertEquals(0L, histogram.getValueAtQuantile(0.5))
+
+    (1 to 1000).foreach{ i: Int => histogram.record(i * 1000L) }
+
+    assertEquals(1000L, histogram.getCount)
+    assertEquals(1000000L, histogram.getMax)
+    assertEquals(500500000L, histogram.getSum)
+
+    val median = histogram.getValueAtQuantile(0.5)
+    assertTrue(math.abs(median - 500000L) < 500000L / LatencyHistogram.SUB_BUCKETS)
+    assertEquals(1000000L, histogram.getValueAtQuantile(1.0))
+  }
+
+}
@@ -0,0 +1,29 @@
+package org.dbpedia.spotlight.util
+
+import org.junit.Test
+import org.junit.Assert._
+
+/**
+ * Tests counting the OpenNLP instances of several threads.
+ */
+class OpenNLPMetricsTest {
+
+  @Test
+  def instancesOfThreads() {
+    val before = OpenNLPMetrics.getCreated("test_component")
+
+    val threads = (1 to 8).map{ i: Int =>
+      new Thread(new Runnable {
+        def run() { (1 to 100).foreach(_ => OpenNLPMetrics.created("test_component")) }
+      })
+    }
+    threads.foreach(_.start())
+    threads.foreach(_.join())
+
+    assertEquals(before + 800, OpenNLPMetrics.getCreated("test_component"))
+    assertTrue(OpenNLPMetrics.toPrometheus.contains(
+      "spotlight_opennlp_instances_created_total{component=\"test_component\"} %d\n".format(before + 800)
+    ))
+  }
+
+}
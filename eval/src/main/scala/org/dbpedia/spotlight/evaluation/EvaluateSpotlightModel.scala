@@ -8,7 +8,6 @@ import org.dbpedia.spotlight.model.SpotlightConfiguration.DisambiguationPolicy
 import scala.collection.JavaConversions._
 import org.dbpedia.spotlight.model.Paragraph
 import scala.io.Source
-import org.dbpedia.spotlight.db.concurrent.SpotterWrapper
 
 object EvaluateSpotlightModel {
 
@@ -56,7 +55,7 @@ object EvaluateSpotlightModel {
     //Set tokenizer:
     spotter match {
       case spotter: DBSpotter => spotter.tokenizer = model.tokenizer
-      case spotterW: SpotterWrapper => spotterW.spotters.foreach(_.asInstanceOf[DBSpotter].tokenizer = model.tokenizer)
+      case _ =>
     }
     disambiguator.disambiguator.asInstanceOf[DBTwoStepDisambiguator].tokenizer = model.tokenizer
 
@@ -7,10 +7,11 @@ import model.{TextTokenizer, StringTokenizer, Stemmer}
 import scala.io.Source
 import org.tartarus.snowball.SnowballProgram
 import java.util.{Locale, Properties}
+import java.util.concurrent.{Callable, Executors}
 import org.dbpedia.spotlight.io.WikipediaHeldoutCorpus
 import org.apache.commons.io.FileUtils
-import opennlp.tools.tokenize.{TokenizerModel, TokenizerME}
-import opennlp.tools.sentdetect.{SentenceModel, SentenceDetectorME}
+import opennlp.tools.tokenize.TokenizerModel
+import opennlp.tools.sentdetect.SentenceModel
 import opennlp.tools.postag.{POSModel, POSTaggerME}
 import opennlp.tools.chunker.ChunkerModel
 import stem.SnowballStemmer
@@ -36,6 +37,20 @@ object CreateSpotlightModel {
 
   val OPENNLP_FOLDER = "opennlp"
 
+  /**
+   * Heap budget for the counts held in memory while the model is built in MB, set with -Dspotlight.index.heapMB.
+   * By default, half of the maximum heap size is used.
+   */
+  def heapBudget: Long = System.getProperty("spotlight.index.heapMB") match {
+    case null => Runtime.getRuntime.maxMemory() / 2
+    case mb => mb.toLong * 1024 * 1024
+  }
+
+  //Estimated size of a candidate count in memory in bytes (key, value and the free slots of the hash map):
+  val BYTES_PER_CANDIDATE = 32
+
+  def maxCandidatesInMemory: Int = math.min(heapBudget / BYTES_PER_CANDIDATE, Int.MaxValue / 2).toInt
+
   def main(args: Array[String]) {
 
     val (localeCode: String, rawDataFolder: File, outputFolder: File, opennlpFolder: Option[File], stopwordsFile: File, stemmer: Stemmer) = try {
@@ -125,10 +140,10 @@ object CreateSpotlightModel {
 
     val rawTokenizer: StringTokenizer = if (opennlpFolder.isDefined) {
       val opennlpOut = new File(outputFolder, OPENNLP_FOLDER)
-      val onlpTokenizer = new TokenizerME(new TokenizerModel(new FileInputStream(new File(opennlpOut, "token.bin"))))
+      val onlpTokenizerModel = new TokenizerModel(new FileInputStream(new File(opennlpOut, "token.bin")))
 
       new OpenNLPStringTokenizer(
-        onlpTokenizer,
+        onlpTokenizerModel,
         stemmer
       )
 
@@ -162,19 +177,25 @@ object CreateSpotlightModel {
     val memoryIndexer = new MemoryStoreIndexer(modelDataFolder, quantizedCountStore)
     //val diskIndexer = new JDBMStoreIndexer(new File("data/"))
 
-    val wikipediaToDBpediaClosure = new WikipediaToDBpediaClosure(
-      namespace,
-      new FileInputStream(new File(rawDataFolder, "redirects.nt")),
-      new FileInputStream(new File(rawDataFolder, "disambiguations.nt"))
-    )
+    //The closure is shared by all sources, its compressed redirects are reused across indexing runs:
+    val wikipediaToDBpediaClosure = WikipediaToDBpediaClosure.fromFolder(namespace, rawDataFolder)
+
+    //The tokenCounts file is read and spilled to disk in a single pass while the other stores are built:
+    val tokenPass = Executors.newSingleThreadExecutor()
+    val tokenOccurrences = tokenPass.submit(new Callable[SpilledTokenOccurrences] {
+      def call(): SpilledTokenOccurrences = SpilledTokenOccurrences.fromPigFile(
+        new File(rawDataFolder, "tokenCounts"),
+        minimumContextCounts(lang)
+      )
+    })
+    tokenPass.shutdown()
+
+    val (sfCounts, lowercaseCounts) = SurfaceFormSource.fromPigFileWithLowercaseCounts(new File(rawDataFolder, "sfAndTotalCounts"))
 
     memoryIndexer.tokenizer = Some(rawTokenizer)
     memoryIndexer.addSurfaceForms(
-      SurfaceFormSource.fromPigFiles(
-        new File(rawDataFolder, "sfAndTotalCounts"),
-        wikiClosure=wikipediaToDBpediaClosure
-      ),
-      SurfaceFormSource.lowercaseCountsFromPigInputStream(new FileInputStream(new File(rawDataFolder, "sfAndTotalCounts"))),
+      sfCounts,
+      lowercaseCounts,
       minimumSFCounts(lang)
     )
 
@@ -195,50 +216,40 @@ object CreateSpotlightModel {
     val resStore = MemoryStore.loadResourceStore(new FileInputStream(new File(modelDataFolder, "res.mem")), quantizedCountStore)
     val sfStore  = MemoryStore.loadSurfaceFormStore(new FileInputStream(new File(modelDataFolder, "sf.mem")), quantizedCountStore)
 
-    memoryIndexer.addCandidatesByID(
-      CandidateMapSource.fromPigFiles(
-        new File(rawDataFolder, "pairCounts"),
-        wikipediaToDBpediaClosure,
-        resStore,
-        sfStore
-      ),
-      sfStore.size
+    val (candidateKeys, candidateCounts) = CandidateMapSource.fromPigFilesByID(
+      new File(rawDataFolder, "pairCounts"),
+      wikipediaToDBpediaClosure,
+      resStore,
+      sfStore,
+      maxCandidatesInMemory
     )
+    memoryIndexer.addCandidatesByID(candidateKeys, candidateCounts, sfStore.size)
 
-    memoryIndexer.addTokenTypes(
-      TokenSource.fromPigFile(
-        new File(rawDataFolder, "tokenCounts"),
-        additionalTokens = Some(TokenSource.fromSFStore(sfStore, rawTokenizer)),
-        minimumContextCounts(lang)
-      )
-    )
+    val occurrences = tokenOccurrences.get()
+    occurrences.addAdditionalTokens(TokenSource.fromSFStore(sfStore, rawTokenizer))
+    val (tokenTypes, tokenCounts) = occurrences.tokenTypes()
+    memoryIndexer.addTokenTypes(tokenTypes, tokenCounts)
 
     val tokenStore = MemoryStore.loadTokenTypeStore(new FileInputStream(new File(modelDataFolder, "tokens.mem")))
 
     memoryIndexer.createContextStore(resStore.size)
-    memoryIndexer.addTokenOccurrences(
-      TokenOccurrenceSource.fromPigFile(
-        new File(rawDataFolder, "tokenCounts"),
-        tokenStore,
-        wikipediaToDBpediaClosure,
-        resStore,
-        minimumContextCounts(lang)
-      )
+    memoryIndexer.addTokenOccurrencesByID(
+      occurrences.contextsByID(wikipediaToDBpediaClosure, resStore)
     )
     memoryIndexer.writeTokenOccurrences()
     memoryIndexer.writeQuantizedCounts()
 
     val tokenizer: TextTokenizer = if (opennlpFolder.isDefined) {
       val opennlpOut = new File(outputFolder, OPENNLP_FOLDER)
-      val oToken = new TokenizerME(new TokenizerModel(new FileInputStream(new File(opennlpOut, "token.bin"))))
-      val oSent = new SentenceDetectorME(new SentenceModel(new FileInputStream(new File(opennlpOut, "sent.bin"))))
+      val oToken = new TokenizerModel(new FileInputStream(new File(opennlpOut, "token.bin")))
+      val oSent = new SentenceModel(new FileInputStream(new File(opennlpOut, "sent.bin")))
 
       new OpenNLPTokenizer(
         oToken,
         Set[String](),
         stemmer,
         oSent,
-        null,
+        None,
         tokenStore
       )
 
@@ -9,7 +9,6 @@ import java.lang.String
 import scala.collection.JavaConversions._
 import scala.collection.JavaConverters._
 
-import collection.mutable.ListBuffer
 import java.util.{Map, Set}
 import java.io.File
 import org.dbpedia.spotlight.model._
@@ -18,6 +17,8 @@ import scala.collection.mutable
 import org.dbpedia.spotlight.db.memory.util.StringToIDMapFactory
 import scala.Predef._
 import scala.Some
+import io.CandidateMapSource
+import it.unimi.dsi.fastutil.ints.IntArrayList
 
 /**
  * Implements memory-based indexing. The memory stores are serialized and deserialized using Kryo.
@@ -195,55 +196,79 @@ class MemoryStoreIndexer(val baseDir: File, val quantizedCountStore: MemoryQuant
   }
 
   def addCandidates(cands: Map[Candidate, Int], numberOfSurfaceForms: Int) {
-    val candmapStore = new MemoryCandidateMapStore()
-
-    val candidates      = new Array[ListBuffer[Int]](numberOfSurfaceForms)
-    val candidateCounts = new Array[ListBuffer[Int]](numberOfSurfaceForms)
+    val keys = new Array[Long](cands.size)
+    val counts = new Array[Int](cands.size)
 
+    var i = 0
     cands.foreach {
       p: (Candidate, Int) => {
-        if(candidates(p._1.surfaceForm.id) == null) {
-          candidates(p._1.surfaceForm.id)      = ListBuffer[Int]()
-          candidateCounts(p._1.surfaceForm.id) = ListBuffer[Int]()
-        }
-
-        candidates(p._1.surfaceForm.id)      += p._1.resource.id
-        candidateCounts(p._1.surfaceForm.id) += p._2
+        keys(i) = CandidateMapSource.candidateKey(p._1.surfaceForm.id, p._1.resource.id)
+        counts(i) = p._2
+        i += 1
       }
     }
 
-    candmapStore.candidates = (candidates map { l: ListBuffer[Int] => if(l != null) l.toArray else null} ).toArray
-    candmapStore.candidateCounts = (candidateCounts map { l: ListBuffer[Int] => if(l != null) l.map(quantizedCountStore.addCount).toArray else null} ).toArray
-
-    MemoryStore.dump(candmapStore, new File(baseDir, "candmap.mem"))
+    addCandidatesByID(keys, counts, numberOfSurfaceForms)
   }
 
   def addCandidatesByID(cands: Map[Pair[Int, Int], Int], numberOfSurfaceForms: Int) {
-    val candmapStore = new MemoryCandidateMapStore()
-
-    val candidates      = new Array[Array[Int]](numberOfSurfaceForms)
-    val candidateCounts = new Array[Array[Int]](numberOfSurfaceForms)
+    val keys = new Array[Long](cands.size)
+    val counts = new Array[Int](cands.size)
 
+    var i = 0
     cands.foreach {
       p: (Pair[Int, Int], Int) => {
+        keys(i) = CandidateMapSource.candidateKey(p._1._1, p._1._2)
+        counts(i) = p._2
+        i += 1
+      }
+    }
 
-        if(candidates(p._1._1) == null) {
-          candidates(p._1._1)      = Array[Int]()
-          candidateCounts(p._1._1) = Array[Int]()
-        }
+    addCandidatesByID(keys, counts, numberOfSurfaceForms)
+  }
 
-        candidates(p._1._1)      :+= p._1._2
-        candidateCounts(p._1._1) :+= p._2
+  /**
+   * Add the candidates given as packed candidate keys (see [[org.dbpedia.spotlight.db.io.CandidateMapSource.candidateKey]])
+   * and their counts. The keys must be unique, their order does not matter.
+   *
+   * The candidate map is built in two passes over the keys (counting sort by surface form): the first pass counts
+   * the candidates of each surface form so that each row is allocated with its exact size, the second pass fills the rows.
+   * Finally, each row is sorted by count, so that the top candidates of a surface form are a prefix of its row.
+   */
+  def addCandidatesByID(keys: Array[Long], counts: Array[Int], numberOfSurfaceForms: Int) {
+    val candmapStore = new MemoryCandidateMapStore()
+
+    //Count the candidates of each surface form to allocate the rows with their exact size:
+    val rowSize = new Array[Int](numberOfSurfaceForms)
+    keys.foreach { key: Long => rowSize(CandidateMapSource.sfID(key)) += 1 }
+
+    val candidates      = new Array[Array[Int]](numberOfSurfaceForms)
+    val candidateCounts = new Array[Array[Short]](numberOfSurfaceForms)
+    var sf = 0
+    while (sf < numberOfSurfaceForms) {
+      if (rowSize(sf) > 0) {
+        candidates(sf)      = new Array[Int](rowSize(sf))
+        candidateCounts(sf) = new Array[Short](rowSize(sf))
+        rowSize(sf) = 0
       }
+      sf += 1
+    }
+
+    var i = 0
+    while (i < keys.length) {
+      val sfID = CandidateMapSource.sfID(keys(i))
+      candidates(sfID)(rowSize(sfID))      = CandidateMapSource.resID(keys(i))
+      candidateCounts(sfID)(rowSize(sfID)) = quantizedCountStore.addCount(counts(i))
+      rowSize(sfID) += 1
+      i += 1
     }
 
     candmapStore.candidates = candidates
-    candmapStore.candidateCounts = candidateCounts.map(cs =>
-      if (cs == null)
-        null
-      else
-        cs.map(quantizedCountStore.addCount).array
-    )
+    candmapStore.candidateCounts = candidateCounts
+
+    //Sort the candidates of each surface form by count:
+    candmapStore.quantizedCountStore = quantizedCountStore
+    candmapStore.candidates.indices.foreach(candmapStore.sortCandidates)
 
     MemoryStore.dump(candmapStore, new File(baseDir, "candmap.mem"))
   }
@@ -273,6 +298,19 @@ class MemoryStoreIndexer(val baseDir: File, val quantizedCountStore: MemoryQuant
   }
 
 
+  /**
+   * Add the token types, the index of each token is its ID.
+   */
+  def addTokenTypes(tokens: Array[String], counts: Array[Int]) {
+    val tokenTypeStore = new MemoryTokenTypeStore()
+
+    tokenTypeStore.tokenForId = tokens
+    tokenTypeStore.counts = counts
+
+    MemoryStore.dump(tokenTypeStore, new File(baseDir, "tokens.mem"))
+  }
+
+
   //TOKEN OCCURRENCES
 
   def addTokenOccurrence(resource: DBpediaResource, token: TokenType, count: Int) {
@@ -285,16 +323,20 @@ class MemoryStoreIndexer(val baseDir: File, val quantizedCountStore: MemoryQuant
 
   lazy val contextStore = new MemoryContextStore()
 
+  //Rows of the context store while it is built, they are flattened into the store when it is written:
+  var contextTokens: Array[Array[Int]] = null
+  var contextCounts: Array[Array[Short]] = null
+
   def createContextStore(n: Int) {
-    contextStore.tokens = new Array[Array[Int]](n)
-    contextStore.counts = new Array[Array[Short]](n)
+    contextTokens = new Array[Array[Int]](n)
+    contextCounts = new Array[Array[Short]](n)
   }
 
   def addTokenOccurrences(occs: Map[DBpediaResource, Map[Int, Int]]) {
     occs.foreach{ case(res, tokenCounts) => {
       val (t, c) = tokenCounts.unzip
-      contextStore.tokens(res.id) = t.toArray
-      contextStore.counts(res.id) = c.map(quantizedCountStore.addCount).toArray
+      contextTokens(res.id) = t.toArray
+      contextCounts(res.id) = c.map(quantizedCountStore.addCount).toArray
     }
     }
   }
@@ -305,13 +347,13 @@ class MemoryStoreIndexer(val baseDir: File, val quantizedCountStore: MemoryQuant
         val Triple(res, tokens, counts) = t
         if (res != null) {
           assert (tokens.size == counts.size)
-          if(contextStore.tokens(res.id) != null) {
-            val (mergedTokens, mergedCounts) = (tokens.map{ t: TokenType => t.id }.array.zip(counts.array) ++ contextStore.tokens(res.id).zip( contextStore.counts(res.id).map(quantizedCountStore.getCount) )).groupBy(_._1).map{ case(k, v) => (k, v.map{ p => p._2}.sum ) }.unzip
-            contextStore.tokens(res.id) = mergedTokens.toArray.array
-            contextStore.counts(res.id) = mergedCounts.asInstanceOf[Iterable[Int]].map(quantizedCountStore.addCount).toArray.array
+          if(contextTokens(res.id) != null) {
+            val (mergedTokens, mergedCounts) = (tokens.map{ t: TokenType => t.id }.array.zip(counts.array) ++ contextTokens(res.id).zip( contextCounts(res.id).map(quantizedCountStore.getCount) )).groupBy(_._1).map{ case(k, v) => (k, v.map{ p => p._2}.sum ) }.unzip
+            contextTokens(res.id) = mergedTokens.toArray.array
+            contextCounts(res.id) = mergedCounts.asInstanceOf[Iterable[Int]].map(quantizedCountStore.addCount).toArray.array
           } else{
-            contextStore.tokens(res.id) = tokens.map{ t: TokenType => t.id }.array
-            contextStore.counts(res.id) = counts.map(quantizedCountStore.addCount).array
+            contextTokens(res.id) = tokens.map{ t: TokenType => t.id }.array
+            contextCounts(res.id) = counts.map(quantizedCountStore.addCount).array
           }
         }
       }
@@ -319,21 +361,70 @@ class MemoryStoreIndexer(val baseDir: File, val quantizedCountStore: MemoryQuant
   }
 
 
+  /**
+   * Add the contexts of resources given by resource ID, token IDs and counts. A token may occur more than once
+   * in a context and a resource may have more than one context, their counts are summed.
+   */
+  def addTokenOccurrencesByID(occs: Iterator[Triple[Int, Array[Int], Array[Int]]]) {
+    occs.foreach {
+      case Triple(resID, tokens, counts) => {
+        assert (tokens.size == counts.size)
+
+        val existingTokens = contextTokens(resID)
+        val existing = if (existingTokens != null) existingTokens.length else 0
+
+        //Pack token ID and count into a long, sorting them groups the counts of each token:
+        val packed = new Array[Long](tokens.length + existing)
+        var i = 0
+        while (i < tokens.length) {
+          packed(i) = (tokens(i).toLong << 32) | counts(i)
+          i += 1
+        }
+        while (i < packed.length) {
+          val j = i - tokens.length
+          packed(i) = (existingTokens(j).toLong << 32) | quantizedCountStore.getCount(contextCounts(resID)(j))
+          i += 1
+        }
+        java.util.Arrays.sort(packed)
+
+        val mergedTokens = new IntArrayList(packed.length)
+        val mergedCounts = new IntArrayList(packed.length)
+        i = 0
+        while (i < packed.length) {
+          val token = (packed(i) >>> 32).toInt
+          var count = 0
+          while (i < packed.length && (packed(i) >>> 32).toInt == token) {
+            count += packed(i).toInt
+            i += 1
+          }
+          mergedTokens.add(token)
+          mergedCounts.add(count)
+        }
+
+        contextTokens(resID) = mergedTokens.toIntArray
+        contextCounts(resID) = mergedCounts.toIntArray.map(quantizedCountStore.addCount)
+      }
+    }
+  }
+
   /**
    * Iterates the Context Store sorting the tokens by their token Id.
    */
   def sortTokensInContextStore(){
-    for((currentTokens, i) <- contextStore.tokens.zipWithIndex){
+    for((currentTokens, i) <- contextTokens.zipWithIndex){
       if (currentTokens.isInstanceOf[Array[Int]] && currentTokens.size > 1){
-        val (sortedTokens, counts) = currentTokens.zip(contextStore.counts(i)).sortBy(_._1).unzip
-        contextStore.tokens(i) = sortedTokens.toArray
-        contextStore.counts(i) = counts.toArray
+        val (sortedTokens, counts) = currentTokens.zip(contextCounts(i)).sortBy(_._1).unzip
+        contextTokens(i) = sortedTokens.toArray
+        contextCounts(i) = counts.toArray
       }
     }
   }
 
   def writeTokenOccurrences() {
     sortTokensInContextStore()
+    contextStore.setRows(contextTokens, contextCounts)
+    contextTokens = null
+    contextCounts = null
     MemoryStore.dump(contextStore, new File(baseDir, "context.mem"))
   }
 
@@ -0,0 +1,312 @@
+package org.dbpedia.spotlight.db
+
+import memory._
+import java.io.{IOException, FileInputStream, File}
+import org.apache.commons.io.FileUtils
+import org.dbpedia.spotlight.log.SpotlightLog
+import scala.collection.mutable
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import it.unimi.dsi.fastutil.shorts.ShortArrayList
+
+
+/**
+ * Merges deltas of counts (see [[org.dbpedia.spotlight.db.ModelDelta]]) into the memory stores of an existing
+ * model and writes the result as a new model folder, i.e. a new generation of the model.
+ *
+ * The stores of the existing model are loaded once and only the entries in the deltas are changed: the counts of
+ * known surface forms, candidates, tokens and contexts are updated and new surface forms and tokens are appended
+ * with new IDs. All counts are quantized with the MemoryQuantizedCountStore of the model.
+ *
+ * DBpedia resources are not added, candidates and contexts of resources that are not part of the model are skipped.
+ * The spotter dictionary is copied unchanged, so new surface forms are only spotted once it is rebuilt.
+ *
+ * Merging costs time in the size of the deltas, but writing does not: the changed stores (surface forms,
+ * candidate map, contexts, tokens and quantized counts) are loaded and written again in full, since
+ * the memory stores cannot be updated in place.
+ *
+ * @param modelFolder the folder of the existing model
+ */
+
+class MemoryStoreUpdater(val modelFolder: File) {
+
+  private val modelDataFolder = new File(modelFolder, "model")
+  private def mem(name: String) = new FileInputStream(new File(modelDataFolder, name + ".mem"))
+
+  val quantizedCountStore = MemoryStore.loadQuantizedCountStore(mem("quantized_counts"))
+  val sfStore = MemoryStore.loadSurfaceFormStore(mem("sf"), quantizedCountStore)
+  val resStore = MemoryStore.loadResourceStore(mem("res"), quantizedCountStore)
+  val candMapStore = MemoryStore.loadCandidateMapStore(mem("candmap"), resStore, quantizedCountStore)
+  val tokenStore = MemoryStore.loadTokenTypeStore(mem("tokens"))
+  val contextStore = MemoryStore.loadContextStore(mem("context"), tokenStore, quantizedCountStore)
+
+  //Surface forms and tokens that are appended to the model, with their raw counts:
+  private val newSurfaceForms = mutable.ArrayBuffer[String]()
+  private val newAnnotatedCounts = new IntArrayList()
+  private val newTotalCounts = new IntArrayList()
+  private val newTokens = mutable.ArrayBuffer[String]()
+  private val newTokenCounts = new IntArrayList()
+
+  //Changed rows of the candidate map and the context store:
+  private val candidateRows = mutable.HashMap[Int, (Array[Int], Array[Short])]()
+  private val contextRows = mutable.HashMap[Int, (Array[Int], Array[Short])]()
+
+  //Surface forms whose counts were changed by a delta:
+  private val changedSurfaceForms = mutable.HashSet[Int]()
+
+  private var skipped = 0
+
+  private def quantize(count: Int): Short = quantizedCountStore.addCount(math.max(0, count))
+
+  private def surfaceFormID(sf: String): Int = {
+    val id = sfStore.idForString.get(sf)
+    if (id != null) {
+      id.intValue
+    } else {
+      val newID = sfStore.size + newSurfaceForms.size
+      newSurfaceForms += sf
+      newAnnotatedCounts.add(0)
+      newTotalCounts.add(0)
+      sfStore.idForString.put(sf, newID)
+
+      //The first element of a lowercase entry is the count of the lowercase form, unknown for a new entry:
+      val lowercaseCandidates = sfStore.lowercaseMap.get(sf.toLowerCase)
+      if (lowercaseCandidates != null)
+        sfStore.lowercaseMap.put(sf.toLowerCase, lowercaseCandidates :+ newID)
+      else
+        sfStore.lowercaseMap.put(sf.toLowerCase, Array(0, newID))
+
+      newID
+    }
+  }
+
+  private def tokenID(token: String): Int = {
+    val id = tokenStore.idFromToken.get(token)
+    if (id != null) {
+      id.intValue
+    } else {
+      val newID = tokenStore.size + newTokens.size
+      newTokens += token
+      newTokenCounts.add(0)
+      tokenStore.idFromToken.put(token, newID)
+      newID
+    }
+  }
+
+  def merge(delta: ModelDelta) {
+    SpotlightLog.info(this.getClass, "Merging %s...", delta)
+
+    delta.surfaceFormCounts.foreach {
+      case (sf, (annotated, total)) => {
+        val id = surfaceFormID(sf)
+        changedSurfaceForms += id
+        if (id < sfStore.size) {
+          sfStore.annotatedCountForID(id) = quantize(sfStore.qc(sfStore.annotatedCountForID(id)) + annotated)
+
+          //A negative total count means that it is unknown:
+          val oldTotal = sfStore.qc(sfStore.totalCountForID(id))
+          if (oldTotal >= 0)
+            sfStore.totalCountForID(id) = quantize(oldTotal + total)
+        } else {
+          val j = id - sfStore.size
+          newAnnotatedCounts.set(j, math.max(0, newAnnotatedCounts.getInt(j) + annotated))
+          newTotalCounts.set(j, math.max(0, newTotalCounts.getInt(j) + total))
+        }
+      }
+    }
+
+    delta.candidateCounts.foreach {
+      case ((sf, uri), count) => {
+        val resID = resStore.getResourceID(uri)
+        if (resID < 0) {
+          skipped += 1
+        } else {
+          val sfID = surfaceFormID(sf)
+          val (ids, counts) = candidateRows.getOrElse(sfID, candidateRow(sfID))
+          val j = ids.indexOf(resID)
+
+          if (j >= 0) {
+            //Candidates whose count drops to 0 are removed, as in mergeContext:
+            val merged = quantizedCountStore.getCount(counts(j)) + count
+            if (merged > 0) {
+              counts(j) = quantize(merged)
+              candidateRows.put(sfID, (ids, counts))
+            } else {
+              candidateRows.put(sfID, (ids.take(j) ++ ids.drop(j + 1), counts.take(j) ++ counts.drop(j + 1)))
+            }
+          } else if (count > 0) {
+            candidateRows.put(sfID, (ids :+ resID, counts :+ quantize(count)))
+          }
+        }
+      }
+    }
+
+    delta.tokenCounts.foreach {
+      case (uri, tokenCounts) => {
+        val resID = resStore.getResourceID(uri)
+        if (resID < 0) {
+          skipped += 1
+        } else {
+          val entries = tokenCounts.toArray.map {
+            case (token, count) => {
+              val id = tokenID(token)
+              if (id < tokenStore.size)
+                tokenStore.counts(id) = math.max(0, tokenStore.counts(id) + count)
+              else
+                newTokenCounts.set(id - tokenStore.size, math.max(0, newTokenCounts.getInt(id - tokenStore.size) + count))
+              (id, count)
+            }
+          }.sortBy(_._1)
+
+          contextRows.put(resID, mergeContext(contextRows.getOrElse(resID, contextRow(resID)), entries))
+        }
+      }
+    }
+
+    if (skipped > 0)
+      SpotlightLog.warn(this.getClass, "Skipped %d candidates and contexts of DBpedia resources that are not in the model.", skipped)
+  }
+
+  private def candidateRow(sfID: Int): (Array[Int], Array[Short]) = {
+    if (sfID < candMapStore.candidates.length && candMapStore.candidates(sfID) != null)
+      (candMapStore.candidates(sfID).clone(), candMapStore.candidateCounts(sfID).clone())
+    else
+      (Array[Int](), Array[Short]())
+  }
+
+  private def contextRow(resID: Int): (Array[Int], Array[Short]) = (
+    java.util.Arrays.copyOfRange(contextStore.tokenIds, contextStore.rowStart(resID), contextStore.rowEnd(resID)),
+    java.util.Arrays.copyOfRange(contextStore.counts, contextStore.rowStart(resID), contextStore.rowEnd(resID))
+  )
+
+  /**
+   * Merge the sorted delta entries into the sorted row of a context, tokens whose count drops to 0 are removed.
+   */
+  private def mergeContext(row: (Array[Int], Array[Short]), entries: Array[(Int, Int)]): (Array[Int], Array[Short]) = {
+    val (ids, counts) = row
+    val mergedIDs = new IntArrayList(ids.length + entries.length)
+    val mergedCounts = new ShortArrayList(ids.length + entries.length)
+
+    def add(id: Int, count: Int) {
+      if (count > 0) {
+        mergedIDs.add(id)
+        mergedCounts.add(quantize(count))
+      }
+    }
+
+    var i = 0
+    var j = 0
+    while (i < ids.length || j < entries.length) {
+      if (j >= entries.length || (i < ids.length && ids(i) < entries(j)._1)) {
+        mergedIDs.add(ids(i))
+        mergedCounts.add(counts(i))
+        i += 1
+      } else if (i >= ids.length || entries(j)._1 < ids(i)) {
+        add(entries(j)._1, entries(j)._2)
+        j += 1
+      } else {
+        add(ids(i), quantizedCountStore.getCount(counts(i)) + entries(j)._2)
+        i += 1
+        j += 1
+      }
+    }
+
+    (mergedIDs.toIntArray, mergedCounts.toShortArray)
+  }
+
+  /**
+   * Write the merged model to a new model folder. Files of the model that are not changed are copied.
+   * Memory-mapped versions of the changed stores are not copied, they can be re-created with
+   * [[org.dbpedia.spotlight.db.mmap.MMapStoreConverter]].
+   *
+   * @param targetFolder the new model folder, it must not exist
+   */
+  def write(targetFolder: File) {
+    if (targetFolder.exists() || !targetFolder.mkdirs())
+      throw new IOException("Could not create model folder %s, it may already exist.".format(targetFolder))
+
+    def copy(file: File, folder: File) {
+      if (file.isDirectory)
+        FileUtils.copyDirectory(file, new File(folder, file.getName))
+      else
+        FileUtils.copyFile(file, new File(folder, file.getName))
+    }
+
+    modelFolder.listFiles().filter(_ != modelDataFolder).foreach(copy(_, targetFolder))
+
+    val targetDataFolder = new File(targetFolder, "model")
+    targetDataFolder.mkdir()
+    modelDataFolder.listFiles().filter { f: File =>
+      !MemoryStoreUpdater.UPDATED_STORES.exists(name => f.getName == name + ".mem" || f.getName == name + ".mmap")
+    }.foreach(copy(_, targetDataFolder))
+
+    SpotlightLog.info(this.getClass, "Appending %d surface forms and %d tokens.", newSurfaceForms.size, newTokens.size)
+
+    //Surface forms that are no longer annotated have no candidates:
+    changedSurfaceForms.foreach { id: Int =>
+      val annotated = if (id < sfStore.size) sfStore.qc(sfStore.annotatedCountForID(id)) else newAnnotatedCounts.getInt(id - sfStore.size)
+      if (annotated <= 0)
+        candidateRows.put(id, (Array[Int](), Array[Short]()))
+    }
+
+    //Candidate map, the rows of all changed surface forms are sorted by count again:
+    val sfCount = sfStore.size + newSurfaceForms.size
+    val candidates = new Array[Array[Int]](sfCount)
+    val candidateCounts = new Array[Array[Short]](sfCount)
+    System.arraycopy(candMapStore.candidates, 0, candidates, 0, candMapStore.candidates.length)
+    System.arraycopy(candMapStore.candidateCounts, 0, candidateCounts, 0, candMapStore.candidateCounts.length)
+    candidateRows.foreach {
+      case (sfID, (ids, counts)) => {
+        candidates(sfID) = ids
+        candidateCounts(sfID) = counts
+      }
+    }
+    candMapStore.candidates = candidates
+    candMapStore.candidateCounts = candidateCounts
+    candidateRows.keys.foreach(candMapStore.sortCandidates)
+
+    //Context store:
+    val resIDs = contextRows.keys.toArray.sorted
+    contextStore.updateRows(contextStore.size, resIDs, resIDs.map(contextRows(_)._1), resIDs.map(contextRows(_)._2))
+
+    //Surface forms and tokens:
+    sfStore.stringForID = sfStore.stringForID ++ newSurfaceForms
+    sfStore.annotatedCountForID = sfStore.annotatedCountForID ++ newAnnotatedCounts.toIntArray.map(quantizedCountStore.addCount)
+    sfStore.totalCountForID = sfStore.totalCountForID ++ newTotalCounts.toIntArray.map(quantizedCountStore.addCount)
+
+    tokenStore.tokenForId = tokenStore.tokenForId ++ newTokens
+    tokenStore.counts = tokenStore.counts ++ newTokenCounts.toIntArray
+
+    MemoryStore.dump(sfStore, new File(targetDataFolder, "sf.mem"))
+    MemoryStore.dump(candMapStore, new File(targetDataFolder, "candmap.mem"))
+    MemoryStore.dump(contextStore, new File(targetDataFolder, "context.mem"))
+    MemoryStore.dump(tokenStore, new File(targetDataFolder, "tokens.mem"))
+
+    //Written last, since the other stores may have added quantized counts:
+    MemoryStore.dump(quantizedCountStore, new File(targetDataFolder, "quantized_counts.mem"))
+  }
+
+}
+
+
+object MemoryStoreUpdater {
+
+  val UPDATED_STORES = Seq("sf", "candmap", "context", "tokens", "quantized_counts")
+
+  def main(args: Array[String]) {
+    val (modelFolder, deltaFolder, targetFolder) = try {
+      (new File(args(0)), new File(args(1)), new File(args(2)))
+    } catch {
+      case e: Exception => {
+        System.err.println("Usage:")
+        System.err.println(" mvn scala:run -DmainClass=org.dbpedia.spotlight.db.MemoryStoreUpdater -Dexec.args=\"/data/model /data/delta /data/model_new\"")
+        System.exit(1)
+        return
+      }
+    }
+
+    val updater = new MemoryStoreUpdater(modelFolder)
+    updater.merge(ModelDelta.fromTSVFolder(deltaFolder))
+    updater.write(targetFolder)
+  }
+
+}
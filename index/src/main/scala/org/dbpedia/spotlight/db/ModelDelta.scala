@@ -0,0 +1,103 @@
+package org.dbpedia.spotlight.db
+
+import java.io.File
+import scala.collection.mutable
+import scala.io.Source
+import org.dbpedia.spotlight.model.DBpediaResourceOccurrence
+import org.dbpedia.spotlight.log.SpotlightLog
+
+
+/**
+ * A delta of counts for an existing model, e.g. the surface forms, candidates and contexts of updated
+ * Wikipedia articles. Surface forms, DBpedia resources and tokens are identified by their names, since
+ * they may not be part of the model yet. Counts may be negative to remove occurrences.
+ *
+ * The delta is merged into a model by [[org.dbpedia.spotlight.db.MemoryStoreUpdater]].
+ */
+
+class ModelDelta {
+
+  //Annotated and total counts of surface forms:
+  val surfaceFormCounts = mutable.HashMap[String, (Int, Int)]()
+
+  //Counts of (surface form, DBpedia resource) pairs:
+  val candidateCounts = mutable.HashMap[(String, String), Int]()
+
+  //Token counts in the context of DBpedia resources:
+  val tokenCounts = mutable.HashMap[String, mutable.HashMap[String, Int]]()
+
+  def addSurfaceForm(sf: String, annotatedCount: Int, totalCount: Int) {
+    val (annotated, total) = surfaceFormCounts.getOrElse(sf, (0, 0))
+    surfaceFormCounts.put(sf, (annotated + annotatedCount, total + totalCount))
+  }
+
+  def addCandidate(sf: String, uri: String, count: Int) {
+    candidateCounts.put((sf, uri), candidateCounts.getOrElse((sf, uri), 0) + count)
+  }
+
+  def addTokenCount(uri: String, token: String, count: Int) {
+    val counts = tokenCounts.getOrElseUpdate(uri, mutable.HashMap[String, Int]())
+    counts.put(token, counts.getOrElse(token, 0) + count)
+  }
+
+  /**
+   * Add an annotated occurrence: the surface form is counted as annotated, the candidate pair is counted
+   * and the tokens of the occurrence's context are added to the context of the DBpedia resource.
+   *
+   * @param occ the occurrence
+   * @param contextTokens the tokens of the occurrence's context
+   */
+  def addOccurrence(occ: DBpediaResourceOccurrence, contextTokens: Seq[String]) {
+    addSurfaceForm(occ.surfaceForm.name, 1, 1)
+    addCandidate(occ.surfaceForm.name, occ.resource.uri, 1)
+    contextTokens.foreach(addTokenCount(occ.resource.uri, _, 1))
+  }
+
+  def isEmpty: Boolean = surfaceFormCounts.isEmpty && candidateCounts.isEmpty && tokenCounts.isEmpty
+
+  override def toString: String = "ModelDelta[%d surface forms, %d candidates, %d contexts]".format(
+    surfaceFormCounts.size, candidateCounts.size, tokenCounts.size
+  )
+
+}
+
+
+object ModelDelta {
+
+  /**
+   * Reads a delta from tab-separated files in the folder, each of them is optional:
+   *
+   *  - sfCounts.tsv:    surface form, annotated count, total count
+   *  - pairCounts.tsv:  surface form, DBpedia resource, count
+   *  - tokenCounts.tsv: DBpedia resource, token, count
+   */
+  def fromTSVFolder(folder: File): ModelDelta = {
+    val delta = new ModelDelta()
+
+    def lines(name: String): Iterator[Array[String]] = {
+      val file = new File(folder, name)
+      if (file.exists())
+        Source.fromFile(file, "UTF-8").getLines().filter(!_.trim.isEmpty).map(_.split('\t'))
+      else
+        Iterator.empty
+    }
+
+    lines("sfCounts.tsv").foreach {
+      case Array(sf, annotated, total) => delta.addSurfaceForm(sf, annotated.toInt, total.toInt)
+      case line => SpotlightLog.warn(this.getClass, "Could not read line %s.", line.mkString("\t"))
+    }
+
+    lines("pairCounts.tsv").foreach {
+      case Array(sf, uri, count) => delta.addCandidate(sf, uri, count.toInt)
+      case line => SpotlightLog.warn(this.getClass, "Could not read line %s.", line.mkString("\t"))
+    }
+
+    lines("tokenCounts.tsv").foreach {
+      case Array(uri, token, count) => delta.addTokenCount(uri, token, count.toInt)
+      case line => SpotlightLog.warn(this.getClass, "Could not read line %s.", line.mkString("\t"))
+    }
+
+    delta
+  }
+
+}
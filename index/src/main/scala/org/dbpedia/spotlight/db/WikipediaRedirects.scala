@@ -0,0 +1,219 @@
+package org.dbpedia.spotlight.db
+
+import java.io.{File, InputStream}
+import org.semanticweb.yars.nx.parser.NxParser
+import org.dbpedia.spotlight.log.SpotlightLog
+import org.dbpedia.spotlight.db.mmap.{MMapIntArray, MMapStringTable, MMap}
+import org.apache.commons.io.FileUtils
+import scala.collection.JavaConversions._
+
+
+/**
+ * Redirects and disambiguation pages of a Wikipedia edition, with the namespace removed from all URIs.
+ *
+ * Redirects are path-compressed: every redirect maps directly to the end of its redirect chain,
+ * hence a lookup does not need to follow the chain.
+ */
+
+trait WikipediaRedirects {
+
+  /**
+   * Returns the end of the redirect chain for the URI or the URI itself if it is not a redirect.
+   */
+  def resolve(uri: String): String
+
+  def isDisambiguation(uri: String): Boolean
+
+}
+
+
+/**
+ * Redirects and disambiguation pages held in hash tables.
+ */
+class MemoryWikipediaRedirects(
+  val redirects: java.util.HashMap[String, String],
+  val disambiguations: java.util.HashSet[String]
+) extends WikipediaRedirects {
+
+  def resolve(uri: String): String = {
+    val end = redirects.get(uri)
+    if (end == null) uri else end
+  }
+
+  def isDisambiguation(uri: String): Boolean = disambiguations.contains(uri)
+
+}
+
+
+/**
+ * Redirects and disambiguation pages in memory-mapped string tables (see [[org.dbpedia.spotlight.db.mmap.MMapStringTable]]),
+ * written by [[org.dbpedia.spotlight.db.WikipediaRedirects.write]]. The tables are shared in the page cache and
+ * do not need to be parsed when they are loaded.
+ */
+class MMapWikipediaRedirects(folder: File) extends WikipediaRedirects {
+
+  private val sources         = new MMapStringTable(folder, "redirects")
+  private val targetIDs       = new MMapIntArray(new File(folder, "redirects.targets"))
+  private val targets         = new MMapStringTable(folder, "redirect_targets")
+  private val disambiguations = new MMapStringTable(folder, "disambiguations")
+
+  def resolve(uri: String): String = {
+    val id = sources.indexOf(uri)
+    if (id < 0) uri else targets(targetIDs(id))
+  }
+
+  def isDisambiguation(uri: String): Boolean = disambiguations.indexOf(uri) >= 0
+
+}
+
+
+object WikipediaRedirects {
+
+  val NAMESPACE_FILE = "namespace"
+
+  /**
+   * Reads the redirect and disambiguation triples and compresses the redirect chains.
+   */
+  def fromTriples(namespace: String, redirectsTriples: InputStream, disambiguationTriples: InputStream): MemoryWikipediaRedirects = {
+    SpotlightLog.info(this.getClass, "Loading redirects...")
+    val redirects = new java.util.HashMap[String, String]()
+    val redParser = new NxParser(redirectsTriples)
+    while (redParser.hasNext) {
+      val triple = redParser.next
+      val subj = triple(0).toString.replace(namespace, "")
+      val obj  = triple(2).toString.replace(namespace, "")
+      redirects.put(subj, obj)
+    }
+    SpotlightLog.info(this.getClass, "Done.")
+
+    SpotlightLog.info(this.getClass, "Compressing %d redirect chains...", redirects.size)
+    val compressed = compress(redirects)
+    SpotlightLog.info(this.getClass, "Done.")
+
+    SpotlightLog.info(this.getClass, "Loading disambiguations...")
+    val disambiguations = new java.util.HashSet[String]()
+    val disParser = new NxParser(disambiguationTriples)
+    while (disParser.hasNext) {
+      val triple = disParser.next
+      disambiguations.add(triple(0).toString.replace(namespace, ""))
+    }
+    SpotlightLog.info(this.getClass, "Done.")
+
+    new MemoryWikipediaRedirects(compressed, disambiguations)
+  }
+
+  /**
+   * Maps every redirect to the end of its chain. If a chain contains a cycle, it ends with the last URI
+   * before the chain would repeat itself.
+   *
+   * Ends of chains without cycles are shared by all URIs on the chain, so each of them is only followed once.
+   */
+  def compress(redirects: java.util.Map[String, String]): java.util.HashMap[String, String] = {
+    val ends = new java.util.HashMap[String, String](redirects.size * 4 / 3 + 1)
+
+    //The end of a cyclic chain depends on where it is entered, hence it cannot be shared:
+    val cyclicEnds = new java.util.HashMap[String, String]()
+
+    val path = new java.util.ArrayList[String]()
+    val onPath = new java.util.HashSet[String]()
+
+    redirects.keySet().foreach { start: String =>
+      if (!ends.containsKey(start)) {
+        path.clear()
+        onPath.clear()
+
+        var current = start
+        var end: String = null
+        var cyclic = false
+        path.add(current)
+        onPath.add(current)
+
+        while (end == null) {
+          val next = redirects.get(current)
+          if (next == null) {
+            end = current
+          } else if (ends.containsKey(next)) {
+            end = ends.get(next)
+          } else if (onPath.contains(next)) {
+            end = current
+            cyclic = true
+          } else {
+            path.add(next)
+            onPath.add(next)
+            current = next
+          }
+        }
+
+        if (cyclic) {
+          cyclicEnds.put(start, end)
+        } else {
+          path.foreach { uri: String =>
+            if (redirects.containsKey(uri))
+              ends.put(uri, end)
+          }
+        }
+      }
+    }
+
+    ends.putAll(cyclicEnds)
+    ends
+  }
+
+  /**
+   * Writes the redirects and disambiguation pages to the folder so that they can be loaded with
+   * [[org.dbpedia.spotlight.db.MMapWikipediaRedirects]].
+   */
+  def write(redirects: MemoryWikipediaRedirects, namespace: String, folder: File) {
+    folder.mkdirs()
+
+    val sources = new Array[String](redirects.redirects.size)
+    val targetIDs = new Array[Int](sources.length)
+    val targetIDForURI = new java.util.HashMap[String, java.lang.Integer]()
+    val targets = new java.util.ArrayList[String]()
+
+    var i = 0
+    redirects.redirects.entrySet().foreach { e: java.util.Map.Entry[String, String] =>
+      sources(i) = e.getKey
+      val id = targetIDForURI.get(e.getValue)
+      targetIDs(i) = if (id != null) {
+        id.intValue
+      } else {
+        targetIDForURI.put(e.getValue, targets.size)
+        targets.add(e.getValue)
+        targets.size - 1
+      }
+      i += 1
+    }
+
+    MMap.writeStrings(folder, "redirects", sources)
+    MMap.writeInts(new File(folder, "redirects.targets"), targetIDs)
+    MMap.writeStrings(folder, "redirect_targets", targets.toArray(new Array[String](targets.size)))
+    MMap.writeStrings(folder, "disambiguations", redirects.disambiguations.toArray(new Array[String](redirects.disambiguations.size)))
+
+    //Written last, a folder without the namespace file is incomplete:
+    FileUtils.write(new File(folder, NAMESPACE_FILE), namespace)
+  }
+
+  /**
+   * Loads the redirects from the folder if it was written for the namespace and after the triple files
+   * were last modified. Otherwise, the triple files are read and the redirects are written to the folder,
+   * so that they can be reused by the next indexing run.
+   */
+  def fromFolderOrTriples(folder: File, namespace: String, redirectsFile: File, disambiguationsFile: File): WikipediaRedirects = {
+    val namespaceFile = new File(folder, NAMESPACE_FILE)
+
+    if (namespaceFile.exists() &&
+      FileUtils.readFileToString(namespaceFile) == namespace &&
+      namespaceFile.lastModified() >= math.max(redirectsFile.lastModified(), disambiguationsFile.lastModified())) {
+      SpotlightLog.info(this.getClass, "Loading redirects and disambiguations from %s.", folder)
+      new MMapWikipediaRedirects(folder)
+    } else {
+      val redirects = fromTriples(namespace, FileUtils.openInputStream(redirectsFile), FileUtils.openInputStream(disambiguationsFile))
+      SpotlightLog.info(this.getClass, "Writing redirects and disambiguations to %s.", folder)
+      namespaceFile.delete()
+      write(redirects, namespace, folder)
+      redirects
+    }
+  }
+
+}
@@ -1,9 +1,8 @@
 package org.dbpedia.spotlight.db
 
 import org.semanticweb.yars.nx.parser.NxParser
-import java.io.InputStream
+import java.io.{File, InputStream}
 import org.dbpedia.spotlight.log.SpotlightLog
-import collection.immutable.ListSet
 import scala.Predef._
 import org.dbpedia.spotlight.exceptions.NotADBpediaResourceException
 import java.net.URLDecoder
@@ -21,38 +20,19 @@ import org.dbpedia.extraction.util.WikiUtil
 
 class WikipediaToDBpediaClosure (
   val namespace: String,
-  val redirectsTriples: InputStream,
-  val disambiguationTriples: InputStream
+  val redirects: WikipediaRedirects
 ) {
 
+  def this(namespace: String, redirectsTriples: InputStream, disambiguationTriples: InputStream) {
+    this(namespace, WikipediaRedirects.fromTriples(namespace, redirectsTriples, disambiguationTriples))
+  }
 
   def this(redirectsTriples: InputStream, disambiguationTriples: InputStream) {
     this(SpotlightConfiguration.DEFAULT_NAMESPACE, redirectsTriples, disambiguationTriples)
   }
 
-  SpotlightLog.info(this.getClass, "Loading redirects...")
-  var linkMap = Map[String, String]()
-  val redParser = new NxParser(redirectsTriples)
-  while (redParser.hasNext) {
-    val triple = redParser.next
-    val subj = triple(0).toString.replace(namespace, "")
-    val obj  = triple(2).toString.replace(namespace, "")
-    linkMap  = linkMap.updated(subj, obj)
-  }
-  SpotlightLog.info(this.getClass, "Done.")
-
-  SpotlightLog.info(this.getClass, "Loading disambiguations...")
-  var disambiguationsSet = Set[String]()
-  val disParser = new NxParser(disambiguationTriples)
-  while (disParser.hasNext) {
-    val triple = disParser.next
-    val subj = triple(0).toString.replace(namespace, "")
-    disambiguationsSet  = disambiguationsSet + subj
-  }
-  SpotlightLog.info(this.getClass, "Done.")
 
-
-  var wikiToDBPMap = Map[String, String]()
+  val wikiToDBPMap = new java.util.HashMap[String, String]()
   def this(redirectsTriples: InputStream, disambiguationTriples: InputStream, wikiToDBPTriples: InputStream) {
     this(redirectsTriples, disambiguationTriples)
 
@@ -62,7 +42,7 @@ class WikipediaToDBpediaClosure (
       val triple = wikiDBPParser.next
       val subj   = triple(0).toString.replaceFirst("http://[a-z]+[.]wikipedia[.]org/wiki/", "")
       val obj    = triple(2).toString.replace(namespace, "")
-      wikiToDBPMap = wikiToDBPMap.updated(subj, getEndOfChainURI(linkMap, obj))
+      wikiToDBPMap.put(subj, redirects.resolve(obj))
     }
   }
 
@@ -101,29 +81,45 @@ class WikipediaToDBpediaClosure (
 
     val uri = if(wikiURL.startsWith("http:")){
       if(wikiToDBPMap.size > 0) {
-        getEndOfChainURI(linkMap, wikiToDBPMap(wikiURL))
+        val mapped = wikiToDBPMap.get(wikiURL)
+        if (mapped == null)
+          throw new NoSuchElementException("key not found: " + wikiURL)
+        mapped
       } else {
-        getEndOfChainURI(linkMap, wikiToDBpediaURI(wikiURL))
+        redirects.resolve(wikiToDBpediaURI(wikiURL))
       }
     } else {
-      getEndOfChainURI(linkMap, wikiURL)
+      redirects.resolve(wikiURL)
     }
 
-    if (disambiguationsSet.contains(uri) || uri == null)
+    if (uri == null || redirects.isDisambiguation(uri))
       throw new NotADBpediaResourceException("Resource is a disambiguation page.")
     else
       uri
   }
 
-  def getEndOfChainURI(m: Map[String, String], uri: String): String = {
-    getURIChain(m, ListSet(uri)).last
-  }
+}
 
-  private def getURIChain(m: Map[String, String], chain: ListSet[String]): ListSet[String] = {
-      // get end of chain but check for redirects to itself
-      m.get(chain.last) match {
-          case Some(s: String) => if (chain.contains(s)) chain else getURIChain(m, chain + s)
-          case None => chain
-      }
+
+object WikipediaToDBpediaClosure {
+
+  //Folder for the compressed redirects in the raw data folder, see WikipediaRedirects.fromFolderOrTriples:
+  val REDIRECTS_FOLDER = "redirects.mmap"
+
+  /**
+   * Creates the closure from the redirects.nt and disambiguations.nt files in the raw data folder.
+   * The compressed redirects are kept in the folder and reused as long as the triple files do not change.
+   */
+  def fromFolder(namespace: String, rawDataFolder: File): WikipediaToDBpediaClosure = {
+    new WikipediaToDBpediaClosure(
+      namespace,
+      WikipediaRedirects.fromFolderOrTriples(
+        new File(rawDataFolder, REDIRECTS_FOLDER),
+        namespace,
+        new File(rawDataFolder, "redirects.nt"),
+        new File(rawDataFolder, "disambiguations.nt")
+      )
+    )
   }
+
 }
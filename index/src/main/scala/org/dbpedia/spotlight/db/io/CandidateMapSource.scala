@@ -13,6 +13,7 @@ import org.dbpedia.spotlight.log.SpotlightLog
 import org.dbpedia.spotlight.exceptions._
 import org.dbpedia.spotlight.db.memory.MemoryResourceStore
 import org.dbpedia.extraction.util.WikiUtil
+import util.{LongCountAggregator, ParallelLineParser}
 
 
 /**
@@ -77,6 +78,83 @@ object CandidateMapSource {
   ): java.util.Map[Pair[Int, Int], Int] = fromPigInputStreams(new FileInputStream(pairCounts), wikipediaToDBPediaClosure, resStore, sfStore)
 
 
+  /* Candidates are identified by the surface form ID and the resource ID packed into a single long: */
+
+  def candidateKey(sfID: Int, resID: Int): Long = (sfID.toLong << 32) | (resID & 0xFFFFFFFFL)
+
+  def sfID(key: Long): Int = (key >>> 32).toInt
+
+  def resID(key: Long): Int = key.toInt
+
+  //Negative keys for lines that do not result in a candidate:
+  private val URI_IGNORED   = -1L
+  private val URI_NOT_FOUND = -2L
+  private val SF_NOT_FOUND  = -3L
+  private val INVALID_LINE  = -4L
+  private val IGNORED_LINE  = -5L
+
+  /**
+   * Reads the candidate counts with the lines parsed in parallel. The counts are aggregated by their
+   * packed candidate key (see candidateKey) and spilled to disk if there are more than maxEntries candidates.
+   *
+   * @return unique candidate keys and their counts
+   */
+  def fromPigInputStreamsByID(
+    pairCounts: InputStream,
+    wikipediaToDBpediaClosure: WikipediaToDBpediaClosure,
+    resStore: ResourceStore,
+    sfStore: SurfaceFormStore,
+    maxEntries: Int
+  ): (Array[Long], Array[Int]) = {
+
+    val aggregator = new LongCountAggregator(maxEntries)
+
+    var uriNotFound = 0
+    var sfNotFound  = 0
+    var uriIgnored  = 0
+
+    SpotlightLog.info(this.getClass, "Reading Candidate Map.")
+    ParallelLineParser.parse(pairCounts) {
+      line: String => {
+        try {
+          val Array(sf, wikiurl, count) = line.trim().split('\t')
+          val uri = wikipediaToDBpediaClosure.wikipediaToDBpediaURI(DBpediaResourceSource.normalizePigURI(wikiurl))
+
+          (candidateKey(sfStore.getSurfaceForm(sf).id, resStore.getResourceByName(uri).id), count.toInt)
+        } catch {
+          case e: NotADBpediaResourceException     => (URI_IGNORED, 0)
+          case e: ArrayIndexOutOfBoundsException   => (INVALID_LINE, 0)
+          case e: DBpediaResourceNotFoundException => (URI_NOT_FOUND, 0)
+          case e: SurfaceFormNotFoundException     => (SF_NOT_FOUND, 0)
+          case e: scala.MatchError => (IGNORED_LINE, 0) //Ignore lines with multiple tabs
+        }
+      }
+    } foreach {
+      case (key, count) if key >= 0 => aggregator.add(key, count)
+      case (URI_IGNORED, _)   => uriIgnored += 1
+      case (URI_NOT_FOUND, _) => uriNotFound += 1
+      case (SF_NOT_FOUND, _)  => sfNotFound += 1
+      case (INVALID_LINE, _)  => SpotlightLog.warn(this.getClass, "WARNING: Could not read line.")
+      case _ =>
+    }
+    SpotlightLog.info(this.getClass, "Done.")
+
+    SpotlightLog.warn(this.getClass, "DBpedia resource not found: %d", uriNotFound)
+    SpotlightLog.warn(this.getClass, "Invalid DBpedia resources (e.g. disambiguation page): %d", uriIgnored)
+    SpotlightLog.warn(this.getClass, "SF not found: %d", sfNotFound)
+
+    aggregator.result()
+  }
+
+  def fromPigFilesByID(
+    pairCounts: File,
+    wikipediaToDBPediaClosure: WikipediaToDBpediaClosure,
+    resStore: ResourceStore,
+    sfStore: SurfaceFormStore,
+    maxEntries: Int
+  ): (Array[Long], Array[Int]) = fromPigInputStreamsByID(new FileInputStream(pairCounts), wikipediaToDBPediaClosure, resStore, sfStore, maxEntries)
+
+
   def fromTSVInputStream(
     candmap: InputStream,
     resourceStore: ResourceStore,
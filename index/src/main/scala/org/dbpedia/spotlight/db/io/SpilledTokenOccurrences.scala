@@ -0,0 +1,191 @@
+package org.dbpedia.spotlight.db.io
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import java.io._
+import scala.collection.mutable.ArrayBuffer
+import org.dbpedia.spotlight.db.WikipediaToDBpediaClosure
+import org.dbpedia.spotlight.db.model.ResourceStore
+import org.dbpedia.spotlight.log.SpotlightLog
+import org.dbpedia.spotlight.exceptions.{DBpediaResourceNotFoundException, NotADBpediaResourceException}
+import org.dbpedia.spotlight.model.TokenType
+
+
+/**
+ * Token occurrences read in a single pass over the tokenCounts file of Pig.
+ *
+ * While the file is read, the token types are collected and their total counts are summed
+ * (see [[org.dbpedia.spotlight.db.io.TokenSource]]), and the contexts of all resources are written
+ * to a temporary file with provisional token IDs. The token store and the context store can
+ * then both be built without reading and parsing the tokenCounts file a second time.
+ *
+ * @param minimumCount minimum count of a token in a context for it to be counted for the token type
+ */
+
+class SpilledTokenOccurrences(val minimumCount: Int) {
+
+  //Provisional token IDs in the order the tokens were first seen:
+  private val idForToken = new Object2IntOpenHashMap[String]()
+  idForToken.defaultReturnValue(-1)
+  private val tokenForID = ArrayBuffer[String]()
+
+  //Total counts of the tokens and whether a token is part of the token store:
+  private val tokenCounts = new IntArrayList()
+  private val counted = new java.util.BitSet()
+
+  //Final token ID for each provisional token ID:
+  private var finalIDs: Array[Int] = null
+
+  private val file = File.createTempFile("token_occurrences", ".bin")
+  file.deleteOnExit()
+  private var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))
+
+  private var resources = 0
+
+  private def provisionalID(token: String): Int = {
+    val id = idForToken.getInt(token)
+    if (id >= 0) {
+      id
+    } else {
+      val newID = tokenForID.size
+      idForToken.put(token, newID)
+      tokenForID += token
+      tokenCounts.add(0)
+      newID
+    }
+  }
+
+  private def count(id: Int, c: Int) {
+    tokenCounts.set(id, tokenCounts.getInt(id) + c)
+    counted.set(id)
+  }
+
+  /**
+   * Add the context of a Wikipedia article.
+   */
+  def add(wikiurl: String, tokens: Array[String], counts: Array[Int]) {
+    out.writeUTF(wikiurl)
+    out.writeInt(tokens.length)
+
+    var i = 0
+    while (i < tokens.length) {
+      val id = provisionalID(tokens(i))
+      out.writeInt(id)
+      out.writeInt(counts(i))
+
+      if (counts(i) >= minimumCount)
+        count(id, counts(i))
+      i += 1
+    }
+
+    resources += 1
+  }
+
+  /**
+   * Add tokens that must be part of the token store (e.g. the tokens of all surface forms).
+   */
+  def addAdditionalTokens(tokens: Seq[String]) {
+    SpotlightLog.info(this.getClass, "Read %d additional tokens...", tokens.size)
+    tokens.foreach { token: String =>
+      count(provisionalID(token), TokenSource.ADDITIONAL_TOKEN_COUNT)
+    }
+  }
+
+  /**
+   * Returns the token types and their total counts, the index of each token is its ID.
+   * No tokens can be added afterwards.
+   */
+  def tokenTypes(): (Array[String], Array[Int]) = {
+    if (out != null) {
+      out.close()
+      out = null
+    }
+
+    finalIDs = new Array[Int](tokenForID.size)
+    val tokens = ArrayBuffer[String]()
+    val counts = new IntArrayList()
+
+    var id = 0
+    while (id < finalIDs.length) {
+      if (counted.get(id)) {
+        finalIDs(id) = tokens.size
+        tokens += tokenForID(id)
+        counts.add(tokenCounts.getInt(id))
+      } else {
+        //Tokens that are not in the token store are unknown:
+        finalIDs(id) = TokenType.UNKNOWN.id
+      }
+      id += 1
+    }
+
+    SpotlightLog.info(this.getClass, "Collected %d token types from the contexts of %d resources.", tokens.size, resources)
+    (tokens.toArray, counts.toIntArray)
+  }
+
+  /**
+   * Reads the contexts back from disk with their final token IDs (see tokenTypes) and the IDs
+   * of their DBpedia resources. Contexts of Wikipedia articles that are not DBpedia resources are skipped.
+   * The temporary file is deleted once all contexts were read.
+   */
+  def contextsByID(wikipediaToDBpediaClosure: WikipediaToDBpediaClosure, resStore: ResourceStore): Iterator[Triple[Int, Array[Int], Array[Int]]] = {
+    if (finalIDs == null)
+      tokenTypes()
+
+    val in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))
+
+    (0 until resources).iterator.map { i: Int =>
+      if ((i + 1) % 10000 == 0)
+        SpotlightLog.info(this.getClass, "Read context for %d resources...", i + 1)
+
+      val wikiurl = in.readUTF()
+      val n = in.readInt()
+      val tokens = new Array[Int](n)
+      val counts = new Array[Int](n)
+
+      var j = 0
+      while (j < n) {
+        tokens(j) = finalIDs(in.readInt())
+        counts(j) = in.readInt()
+        j += 1
+      }
+
+      if (i == resources - 1) {
+        in.close()
+        file.delete()
+      }
+
+      try {
+        Triple(resStore.getResourceByName(wikipediaToDBpediaClosure.wikipediaToDBpediaURI(wikiurl)).id, tokens, counts)
+      } catch {
+        case e: DBpediaResourceNotFoundException => null
+        case e: NotADBpediaResourceException     => null
+      }
+    }.filter(_ != null)
+  }
+
+}
+
+object SpilledTokenOccurrences {
+
+  def fromPigInputStream(tokenInputStream: InputStream, minimumCount: Int): SpilledTokenOccurrences = {
+    val occurrences = new SpilledTokenOccurrences(minimumCount)
+
+    //Contexts are read with all tokens, only counts >= minimumCount are added to the token types:
+    var i = 0
+    TokenOccurrenceSource.parallelTokenOccurrenceSource(tokenInputStream, 0) foreach {
+      case Triple(wikiurl, tokens, counts) => {
+        i += 1
+        if (i % 10000 == 0)
+          SpotlightLog.info(this.getClass, "Read context for %d resources...", i)
+
+        occurrences.add(wikiurl, tokens, counts)
+      }
+    }
+
+    occurrences
+  }
+
+  def fromPigFile(tokenFile: File, minimumCount: Int): SpilledTokenOccurrences =
+    fromPigInputStream(new FileInputStream(tokenFile), minimumCount)
+
+}
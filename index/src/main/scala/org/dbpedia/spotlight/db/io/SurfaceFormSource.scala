@@ -13,6 +13,7 @@ import scala.collection.JavaConversions._
 import org.dbpedia.spotlight.db.WikipediaToDBpediaClosure
 import org.dbpedia.spotlight.db.memory.MemoryResourceStore
 import org.dbpedia.extraction.util.WikiUtil
+import util.ParallelLineParser
 
 /**
  * Represents a source of SurfaceForms
@@ -97,6 +98,47 @@ object SurfaceFormSource {
   }
 
 
+  /**
+   * Reads the annotated and total counts and the lowercase counts (see lowercaseCountsFromPigInputStream)
+   * in a single pass over the file, the lines are parsed in parallel.
+   */
+  def fromPigInputStreamWithLowercaseCounts(sfAndTotalCounts: InputStream): (Map[SurfaceForm, (Int, Int)], Map[String, Int]) = {
+
+    SpotlightLog.info(this.getClass, "Reading annotated, total and lowercase counts...")
+
+    val sfMap = new HashMap[SurfaceForm, (Int, Int)]()
+    val lowercaseCountsMap = new HashMap[String, Int]()
+
+    ParallelLineParser.parse(sfAndTotalCounts) {
+      lineS: String => {
+        val line = lineS.trim().split('\t')
+        (line(0), line(1).toInt, if( line.size == 3 ) line(2).toInt else -1)
+      }
+    } foreach {
+      //Lowercase counts have a "-1" annotated count:
+      case (surfaceform, -1, countTotal) => lowercaseCountsMap.put(surfaceform, countTotal)
+      case (name, countAnnotated, countTotal) => {
+        val surfaceform = new SurfaceForm(name)
+        val existing = sfMap.get(surfaceform)
+        sfMap.put(
+          surfaceform,
+          if (existing != null)
+            (existing._1 + countAnnotated, existing._2 + countTotal)
+          else
+            (countAnnotated, countTotal)
+        )
+      }
+    }
+
+    SpotlightLog.info(this.getClass, "Done.")
+
+    (sfMap, lowercaseCountsMap)
+  }
+
+  def fromPigFileWithLowercaseCounts(sfAndTotalCounts: File): (Map[SurfaceForm, (Int, Int)], Map[String, Int]) =
+    fromPigInputStreamWithLowercaseCounts(new FileInputStream(sfAndTotalCounts))
+
+
   def fromTSVInputStream(in: InputStream): Map[SurfaceForm, (Int, Int)] = {
     val sfFormMap = new HashMap[SurfaceForm, (Int, Int)]()
 
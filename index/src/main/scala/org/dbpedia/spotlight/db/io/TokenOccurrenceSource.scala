@@ -9,7 +9,7 @@ import scala.Predef._
 import scala.Array
 import org.dbpedia.spotlight.exceptions.{DBpediaResourceNotFoundException, NotADBpediaResourceException}
 import org.dbpedia.spotlight.model.{TokenType, DBpediaResource}
-import util.TokenOccurrenceParser
+import util.{ParallelLineParser, TokenOccurrenceParser}
 
 
 /**
@@ -49,11 +49,22 @@ object TokenOccurrenceSource {
 
   def plainTokenOccurrenceSource(tokenInputStream: InputStream, minimumCount: Int): Iterator[Triple[String, Array[String], Array[Int]]] = {
     Source.fromInputStream(tokenInputStream) getLines() filter(!_.equals("")) map {
-      line: String => {
-        val Array(wikiurl, tokens) = line.trim().split('\t')
-        val Pair(tokensA, countsA) = tokensParser.parse(tokens, minimumCount)
-        Triple(wikiurl, tokensA, countsA)
-      }
+      line: String => parseLine(line, minimumCount)
     }
   }
+
+  /**
+   * Same as plainTokenOccurrenceSource but the lines are parsed in parallel.
+   */
+  def parallelTokenOccurrenceSource(tokenInputStream: InputStream, minimumCount: Int): Iterator[Triple[String, Array[String], Array[Int]]] = {
+    ParallelLineParser.parse(tokenInputStream) {
+      line: String => if (line.equals("")) null else parseLine(line, minimumCount)
+    } filter(_ != null)
+  }
+
+  private def parseLine(line: String, minimumCount: Int): Triple[String, Array[String], Array[Int]] = {
+    val Array(wikiurl, tokens) = line.trim().split('\t')
+    val Pair(tokensA, countsA) = tokensParser.parse(tokens, minimumCount)
+    Triple(wikiurl, tokensA, countsA)
+  }
 }
@@ -21,7 +21,7 @@ import org.dbpedia.spotlight.model._
 
 object TokenSource {
 
-  private val ADDITIONAL_TOKEN_COUNT = 1
+  private[io] val ADDITIONAL_TOKEN_COUNT = 1
 
   def fromSFStore(sfStore: SurfaceFormStore, tokenizer: StringTokenizer): Seq[String] = {
     SpotlightLog.info(this.getClass, "Adding all surface form tokens to the TokenStore...")
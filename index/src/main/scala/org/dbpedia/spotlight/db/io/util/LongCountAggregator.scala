@@ -0,0 +1,128 @@
+package org.dbpedia.spotlight.db.io.util
+
+import it.unimi.dsi.fastutil.longs.{LongArrayList, Long2IntOpenHashMap}
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import java.io._
+import java.util.{Comparator, PriorityQueue}
+import org.dbpedia.spotlight.log.SpotlightLog
+import scala.collection.mutable.ArrayBuffer
+
+
+/**
+ * Sums counts for primitive long keys (e.g. packed pairs of IDs).
+ *
+ * If more than maxEntries keys are held in memory, the counts are written to a run
+ * on disk sorted by key. When the counts are requested, all runs are merged.
+ *
+ * @param maxEntries maximum number of keys held in memory
+ */
+
+class LongCountAggregator(val maxEntries: Int) {
+
+  private var counts = new Long2IntOpenHashMap()
+  counts.defaultReturnValue(0)
+
+  private val runs = ArrayBuffer[File]()
+
+  def add(key: Long, count: Int) {
+    counts.put(key, counts.get(key) + count)
+
+    if (counts.size >= maxEntries)
+      spill()
+  }
+
+  private def sortedKeys(): Array[Long] = {
+    val keys = counts.keySet().toLongArray
+    java.util.Arrays.sort(keys)
+    keys
+  }
+
+  private def spill() {
+    val file = File.createTempFile("counts_run", ".bin")
+    file.deleteOnExit()
+
+    SpotlightLog.info(this.getClass, "Writing %d counts to run %d...", counts.size, runs.size + 1)
+    val out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))
+    val keys = sortedKeys()
+    out.writeInt(keys.length)
+    keys.foreach { key: Long =>
+      out.writeLong(key)
+      out.writeInt(counts.get(key))
+    }
+    out.close()
+
+    runs += file
+    counts = new Long2IntOpenHashMap()
+    counts.defaultReturnValue(0)
+  }
+
+  /**
+   * Returns all keys and their summed counts. The keys are unique, their order is unspecified.
+   * The aggregator must not be used afterwards.
+   */
+  def result(): (Array[Long], Array[Int]) = {
+    if (runs.isEmpty) {
+      val keys = counts.keySet().toLongArray
+      val values = keys.map(key => counts.get(key))
+      counts = null
+      (keys, values)
+    } else {
+      if (!counts.isEmpty)
+        spill()
+      counts = null
+      merge()
+    }
+  }
+
+  private class RunReader(val file: File) {
+    private val in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))
+    private var remaining = in.readInt()
+    var key = 0L
+    var count = 0
+
+    def advance(): Boolean = {
+      if (remaining == 0) {
+        in.close()
+        file.delete()
+        false
+      } else {
+        key = in.readLong()
+        count = in.readInt()
+        remaining -= 1
+        true
+      }
+    }
+  }
+
+  private def merge(): (Array[Long], Array[Int]) = {
+    SpotlightLog.info(this.getClass, "Merging %d runs...", runs.size)
+
+    val queue = new PriorityQueue[RunReader](runs.size, new Comparator[RunReader] {
+      def compare(a: RunReader, b: RunReader): Int = java.lang.Long.compare(a.key, b.key)
+    })
+    runs.foreach { run: File =>
+      val reader = new RunReader(run)
+      if (reader.advance())
+        queue.add(reader)
+    }
+    runs.clear()
+
+    val keys = new LongArrayList()
+    val values = new IntArrayList()
+    while (!queue.isEmpty) {
+      val reader = queue.poll()
+      if (!keys.isEmpty && keys.getLong(keys.size - 1) == reader.key)
+        values.set(values.size - 1, values.getInt(values.size - 1) + reader.count)
+      else {
+        keys.add(reader.key)
+        values.add(reader.count)
+      }
+
+      if (reader.advance())
+        queue.add(reader)
+    }
+
+    (keys.toLongArray, values.toIntArray)
+  }
+
+}
@@ -0,0 +1,23 @@
+package org.dbpedia.spotlight.db.io.util
+
+import java.io.InputStream
+import io.Source
+
+
+/**
+ * Parses the lines of a Pig output file in parallel. The lines are read in batches, each batch
+ * is parsed by all cores and the results are returned in the order of the lines. Only a single
+ * batch is kept in memory at a time.
+ */
+
+object ParallelLineParser {
+
+  val BATCH_SIZE = 50000
+
+  def parse[T](in: InputStream, batchSize: Int = BATCH_SIZE)(parseLine: String => T): Iterator[T] = {
+    Source.fromInputStream(in).getLines().grouped(batchSize).flatMap { batch: Seq[String] =>
+      batch.par.map(parseLine).seq
+    }
+  }
+
+}
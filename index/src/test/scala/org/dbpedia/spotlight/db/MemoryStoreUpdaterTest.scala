@@ -0,0 +1,149 @@
+package org.dbpedia.spotlight.db
+
+import java.io.{FileInputStream, File}
+import org.apache.commons.io.FileUtils
+import org.junit.{After, Before, Test}
+import org.junit.Assert._
+import org.dbpedia.spotlight.db.io.CandidateMapSource
+import org.dbpedia.spotlight.db.memory._
+import org.dbpedia.spotlight.model.{TokenType, DBpediaResource, SurfaceForm}
+
+/**
+ * Tests merging a delta into a small model, writing it to a new model folder and loading it again.
+ */
+class MemoryStoreUpdaterTest {
+
+  var folder: File = null
+
+  /*
+   * Surface forms:  1 Berlin (10, 20), 2 Paris (5, 10), lowercase "berlin" with count 3
+   * Resources:      1 Berlin, 2 Paris, 3 Berlin_(band)
+   * Candidates:     Berlin -> Berlin 8, Berlin_(band) 2, Paris 1; Paris -> Paris 5
+   * Tokens:         1 city, 2 capital, 3 music
+   * Contexts:       Berlin: city 3, capital 4; Paris: city 2; Berlin_(band): music 5
+   */
+  @Before
+  def createModel() {
+    folder = java.nio.file.Files.createTempDirectory("spotlight-updater").toFile
+    val modelDataFolder = new File(new File(folder, "model_1"), "model")
+    modelDataFolder.mkdirs()
+
+    val quantizedCountStore = new MemoryQuantizedCountStore()
+    val indexer = new MemoryStoreIndexer(modelDataFolder, quantizedCountStore)
+
+    val sfCounts = new java.util.LinkedHashMap[SurfaceForm, (Int, Int)]()
+    sfCounts.put(new SurfaceForm("Berlin"), (10, 20))
+    sfCounts.put(new SurfaceForm("Paris"), (5, 10))
+    val lowercaseCounts = new java.util.HashMap[String, Int]()
+    lowercaseCounts.put("berlin", 3)
+    indexer.addSurfaceForms(sfCounts, lowercaseCounts, 1)
+
+    val resourceCounts = new java.util.LinkedHashMap[DBpediaResource, Int]()
+    Seq("Berlin", "Paris", "Berlin_(band)").zipWithIndex.foreach { case (uri, i) =>
+      val resource = new DBpediaResource(uri, 10)
+      resource.id = i + 1
+      resourceCounts.put(resource, 10)
+    }
+    indexer.addResources(resourceCounts)
+
+    indexer.addCandidatesByID(
+      Array(CandidateMapSource.candidateKey(1, 1), CandidateMapSource.candidateKey(1, 3), CandidateMapSource.candidateKey(1, 2), CandidateMapSource.candidateKey(2, 2)),
+      Array(8, 2, 1, 5),
+      3
+    )
+
+    indexer.addTokenTypes(Array(TokenType.UNKNOWN.tokenType, "city", "capital", "music"), Array(1, 5, 4, 5))
+
+    indexer.createContextStore(4)
+    indexer.addTokenOccurrencesByID(Iterator(
+      Triple(1, Array(1, 2), Array(3, 4)),
+      Triple(2, Array(1), Array(2)),
+      Triple(3, Array(3), Array(5))
+    ))
+    indexer.writeTokenOccurrences()
+    indexer.writeQuantizedCounts()
+  }
+
+  @After
+  def deleteModel() {
+    FileUtils.deleteDirectory(folder)
+  }
+
+  private def mem(name: String) = new FileInputStream(new File(new File(new File(folder, "model_2"), "model"), name + ".mem"))
+
+  @Test
+  def mergeAndReload() {
+    val delta = new ModelDelta()
+    delta.addSurfaceForm("Berlin", 5, 5)
+    delta.addCandidate("Berlin", "Berlin_(band)", 10)
+    delta.addCandidate("Berlin", "Paris", -1)
+
+    //No longer annotated, its remaining candidate is removed:
+    delta.addSurfaceForm("Paris", -5, 0)
+    delta.addCandidate("Paris", "Paris", -3)
+
+    //New surface forms, the candidate of a DBpedia resource that is not in the model is skipped:
+    delta.addSurfaceForm("BERLIN", 2, 2)
+    delta.addCandidate("BERLIN", "Berlin", 2)
+    delta.addSurfaceForm("Rome", 1, 1)
+    delta.addCandidate("Rome", "Rome", 1)
+
+    delta.addTokenCount("Berlin", "city", 2)
+    delta.addTokenCount("Berlin", "capital", -4)
+    delta.addTokenCount("Berlin", "wall", 3)
+
+    val updater = new MemoryStoreUpdater(new File(folder, "model_1"))
+    updater.merge(delta)
+    updater.write(new File(folder, "model_2"))
+
+    val quantizedCountStore = MemoryStore.loadQuantizedCountStore(mem("quantized_counts"))
+    val sfStore = MemoryStore.loadSurfaceFormStore(mem("sf"), quantizedCountStore)
+    val resStore = MemoryStore.loadResourceStore(mem("res"), quantizedCountStore)
+    val candMapStore = MemoryStore.loadCandidateMapStore(mem("candmap"), resStore, quantizedCountStore)
+    val tokenStore = MemoryStore.loadTokenTypeStore(mem("tokens"))
+    val contextStore = MemoryStore.loadContextStore(mem("context"), tokenStore, quantizedCountStore)
+
+    //Surface forms, new ones are appended:
+    assertEquals(5, sfStore.size)
+    val berlin = sfStore.getSurfaceForm("Berlin")
+    assertEquals((1, 15, 25), (berlin.id, berlin.annotatedCount, berlin.totalCount))
+    assertEquals(0, sfStore.getSurfaceForm("Paris").annotatedCount)
+    val upperBerlin = sfStore.getSurfaceForm("BERLIN")
+    val rome = sfStore.getSurfaceForm("Rome")
+    assertEquals(Set(3, 4), Set(upperBerlin.id, rome.id))
+    assertEquals((2, 2), (upperBerlin.annotatedCount, upperBerlin.totalCount))
+
+    //Lowercase map, the first element is the count of the lowercase form:
+    assertEquals(List(3, 1, upperBerlin.id), sfStore.lowercaseMap.get("berlin").toList)
+    assertEquals(List(0, rome.id), sfStore.lowercaseMap.get("rome").toList)
+
+    //Candidates are sorted by count again, candidates with count 0 are removed:
+    def candidates(sf: String) = {
+      val (ids, counts) = candMapStore.getTopCandidateIDs(sfStore.getSurfaceForm(sf), Int.MaxValue)
+      ids.toList.zip(counts.toList)
+    }
+    assertEquals(List((3, 12), (1, 8)), candidates("Berlin"))
+    assertEquals(Nil, candidates("Paris"))
+    assertEquals(List((1, 2)), candidates("BERLIN"))
+    assertEquals(Nil, candidates("Rome"))
+
+    //Tokens, new ones are appended:
+    assertEquals(5, tokenStore.size)
+    assertEquals(4, tokenStore.getTokenType("wall").id)
+    assertEquals(List(1, 7, 0, 5, 3), tokenStore.counts.toList)
+
+    //Contexts, tokens whose count drops to 0 are removed:
+    def context(resID: Int) = (contextStore.rowStart(resID) until contextStore.rowEnd(resID)).map { i: Int =>
+      (contextStore.tokenIds(i), quantizedCountStore.getCount(contextStore.counts(i)))
+    }.toList
+    assertEquals(List((1, 5), (4, 3)), context(1))
+    assertEquals(List((1, 2)), context(2))
+    assertEquals(List((3, 5)), context(3))
+  }
+
+  @Test(expected = classOf[java.io.IOException])
+  def existingTargetFolder() {
+    new MemoryStoreUpdater(new File(folder, "model_1")).write(new File(folder, "model_1"))
+  }
+
+}
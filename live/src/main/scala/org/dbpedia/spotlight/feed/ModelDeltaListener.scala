@@ -0,0 +1,36 @@
+package org.dbpedia.spotlight.feed
+
+import collection.mutable.Set
+import org.dbpedia.spotlight.model.{Text, DBpediaResourceOccurrence}
+import org.dbpedia.spotlight.db.ModelDelta
+import org.dbpedia.spotlight.db.model.StringTokenizer
+
+/**
+ * Collects the occurrences of a feed of Wikipedia updates (see [[org.dbpedia.spotlight.feed.WikipediaUpdateFeed]])
+ * in a [[org.dbpedia.spotlight.db.ModelDelta]]. The collected delta can be taken at any time and merged into a
+ * model with the [[org.dbpedia.spotlight.db.MemoryStoreUpdater]].
+ *
+ * @param tokenizer tokenizer of the model, used for the contexts of the occurrences
+ */
+class ModelDeltaListener(tokenizer: StringTokenizer) extends FeedListener[(Set[DBpediaResourceOccurrence], Text)] {
+
+    private var delta = new ModelDelta()
+
+    protected def update(item: (Set[DBpediaResourceOccurrence], Text)) {
+        val contextTokens = tokenizer.tokenize(item._2.text)
+
+        synchronized {
+            item._1.foreach(occ => delta.addOccurrence(occ, contextTokens))
+        }
+    }
+
+    /**
+     * Returns the delta collected so far and starts a new one.
+     */
+    def takeDelta(): ModelDelta = synchronized {
+        val collected = delta
+        delta = new ModelDelta()
+        collected
+    }
+
+}
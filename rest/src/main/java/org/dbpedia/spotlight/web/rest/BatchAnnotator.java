@@ -0,0 +1,307 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.web.rest;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbpedia.spotlight.db.model.TextTokenizer;
+import org.dbpedia.spotlight.disambiguate.ParagraphDisambiguatorJ;
+import org.dbpedia.spotlight.exceptions.InputException;
+import org.dbpedia.spotlight.filter.visitor.FilterElement;
+import org.dbpedia.spotlight.filter.visitor.FilterOccsImpl;
+import org.dbpedia.spotlight.filter.visitor.OccsFilter;
+import org.dbpedia.spotlight.model.*;
+import org.dbpedia.spotlight.spot.Spotter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Annotates a batch of documents with shared parameters. The documents run through a pipeline of three
+ * stages (tokenization, spotting, disambiguation and filtering), each stage has its own pool of threads.
+ * A document is handed to the next stage as soon as it leaves the previous one, so all stages work on
+ * different documents at the same time. The results are written in the order of the documents.
+ */
+public class BatchAnnotator {
+
+    static Log LOG = LogFactory.getLog(BatchAnnotator.class);
+
+    private static final int STAGE_THREADS = Integer.getInteger("spotlight.batch.threads", Runtime.getRuntime().availableProcessors());
+
+    //Documents of one batch that are read ahead of the output, set with -Dspotlight.batch.inFlight:
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("spotlight.batch.inFlight", 2 * STAGE_THREADS);
+
+    private static final ExecutorService tokenizeStage = stage("batch-tokenize");
+    private static final ExecutorService spotStage = stage("batch-spot");
+    private static final ExecutorService disambiguateStage = stage("batch-disambiguate");
+
+    private static ExecutorService stage(final String name) {
+        return Executors.newFixedThreadPool(STAGE_THREADS, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger(0);
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private OutputManager outputManager = new OutputManager();
+
+    /**
+     * A document of the batch and its state in the pipeline.
+     */
+    private class Document {
+        final String id;
+        final Text text;
+        List<SurfaceFormOccurrence> spots;
+        List<DBpediaResourceOccurrence> occurrences = new ArrayList<DBpediaResourceOccurrence>();
+        Throwable error;
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Document(String id, String text) {
+            this.id = id;
+            this.text = new Text(text);
+        }
+
+        //Also Errors end the document, so that it always leaves the pipeline and the batch never waits forever:
+        void fail(Throwable e) {
+            if (e instanceof Error)
+                LOG.error(String.format("Error annotating document %s of a batch.", id), e);
+            error = e;
+            done.countDown();
+        }
+    }
+
+    /**
+     * Reads the documents of a batch one at a time, so that the batch does not have to be held in memory.
+     * The body is either one document per line (NDJSON) or a JSON array. A document is either a JSON object
+     * with the fields "text" and optionally "id" or a JSON string. Lines that are not JSON are taken as the
+     * text of a document. A JSON array is parsed as a whole, large batches should be sent one document per line.
+     */
+    public static class DocumentReader {
+
+        private final BufferedReader in;
+        private int count = 0;
+        private JSONArray array = null;
+
+        public DocumentReader(Reader in) {
+            this.in = new BufferedReader(in);
+        }
+
+        /**
+         * @return the next pair of document id and text, null if there are no more documents
+         */
+        public String[] next() throws IOException, InputException {
+            if (array != null)
+                return count < array.size() ? parseDocument(array.get(count), count++) : null;
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                String l = line.trim();
+                if (l.equals(""))
+                    continue;
+
+                try {
+                    if (count == 0 && l.startsWith("[")) {
+                        StringBuilder body = new StringBuilder(l);
+                        while ((line = in.readLine()) != null)
+                            body.append('\n').append(line);
+                        array = JSONArray.fromObject(body.toString());
+                        return next();
+                    }
+
+                    if (l.startsWith("{"))
+                        return parseDocument(JSONObject.fromObject(l), count++);
+                    else if (l.startsWith("\""))
+                        return parseDocument(JSONArray.fromObject("[" + l + "]").get(0), count++);
+                    else
+                        return new String[]{ String.valueOf(count++), l };
+                } catch (net.sf.json.JSONException e) {
+                    throw new InputException(String.format("Could not parse document %d of the batch: %s", count, e.getMessage()));
+                }
+            }
+            return null;
+        }
+    }
+
+    private static String[] parseDocument(Object document, int i) throws InputException {
+        if (document instanceof JSONObject) {
+            JSONObject o = (JSONObject) document;
+            if (!o.has("text"))
+                throw new InputException(String.format("Document %d has no text.", i));
+            return new String[]{ o.optString("id", String.valueOf(i)), o.getString("text") };
+        } else {
+            return new String[]{ String.valueOf(i), String.valueOf(document) };
+        }
+    }
+
+    /**
+     * Annotates all documents and writes one JSON object per document and line to the output, in the order of
+     * the documents. Each object holds the id of the document and its Resources, or an error. At most
+     * MAX_IN_FLIGHT documents are read ahead of the output, so memory is bounded independently of the size of
+     * the batch and concurrent batches share the stages. If the batch cannot be parsed, the documents before the
+     * error are annotated and the output ends with an object holding only the error.
+     */
+    public void annotate(DocumentReader documents,
+                         Writer out,
+                         final double confidence,
+                         final int support,
+                         final String ontologyTypesString,
+                         final String sparqlQuery,
+                         final String policy,
+                         final boolean coreferenceResolution,
+                         String clientIp,
+                         String spotterName,
+                         String disambiguatorName) throws IOException, InputException {
+
+        LOG.info(String.format("Batch for client ip: %s, spotter: %s, disambiguator: %s", clientIp, spotterName, disambiguatorName));
+        long start = System.currentTimeMillis();
+        int count = 0;
+
+        //The stages run in other threads, hence all components are taken from the generation of this request:
+        ModelGeneration generation = Server.acquireGeneration();
+        try {
+            final TextTokenizer tokenizer = Server.getTokenizer();
+            final Spotter spotter = Server.getSpotter(spotterName);
+            final ParagraphDisambiguatorJ disambiguator = Server.getDisambiguator(disambiguatorName);
+            final boolean blacklist = SpotlightInterface.policyIsBlacklist(policy);
+            final List<Double> similarityThresholds = Server.getSimilarityThresholds();
+            final org.dbpedia.spotlight.sparql.SparqlQueryExecuter sparqlExecuter = Server.getSparqlExecute();
+
+            //Documents in the pipeline, in the order of the batch:
+            Deque<Document> inFlight = new ArrayDeque<Document>(MAX_IN_FLIGHT);
+
+            while (true) {
+                String[] d;
+                try {
+                    d = documents.next();
+                } catch (InputException e) {
+                    while (!inFlight.isEmpty())
+                        write(inFlight.removeFirst(), out);
+
+                    JSONObject error = new JSONObject();
+                    error.put("@error", e.getMessage());
+                    out.write(error.toString());
+                    out.write("\n");
+                    break;
+                }
+                if (d == null)
+                    break;
+
+                //Wait for the oldest document if the pipeline is full, write all that are done:
+                if (inFlight.size() >= MAX_IN_FLIGHT)
+                    write(inFlight.removeFirst(), out);
+                while (!inFlight.isEmpty() && inFlight.peekFirst().done.getCount() == 0)
+                    write(inFlight.removeFirst(), out);
+
+                final Document document = new Document(d[0], d[1]);
+                inFlight.addLast(document);
+                count++;
+
+                final Runnable disambiguate = new Runnable() {
+                    public void run() {
+                        try {
+                            if (document.spots.size() > 0) {
+                                List<DBpediaResourceOccurrence> occs = disambiguator.disambiguate(Factory.paragraph().fromJ(document.spots));
+                                FilterElement filter = new OccsFilter(confidence, support, ontologyTypesString, sparqlQuery, blacklist, coreferenceResolution, similarityThresholds, sparqlExecuter);
+                                document.occurrences = filter.accept(new FilterOccsImpl(), occs);
+                            }
+                            document.done.countDown();
+                        } catch (Throwable e) {
+                            document.fail(e);
+                        }
+                    }
+                };
+
+                final Runnable spot = new Runnable() {
+                    public void run() {
+                        try {
+                            document.spots = spotter.extract(document.text);
+                            disambiguateStage.execute(disambiguate);
+                        } catch (Throwable e) {
+                            document.fail(e);
+                        }
+                    }
+                };
+
+                tokenizeStage.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            if (tokenizer != null)
+                                tokenizer.tokenizeMaybe(document.text);
+                            spotStage.execute(spot);
+                        } catch (Throwable e) {
+                            document.fail(e);
+                        }
+                    }
+                });
+            }
+
+            while (!inFlight.isEmpty())
+                write(inFlight.removeFirst(), out);
+            out.flush();
+
+        } finally {
+            Server.releaseGeneration(generation);
+        }
+
+        LOG.info(String.format("Annotated batch of %d documents in %d ms.", count, System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Waits for the document to leave the pipeline and writes its result.
+     */
+    private void write(Document document, Writer out) throws IOException {
+        try {
+            document.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the batch.", e);
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("id", document.id);
+        if (document.error != null) {
+            result.put("@error", document.error.getMessage() != null ? document.error.getMessage() : document.error.toString());
+        } else {
+            JSONArray resources = new JSONArray();
+            for (DBpediaResourceOccurrence occ : document.occurrences)
+                resources.add(outputManager.makeResourceJSON(occ, 0));
+            result.put("Resources", resources);
+        }
+
+        out.write(result.toString());
+        out.write("\n");
+    }
+
+}
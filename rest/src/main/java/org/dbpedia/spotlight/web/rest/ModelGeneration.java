@@ -0,0 +1,195 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.web.rest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbpedia.spotlight.db.model.TextTokenizer;
+import org.dbpedia.spotlight.disambiguate.ParagraphDisambiguatorJ;
+import org.dbpedia.spotlight.model.SpotlightConfiguration.DisambiguationPolicy;
+import org.dbpedia.spotlight.model.SpotterConfiguration.SpotterPolicy;
+import org.dbpedia.spotlight.sparql.SparqlQueryExecuter;
+import org.dbpedia.spotlight.spot.Spotter;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One loaded set of spotters, disambiguators and tokenizer served by the {@link Server}.
+ *
+ * Requests acquire the generation they start on and release it when they are done, so that a request
+ * never mixes components of two models. When a new generation replaces this one, it is retired and
+ * its components are released as soon as the last in-flight request has finished.
+ */
+public class ModelGeneration {
+
+    static Log LOG = LogFactory.getLog(ModelGeneration.class);
+
+    private final int id;
+    private final File modelFolder;
+
+    private volatile Map<SpotterPolicy,Spotter> spotters;
+    private volatile Map<DisambiguationPolicy,ParagraphDisambiguatorJ> disambiguators;
+    private volatile TextTokenizer tokenizer;
+
+    private final String namespacePrefix;
+    private final SparqlQueryExecuter sparqlExecuter;
+    private final List<Double> similarityThresholds;
+
+    private final long loadedAt = System.currentTimeMillis();
+    private long loadTime = 0;
+    private long warmUpTime = 0;
+
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicBoolean retired = new AtomicBoolean(false);
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    public ModelGeneration(int id,
+                           File modelFolder,
+                           Map<SpotterPolicy,Spotter> spotters,
+                           Map<DisambiguationPolicy,ParagraphDisambiguatorJ> disambiguators,
+                           TextTokenizer tokenizer,
+                           String namespacePrefix,
+                           SparqlQueryExecuter sparqlExecuter,
+                           List<Double> similarityThresholds) {
+        this.id = id;
+        this.modelFolder = modelFolder;
+        this.spotters = spotters;
+        this.disambiguators = disambiguators;
+        this.tokenizer = tokenizer;
+        this.namespacePrefix = namespacePrefix;
+        this.sparqlExecuter = sparqlExecuter;
+        this.similarityThresholds = similarityThresholds;
+    }
+
+    /**
+     * Registers an in-flight request. Must be paired with {@link #release()}.
+     */
+    void acquire() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Deregisters an in-flight request and releases the components if the generation is retired and drained.
+     */
+    void release() {
+        if (inFlight.decrementAndGet() == 0 && retired.get())
+            releaseComponents();
+    }
+
+    /**
+     * Marks the generation as replaced. Its components are released once no request uses them anymore.
+     */
+    void retire() {
+        retired.set(true);
+        if (inFlight.get() == 0)
+            releaseComponents();
+    }
+
+    private void releaseComponents() {
+        if (released.compareAndSet(false, true)) {
+            //The stores are only referenced from the components, dropping them allows their memory to be reclaimed:
+            spotters = Collections.emptyMap();
+            disambiguators = Collections.emptyMap();
+            tokenizer = null;
+            LOG.info(String.format("Released model generation %d (%s).", id, modelFolder));
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public File getModelFolder() {
+        return modelFolder;
+    }
+
+    public Map<SpotterPolicy,Spotter> getSpotters() {
+        return spotters;
+    }
+
+    public Map<DisambiguationPolicy,ParagraphDisambiguatorJ> getDisambiguators() {
+        return disambiguators;
+    }
+
+    public TextTokenizer getTokenizer() {
+        return tokenizer;
+    }
+
+    public String getNamespacePrefix() {
+        return namespacePrefix;
+    }
+
+    public SparqlQueryExecuter getSparqlExecuter() {
+        return sparqlExecuter;
+    }
+
+    public List<Double> getSimilarityThresholds() {
+        return similarityThresholds;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public boolean isRetired() {
+        return retired.get();
+    }
+
+    public boolean isReleased() {
+        return released.get();
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * @return time in ms it took to load the model
+     */
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+    void setLoadTime(long loadTime) {
+        this.loadTime = loadTime;
+    }
+
+    /**
+     * @return time in ms it took to warm up the model before it was activated
+     */
+    public long getWarmUpTime() {
+        return warmUpTime;
+    }
+
+    void setWarmUpTime(long warmUpTime) {
+        this.warmUpTime = warmUpTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("generation=%d\nfolder=%s\nloaded_at=%d\nload_time_ms=%d\nwarmup_time_ms=%d\nin_flight=%d\nretired=%s\n",
+                id, modelFolder, loadedAt, loadTime, warmUpTime, inFlight.get(), retired.get());
+    }
+
+}
@@ -21,6 +21,7 @@
 
 package org.dbpedia.spotlight.web.rest;
 
+import net.sf.json.JSONObject;
 import net.sf.json.xml.XMLSerializer;
 import org.dbpedia.spotlight.exceptions.OutputException;
 import org.dbpedia.spotlight.model.DBpediaResourceOccurrence;
@@ -237,6 +238,26 @@ public class OutputManager {
         return json;
     }
 
+    /**
+     * A single resource occurrence as a JSON object on one line, with the same attributes as a Resource
+     * in the XML and JSON output. The offset of the occurrence is shifted by textOffset.
+     */
+    protected String makeResourceJSONLine(DBpediaResourceOccurrence occ, int textOffset) {
+        return makeResourceJSON(occ, textOffset).toString();
+    }
+
+    protected JSONObject makeResourceJSON(DBpediaResourceOccurrence occ, int textOffset) {
+        JSONObject resource = new JSONObject();
+        resource.put("@URI", Server.getPrefixedDBpediaURL(occ.resource()));
+        resource.put("@support", String.valueOf(occ.resource().support()));
+        resource.put("@types", (occ.resource().types()).mkString(","));
+        resource.put("@surfaceForm", occ.surfaceForm().name());
+        resource.put("@offset", String.valueOf(textOffset + occ.textOffset()));
+        resource.put("@similarityScore", String.valueOf(occ.similarityScore()));
+        resource.put("@percentageOfSecondRank", String.valueOf(occ.percentageOfSecondRank()));
+        return resource;
+    }
+
     private WebCodeFormatter htmlFormat = new HTMLFormatter();
     protected String makeHTML(String text, List<DBpediaResourceOccurrence> occList) {  //TODO throws OutputException
         return makeWebRepresentation(text, occList, htmlFormat);
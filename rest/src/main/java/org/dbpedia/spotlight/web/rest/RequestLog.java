@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.web.rest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous log of the requests to the server. Each entry is a list of key/value pairs that is written
+ * as a single line by a background thread, so that request threads never wait for the log I/O. If the
+ * queue of the log is full, entries are dropped and the number of dropped entries is logged later.
+ *
+ * The log is configured with the system properties:
+ * <ul>
+ *     <li>spotlight.requestlog.sample: fraction of the requests that are logged (default: 1.0, 0 disables the log)</li>
+ *     <li>spotlight.requestlog.maxText: maximum number of characters of the text that are logged (default: 200)</li>
+ *     <li>spotlight.requestlog.queueSize: maximum number of entries waiting to be written (default: 10000)</li>
+ * </ul>
+ */
+public class RequestLog {
+
+    static Log LOG = LogFactory.getLog(RequestLog.class);
+
+    private static final double SAMPLE_RATE = Double.parseDouble(System.getProperty("spotlight.requestlog.sample", "1.0"));
+    private static final int MAX_TEXT_LENGTH = Integer.getInteger("spotlight.requestlog.maxText", 200);
+    private static final int QUEUE_SIZE = Integer.getInteger("spotlight.requestlog.queueSize", 10000);
+
+    private static final BlockingQueue<Map<String, Object>> queue = new ArrayBlockingQueue<Map<String, Object>>(QUEUE_SIZE);
+    private static final AtomicLong dropped = new AtomicLong(0);
+
+    static {
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                while (true) {
+                    try {
+                        Map<String, Object> entry = queue.take();
+
+                        long d = dropped.getAndSet(0);
+                        if (d > 0)
+                            LOG.warn(String.format("Dropped %d request log entries, the request log queue was full.", d));
+
+                        LOG.info(format(entry));
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (RuntimeException e) {
+                        LOG.error("Could not write request log entry.", e);
+                    }
+                }
+            }
+        }, "request-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Decides whether a request is logged, see spotlight.requestlog.sample.
+     */
+    public static boolean sample() {
+        if (SAMPLE_RATE >= 1.0)
+            return true;
+        return SAMPLE_RATE > 0.0 && ThreadLocalRandom.current().nextDouble() < SAMPLE_RATE;
+    }
+
+    /**
+     * Creates an empty entry, the pairs are written in the order they were added.
+     */
+    public static Map<String, Object> entry() {
+        return new LinkedHashMap<String, Object>();
+    }
+
+    /**
+     * Truncates the text to spotlight.requestlog.maxText characters.
+     */
+    public static String truncate(String text) {
+        if (text == null || text.length() <= MAX_TEXT_LENGTH)
+            return text;
+        return text.substring(0, MAX_TEXT_LENGTH) + "...";
+    }
+
+    /**
+     * Queues the entry to be written. Never blocks, the entry is dropped if the queue is full.
+     */
+    public static void log(Map<String, Object> entry) {
+        if (!LOG.isInfoEnabled())
+            return;
+
+        if (!queue.offer(entry))
+            dropped.incrementAndGet();
+    }
+
+    static String format(Map<String, Object> entry) {
+        StringBuilder line = new StringBuilder();
+        for (Map.Entry<String, Object> pair : entry.entrySet()) {
+            if (line.length() > 0)
+                line.append(' ');
+            line.append(pair.getKey()).append('=');
+
+            Object value = pair.getValue();
+            if (value instanceof Number || value instanceof Boolean)
+                line.append(value);
+            else
+                quote(String.valueOf(value), line);
+        }
+        return line.toString();
+    }
+
+    private static void quote(String value, StringBuilder line) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': line.append("\\\""); break;
+                case '\\': line.append("\\\\"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                case '\t': line.append("\\t"); break;
+                default: line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+}
@@ -28,14 +28,16 @@ import org.dbpedia.spotlight.disambiguate.ParagraphDisambiguatorJ;
 import org.dbpedia.spotlight.exceptions.InitializationException;
 import org.dbpedia.spotlight.exceptions.InputException;
 import org.dbpedia.spotlight.model.DBpediaResource;
+import org.dbpedia.spotlight.model.Factory;
 import org.dbpedia.spotlight.model.SpotlightConfiguration;
 import org.dbpedia.spotlight.model.SpotlightFactory;
-import org.dbpedia.spotlight.model.SpotterConfiguration;
+import org.dbpedia.spotlight.model.SurfaceFormOccurrence;
+import org.dbpedia.spotlight.model.Text;
+import org.dbpedia.spotlight.sparql.FileSparqlQueryExecuter;
 import org.dbpedia.spotlight.sparql.SparqlQueryExecuter;
 import org.dbpedia.spotlight.spot.Spotter;
 import org.dbpedia.spotlight.model.SpotterConfiguration.SpotterPolicy;
 import org.dbpedia.spotlight.model.SpotlightConfiguration.DisambiguationPolicy;
-import scala.collection.JavaConverters;
 
 import java.io.File;
 import java.io.IOException;
@@ -45,6 +47,12 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Instantiates Web Service that will execute annotation and disambiguation tasks.
@@ -61,25 +69,33 @@ public class Server {
     // Server reads configuration parameters into this static configuration object that will be used by other classes downstream
     protected static SpotlightConfiguration configuration;
 
-    // Server will hold a few spotters that can be chosen from URL parameters
-    protected static Map<SpotterPolicy,Spotter> spotters = new HashMap<SpotterConfiguration.SpotterPolicy,Spotter>();
+    // Server will hold a generation of spotters, disambiguators and tokenizer that can be chosen from URL parameters.
+    // A new generation can be loaded while the server is running, it replaces the active one atomically.
+    private static final AtomicReference<ModelGeneration> generation = new AtomicReference<ModelGeneration>();
 
-    // Server will hold a few disambiguators that can be chosen from URL parameters
-    protected static Map<DisambiguationPolicy,ParagraphDisambiguatorJ> disambiguators = new HashMap<SpotlightConfiguration.DisambiguationPolicy,ParagraphDisambiguatorJ>();
+    // The generation a request started on, all components of a request are taken from it
+    private static final ThreadLocal<ModelGeneration> requestGeneration = new ThreadLocal<ModelGeneration>();
 
-    private static volatile Boolean running = true;
-
-    static String usage = "usage: java -jar dbpedia-spotlight.jar org.dbpedia.spotlight.web.rest.Server [config file]"
-                        + "   or: mvn scala:run \"-DaddArgs=[config file]\"";
+    private static final AtomicInteger generationCounter = new AtomicInteger(0);
 
-    //This is currently only used in the DB-based version.
-    private static TextTokenizer tokenizer;
+    // Models are reloaded one at a time in the background
+    private static final AtomicBoolean reloading = new AtomicBoolean(false);
+    private static volatile String lastReloadError = null;
+    private static final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "model-reload");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
-    private static String namespacePrefix = SpotlightConfiguration.DEFAULT_NAMESPACE;
+    private static final String WARM_UP_TEXT = "President Obama called Wednesday on Congress to extend a tax break for students included in last year's economic stimulus package, arguing that the policy provides more generous assistance.";
+    private static final int WARM_UP_ITERATIONS = Integer.getInteger("spotlight.warmup.iterations", 10);
 
-    private static SparqlQueryExecuter sparqlExecuter = null;
+    private static volatile Boolean running = true;
 
-    private static List<Double> similarityThresholds = new ArrayList<Double>();
+    static String usage = "usage: java -jar dbpedia-spotlight.jar org.dbpedia.spotlight.web.rest.Server [config file]"
+                        + "   or: mvn scala:run \"-DaddArgs=[config file]\"";
 
     public static void main(String[] args) throws IOException, InterruptedException, URISyntaxException, ClassNotFoundException, InitializationException {
 
@@ -101,8 +117,8 @@ public class Server {
         //ExternalUriWadlGeneratorConfig.setUri(configuration.getServerURI()); //TODO get another parameter, maybe getExternalServerURI since Grizzly will use this in order to find out to which port to bind
 
 
-        LOG.info(String.format("Initiated %d disambiguators.",disambiguators.size()));
-        LOG.info(String.format("Initiated %d spotters.",spotters.size()));
+        LOG.info(String.format("Initiated %d disambiguators.",generation.get().getDisambiguators().size()));
+        LOG.info(String.format("Initiated %d spotters.",generation.get().getSpotters().size()));
 
         final Map<String, String> initParams = new HashMap<String, String>();
         initParams.put("com.sun.jersey.config.property.resourceConfigClass", "com.sun.jersey.api.core.PackagesResourceConfig");
@@ -135,18 +151,58 @@ public class Server {
     }
 
 
-    private static void setSpotters(Map<SpotterPolicy,Spotter> s) throws InitializationException {
-        if (spotters.size() == 0)
-            spotters = s;
-        else
-            throw new InitializationException("Trying to overwrite singleton Server.spotters. Something fishy happened!");
+    /**
+     * Returns the generation of the current request or, outside of a request, the active generation.
+     */
+    public static ModelGeneration currentGeneration() {
+        ModelGeneration g = requestGeneration.get();
+        return g != null ? g : generation.get();
+    }
+
+    /**
+     * Pins the active model generation to the current thread, so that all components used by the request
+     * belong to the same model and are not released while the request is running.
+     *
+     * @return the acquired generation, which must be passed to {@link #releaseGeneration(ModelGeneration)},
+     *         or null if the thread is already pinned to a generation
+     */
+    public static ModelGeneration acquireGeneration() {
+        if (requestGeneration.get() != null)
+            return null;
+
+        while (true) {
+            ModelGeneration g = generation.get();
+            if (g == null)
+                return null;
+
+            g.acquire();
+            //If the generation was replaced in the meantime, it may already be released:
+            if (generation.get() == g) {
+                requestGeneration.set(g);
+                return g;
+            }
+            g.release();
+        }
     }
 
-    private static void setDisambiguators(Map<SpotlightConfiguration.DisambiguationPolicy,ParagraphDisambiguatorJ> s) throws InitializationException {
-        if (disambiguators.size() == 0)
-            disambiguators = s;
-        else
-            throw new InitializationException("Trying to overwrite singleton Server.disambiguators. Something fishy happened!");
+    public static void releaseGeneration(ModelGeneration g) {
+        if (g != null) {
+            requestGeneration.remove();
+            g.release();
+        }
+    }
+
+    public static ModelGeneration getGeneration() {
+        return generation.get();
+    }
+
+    private static void activateGeneration(ModelGeneration g) {
+        ModelGeneration old = generation.getAndSet(g);
+        LOG.info(String.format("Activated model generation %d (%s), load time: %d ms, warm-up time: %d ms.",
+                g.getId(), g.getModelFolder(), g.getLoadTime(), g.getWarmUpTime()));
+
+        if (old != null)
+            old.retire();
     }
 
     public static Spotter getSpotter(String name) throws InputException {
@@ -157,8 +213,11 @@ public class Server {
             throw new InputException(String.format("Specified parameter spotter=%s is invalid. Use one of %s.",name,SpotterPolicy.values()));
         }
 
-        if (spotters.size() == 0)
-            throw new InputException(String.format("No spotters were loaded. Please add one of %s.",spotters.keySet()));
+        ModelGeneration g = currentGeneration();
+        if (g == null || g.getSpotters().size() == 0)
+            throw new InputException(String.format("No spotters were loaded. Please add one of %s.",SpotterPolicy.values()));
+
+        Map<SpotterPolicy,Spotter> spotters = g.getSpotters();
 
         Spotter spotter = spotters.get(policy);
         if (spotter==null) {
@@ -175,8 +234,11 @@ public class Server {
             throw new InputException(String.format("Specified parameter disambiguator=%s is invalid. Use one of %s.",name,DisambiguationPolicy.values()));
         }
 
-        if (disambiguators.size() == 0)
-            throw new InputException(String.format("No disambiguators were loaded. Please add one of %s.",disambiguators.keySet()));
+        ModelGeneration g = currentGeneration();
+        if (g == null || g.getDisambiguators().size() == 0)
+            throw new InputException(String.format("No disambiguators were loaded. Please add one of %s.",DisambiguationPolicy.values()));
+
+        Map<DisambiguationPolicy,ParagraphDisambiguatorJ> disambiguators = g.getDisambiguators();
 
         ParagraphDisambiguatorJ disambiguator = disambiguators.get(policy);
         if (disambiguator == null)
@@ -205,42 +267,42 @@ public class Server {
     }
 
     public static TextTokenizer getTokenizer() {
-        return tokenizer;
-    }
-
-    public static void setTokenizer(TextTokenizer tokenizer) {
-        Server.tokenizer = tokenizer;
+        ModelGeneration g = currentGeneration();
+        return g != null ? g.getTokenizer() : null;
     }
 
     public static String getPrefixedDBpediaURL(DBpediaResource resource) {
-        return namespacePrefix + resource.uri();
+        ModelGeneration g = currentGeneration();
+        return (g != null ? g.getNamespacePrefix() : SpotlightConfiguration.DEFAULT_NAMESPACE) + resource.uri();
     }
 
-    public static void setNamespacePrefix(String namespacePrefix) {
-        Server.namespacePrefix = namespacePrefix;
-    }
-
-    private static void setSparqlExecuter(String endpoint, String graph)
+    private static SparqlQueryExecuter createSparqlExecuter(String endpoint, String graph)
     {
         if (endpoint == null || endpoint.equals(""))  endpoint= "http://dbpedia.org/sparql";
-        if (graph == null || graph.equals(""))  endpoint= "http://dbpedia.org";
+        if (graph == null || graph.equals(""))  graph= "http://dbpedia.org";
+
+        // Local stand-in for the endpoint, e.g. for tests: queries are answered from a file.
+        if (endpoint.startsWith("file:")) {
+            try {
+                return new FileSparqlQueryExecuter(new File(URI.create(endpoint)));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not read SPARQL results from " + endpoint, e);
+            }
+        }
 
-        Server.sparqlExecuter = new SparqlQueryExecuter(graph, endpoint);
+        return new SparqlQueryExecuter(graph, endpoint);
     }
 
     public static SparqlQueryExecuter getSparqlExecute(){
-        return sparqlExecuter;
-    }
-
-    private static void setSimilarityThresholds( List<Double> similarityThresholds){
-       Server.similarityThresholds =  similarityThresholds;
+        ModelGeneration g = currentGeneration();
+        return g != null ? g.getSparqlExecuter() : null;
     }
 
     public static  List<Double> getSimilarityThresholds(){
-       return similarityThresholds;
+        ModelGeneration g = currentGeneration();
+        return g != null ? g.getSimilarityThresholds() : new ArrayList<Double>();
     }
 
-
     public static void initSpotlightConfiguration(String configFileName) throws InitializationException {
 
         if(configFileName.endsWith(".properties")) {
@@ -254,9 +316,9 @@ public class Server {
 
         }
 
-        LOG.info(String.format("Initiated %d disambiguators.",disambiguators.size()));
+        LOG.info(String.format("Initiated %d disambiguators.",generation.get().getDisambiguators().size()));
 
-        LOG.info(String.format("Initiated %d spotters.",spotters.size()));
+        LOG.info(String.format("Initiated %d spotters.",generation.get().getSpotters().size()));
 
     }
 
@@ -273,11 +335,16 @@ public class Server {
         }
         // Set static annotator that will be used by Annotate and Disambiguate
         final SpotlightFactory factory  = new SpotlightFactory(configuration);
-        setDisambiguators(factory.disambiguators());
-        setSpotters(factory.spotters());
-        setNamespacePrefix(configuration.getDbpediaResource());
-        setSparqlExecuter(configuration.getSparqlEndpoint(), configuration.getSparqlMainGraph());
-        setSimilarityThresholds(configuration.getSimilarityThresholds());
+        activateGeneration(new ModelGeneration(
+                generationCounter.incrementAndGet(),
+                null,
+                factory.spotters(),
+                factory.disambiguators(),
+                null,
+                configuration.getDbpediaResource(),
+                createSparqlExecuter(configuration.getSparqlEndpoint(), configuration.getSparqlMainGraph()),
+                configuration.getSimilarityThresholds()
+        ));
 
     }
 
@@ -294,13 +361,100 @@ public class Server {
         }
 
 
+        activateGeneration(loadGeneration(modelFolder));
+
+    }
+
+    private static ModelGeneration loadGeneration(File modelFolder) {
+        long start = System.currentTimeMillis();
         SpotlightModel db = SpotlightModel.fromFolder(modelFolder);
 
-        setNamespacePrefix(db.properties().getProperty("namespace"));
-        setTokenizer(db.tokenizer());
-        setSpotters(db.spotters());
-        setDisambiguators(db.disambiguators());
-        setSparqlExecuter(db.properties().getProperty("endpoint", ""),db.properties().getProperty("graph", ""));
+        ModelGeneration g = new ModelGeneration(
+                generationCounter.incrementAndGet(),
+                modelFolder,
+                db.spotters(),
+                db.disambiguators(),
+                db.tokenizer(),
+                db.properties().getProperty("namespace"),
+                createSparqlExecuter(db.properties().getProperty("endpoint", ""),db.properties().getProperty("graph", "")),
+                new ArrayList<Double>()
+        );
+        g.setLoadTime(System.currentTimeMillis() - start);
+        return g;
+    }
+
+    /**
+     * Runs a sample text through the default spotter and disambiguator of a generation before it is activated,
+     * so that the first requests on the new model do not pay for loading classes and paging in the stores.
+     */
+    private static void warmUp(ModelGeneration g) throws Exception {
+        long start = System.currentTimeMillis();
+
+        Spotter spotter = g.getSpotters().get(SpotterPolicy.Default);
+        ParagraphDisambiguatorJ disambiguator = g.getDisambiguators().get(DisambiguationPolicy.Default);
+
+        if (spotter != null) {
+            for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+                Text text = new Text(WARM_UP_TEXT);
+                if (g.getTokenizer() != null)
+                    g.getTokenizer().tokenizeMaybe(text);
+
+                List<SurfaceFormOccurrence> spots = spotter.extract(text);
+                if (disambiguator != null && spots.size() > 0)
+                    disambiguator.disambiguate(Factory.paragraph().fromJ(spots));
+            }
+        }
+
+        g.setWarmUpTime(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Loads the model in the folder in the background, warms it up and replaces the active generation with it.
+     * Requests that are running on the old generation finish on it, the old generation is released afterwards.
+     *
+     * @param modelFolder the model folder, null to reload the folder of the active generation
+     * @return false if a reload is already running
+     */
+    public static boolean reloadModel(File modelFolder) throws InputException {
+        if (modelFolder == null) {
+            ModelGeneration g = generation.get();
+            if (g == null || g.getModelFolder() == null)
+                throw new InputException("The server was not started from a model folder, please specify the folder to load.");
+            modelFolder = g.getModelFolder();
+        }
+
+        if (!modelFolder.isDirectory())
+            throw new InputException(String.format("Model folder %s does not exist.", modelFolder));
+
+        if (!reloading.compareAndSet(false, true))
+            return false;
+
+        final File folder = modelFolder;
+        reloadExecutor.submit(new Runnable() {
+            public void run() {
+                try {
+                    LOG.info(String.format("Loading model generation from %s...", folder));
+                    ModelGeneration g = loadGeneration(folder);
+                    warmUp(g);
+                    activateGeneration(g);
+                    lastReloadError = null;
+                } catch (Exception e) {
+                    LOG.error(String.format("Could not load model from %s, keeping the active model.", folder), e);
+                    lastReloadError = e.toString();
+                } finally {
+                    reloading.set(false);
+                }
+            }
+        });
+
+        return true;
+    }
+
+    public static boolean isReloading() {
+        return reloading.get();
+    }
 
+    public static String getLastReloadError() {
+        return lastReloadError;
     }
 }
@@ -20,6 +20,7 @@ package org.dbpedia.spotlight.web.rest;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.dbpedia.spotlight.db.DBTwoStepDisambiguator$;
 import org.dbpedia.spotlight.disambiguate.ParagraphDisambiguatorJ;
 import org.dbpedia.spotlight.exceptions.InputException;
 import org.dbpedia.spotlight.exceptions.SearchException;
@@ -29,10 +30,18 @@ import org.dbpedia.spotlight.filter.visitor.FilterOccsImpl;
 import org.dbpedia.spotlight.filter.visitor.OccsFilter;
 import org.dbpedia.spotlight.model.*;
 import org.dbpedia.spotlight.spot.Spotter;
+import org.dbpedia.spotlight.util.LatencyMetrics;
 
+import net.sf.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.net.URLEncoder;
+import java.text.BreakIterator;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Controller that interfaces between the REST API and the DBpedia Spotlight core.
@@ -49,6 +58,10 @@ public class SpotlightInterface {
 
     private OutputManager outputManager = new OutputManager();
 
+    // Size of the text windows of streamed annotations, about DBTwoStepDisambiguator.MAX_CONTEXT tokens of 6 characters
+    static final int STREAM_WINDOW_CHARS = DBTwoStepDisambiguator$.MODULE$.MAX_CONTEXT() * 6;
+    static final int STREAM_READ_CHARS = 8192;
+
     public SpotlightInterface(String apiName) {
         this.apiName = apiName;
     }
@@ -68,7 +81,7 @@ public class SpotlightInterface {
         return resources;
     }
 
-    public boolean policyIsBlacklist(String policy) {
+    public static boolean policyIsBlacklist(String policy) {
         boolean blacklist = false;
         if(policy.trim().equalsIgnoreCase("blacklist")) {
             blacklist = true;
@@ -80,41 +93,54 @@ public class SpotlightInterface {
         return blacklist;
     }
 
-    public void announce(String textString,
-                         double confidence,
-                         int support,
-                         String ontologyTypesString,
-                         String sparqlQuery,
-                         String policy,
-                         boolean coreferenceResolution,
-                         String clientIp,
-                         String spotterName,
-                         String disambiguatorName
-    ) {
-        LOG.info("******************************** Parameters ********************************");
-        LOG.info("API: " + getApiName());
-        LOG.info("client ip: " + clientIp);
-        LOG.info("text: " + textString);
-        LOG.info("text length in chars: " +textString.length());
-        LOG.info("confidence: "+String.valueOf(confidence));
-        LOG.info("support: "+String.valueOf(support));
-        LOG.info("types: "+ontologyTypesString);
-        LOG.info("sparqlQuery: "+ sparqlQuery);
-        LOG.info("policy: "+policyIsBlacklist(policy));
-        LOG.info("coreferenceResolution: "+String.valueOf(coreferenceResolution));
-        LOG.info("spotter: "+spotterName);
-        LOG.info("disambiguator: "+disambiguatorName);
-
+    /**
+     * Queues an entry for the request in the {@link RequestLog}, occurrences is null if the request failed.
+     */
+    private void logRequest(String textString,
+                            double confidence,
+                            int support,
+                            String ontologyTypesString,
+                            String sparqlQuery,
+                            String policy,
+                            boolean coreferenceResolution,
+                            String clientIp,
+                            String spotterName,
+                            String disambiguatorName,
+                            ModelGeneration generation,
+                            List<DBpediaResourceOccurrence> occurrences,
+                            long start) {
+        Map<String, Object> entry = RequestLog.entry();
+        entry.put("api", getApiName());
+        entry.put("client_ip", clientIp);
+        entry.put("generation", generation != null ? generation.getId() : -1);
+        entry.put("spotter", spotterName);
+        entry.put("disambiguator", disambiguatorName);
+        entry.put("confidence", confidence);
+        entry.put("support", support);
+        entry.put("types", ontologyTypesString);
+        entry.put("sparql", sparqlQuery);
+        entry.put("policy", policy);
+        entry.put("coreference_resolution", coreferenceResolution);
+        entry.put("text_length", textString != null ? textString.length() : 0);
+        entry.put("occurrences", occurrences != null ? occurrences.size() : -1);
+        entry.put("time_ms", (System.nanoTime() - start) / 1000000);
+        entry.put("text", RequestLog.truncate(textString));
+        RequestLog.log(entry);
     }
 
     public List<SurfaceFormOccurrence> spot(String spotterName, Text context) throws InputException, SpottingException {
-        Spotter spotter = Server.getSpotter(spotterName);
+        ModelGeneration generation = Server.acquireGeneration();
+        try {
+            Spotter spotter = Server.getSpotter(spotterName);
 
-        if(Server.getTokenizer() != null)
-            Server.getTokenizer().tokenizeMaybe(context);
+            if(Server.getTokenizer() != null)
+                Server.getTokenizer().tokenizeMaybe(context);
 
-        List<SurfaceFormOccurrence> spots = spotter.extract(context);
-        return spots;
+            List<SurfaceFormOccurrence> spots = spotter.extract(context);
+            return spots;
+        } finally {
+            Server.releaseGeneration(generation);
+        }
     }
 
     /**
@@ -133,42 +159,58 @@ public class SpotlightInterface {
                                                           String disambiguatorName
                                                           ) throws SearchException, InputException, SpottingException {
 
-        boolean blacklist = policyIsBlacklist(policy);
+        long start = System.nanoTime();
+        List<DBpediaResourceOccurrence> result = null;
 
-        announce(textString,confidence,support,ontologyTypesString,sparqlQuery,policy,coreferenceResolution,clientIp,spotterName,disambiguatorName);
+        //All components of the request are taken from the same model generation:
+        ModelGeneration generation = Server.acquireGeneration();
+        //The generation serving the request, also if the thread was already pinned (e.g. by a stream):
+        ModelGeneration served = Server.currentGeneration();
+        try {
+            boolean blacklist = policyIsBlacklist(policy);
 
-        // Get input text
-        if (textString.trim().equals("")) {
-            throw new InputException("No text was specified in the &text parameter.");
-        }
-        Text context = new Text(textString);
+            // Get input text
+            if (textString.trim().equals("")) {
+                throw new InputException("No text was specified in the &text parameter.");
+            }
+            Text context = new Text(textString);
 
-        // Find spots to annotate/disambiguate
-        List<SurfaceFormOccurrence> spots = spot(spotterName,context);
+            // Find spots to annotate/disambiguate
+            List<SurfaceFormOccurrence> spots = spot(spotterName,context);
 
-        // Call annotation or disambiguation
-        int maxLengthForOccurrenceCentric = 1200; //TODO configuration
-        if (Server.getTokenizer() == null && disambiguatorName.equals(SpotlightConfiguration.DisambiguationPolicy.Default.name())
-                && textString.length() > maxLengthForOccurrenceCentric) {
-            disambiguatorName = SpotlightConfiguration.DisambiguationPolicy.Document.name();
-            LOG.info(String.format("Text length > %d. Using %s to disambiguate.",maxLengthForOccurrenceCentric,disambiguatorName));
-        }
-        ParagraphDisambiguatorJ disambiguator = Server.getDisambiguator(disambiguatorName);
-        List<DBpediaResourceOccurrence> occList = disambiguate(spots, disambiguator);
+            // Call annotation or disambiguation
+            int maxLengthForOccurrenceCentric = 1200; //TODO configuration
+            if (Server.getTokenizer() == null && disambiguatorName.equals(SpotlightConfiguration.DisambiguationPolicy.Default.name())
+                    && textString.length() > maxLengthForOccurrenceCentric) {
+                disambiguatorName = SpotlightConfiguration.DisambiguationPolicy.Document.name();
+                LOG.info(String.format("Text length > %d. Using %s to disambiguate.",maxLengthForOccurrenceCentric,disambiguatorName));
+            }
+            ParagraphDisambiguatorJ disambiguator = Server.getDisambiguator(disambiguatorName);
+            List<DBpediaResourceOccurrence> occList = disambiguate(spots, disambiguator);
 
-        FilterElement filter = new OccsFilter(confidence, support, ontologyTypesString, sparqlQuery, blacklist, coreferenceResolution, Server.getSimilarityThresholds(), Server.getSparqlExecute());
-        occList = filter.accept(new FilterOccsImpl() ,occList);
+            long filterStart = System.nanoTime();
+            FilterElement filter = new OccsFilter(confidence, support, ontologyTypesString, sparqlQuery, blacklist, coreferenceResolution, Server.getSimilarityThresholds(), Server.getSparqlExecute());
+            occList = filter.accept(new FilterOccsImpl() ,occList);
+            LatencyMetrics.filtering().recordSince(filterStart);
 
 
 
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("Shown:");
-            for(DBpediaResourceOccurrence occ : occList) {
-                LOG.debug(String.format("%s <- %s; score: %s, ctxscore: %3.2f, support: %s, prior: %s", occ.resource(), occ.surfaceForm(), occ.similarityScore(), occ.contextualScore(), occ.resource().support(), occ.resource().prior()));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Shown:");
+                for(DBpediaResourceOccurrence occ : occList) {
+                    LOG.debug(String.format("%s <- %s; score: %s, ctxscore: %3.2f, support: %s, prior: %s", occ.resource(), occ.surfaceForm(), occ.similarityScore(), occ.contextualScore(), occ.resource().support(), occ.resource().prior()));
+                }
             }
-        }
 
-        return occList;
+            LatencyMetrics.annotation().recordSince(start);
+            result = occList;
+            return occList;
+        } finally {
+            Server.releaseGeneration(generation);
+
+            if (RequestLog.sample())
+                logRequest(textString, confidence, support, ontologyTypesString, sparqlQuery, policy, coreferenceResolution, clientIp, spotterName, disambiguatorName, served, result, start);
+        }
     }
 
     public String getHTML(String text,
@@ -188,7 +230,9 @@ public class SpotlightInterface {
 
         try {
             List<DBpediaResourceOccurrence> occs = getOccurrences(textToProcess, confidence, support, dbpediaTypesString, sparqlQuery, policy, coreferenceResolution, clientIp, spotter, disambiguator);
+            long start = System.nanoTime();
             result = outputManager.makeHTML(textToProcess, occs);
+            LatencyMetrics.serialization().recordSince(start);
         }
         catch (InputException e) { //TODO throw exception up to Annotate for WebApplicationException to handle.
             LOG.info("ERROR: "+e.getMessage());
@@ -216,7 +260,9 @@ public class SpotlightInterface {
 
         try {
             List<DBpediaResourceOccurrence> occs = getOccurrences(textToProcess, confidence, support, dbpediaTypesString, sparqlQuery, policy, coreferenceResolution, clientIp, spotter, disambiguator);
+            long start = System.nanoTime();
             result = outputManager.makeRDFa(textToProcess, occs);
+            LatencyMetrics.serialization().recordSince(start);
         }
         catch (InputException e) { //TODO throw exception up to Annotate for WebApplicationException to handle.
             LOG.info("ERROR: "+e.getMessage());
@@ -244,7 +290,9 @@ public class SpotlightInterface {
 
 //        try {
             List<DBpediaResourceOccurrence> occs = getOccurrences(textToProcess, confidence, support, dbpediaTypesString, sparqlQuery, policy, coreferenceResolution, clientIp, spotter,disambiguator);
+            long start = System.nanoTime();
             result = outputManager.makeXML(textToProcess, occs, confidence, support, dbpediaTypesString, sparqlQuery, policy, coreferenceResolution);
+            LatencyMetrics.serialization().recordSince(start);
 //        }
 //        catch (Exception e) { //TODO throw exception up to Annotate for WebApplicationException to handle.
 //            LOG.info("ERROR: "+e.getMessage());
@@ -283,7 +331,9 @@ public class SpotlightInterface {
 	        prefix = requestedURL.concat("/?text=").concat(URLEncoder.encode(text, "UTF-8"));
 	
 	    List<DBpediaResourceOccurrence> occs = getOccurrences(textToProcess, confidence, support, dbpediaTypesString, sparqlQuery, policy, coreferenceResolution, clientIp, spotter,disambiguator);
+	    long start = System.nanoTime();
 	    result = outputManager.makeNIF(textToProcess, occs, format, prefix);
+	    LatencyMetrics.serialization().recordSince(start);
 
 	    LOG.info("NIF format: " + format);
         LOG.debug("****************************************************************");
@@ -309,7 +359,9 @@ public class SpotlightInterface {
         String textToProcess = ServerUtils.getTextToProcess(text, inUrl);
 
         List<DBpediaResourceOccurrence> occs = getOccurrences(textToProcess, confidence, support, dbpediaTypesString, sparqlQuery, policy, coreferenceResolution, clientIp, spotter,disambiguator);
+        long start = System.nanoTime();
         result = outputManager.makeXML(textToProcess, occs, confidence, support, dbpediaTypesString, sparqlQuery, policy, coreferenceResolution);
+        LatencyMetrics.serialization().recordSince(start);
         LOG.info("XML format");
         LOG.debug("****************************************************************");
         return result;
@@ -329,13 +381,106 @@ public class SpotlightInterface {
     ) throws Exception {
         String result;
         String xml = getXML(text,inUrl, confidence, support, dbpediaTypesString, sparqlQuery, policy, coreferenceResolution, clientIp, spotterName,disambiguator);
+        long start = System.nanoTime();
         result = outputManager.xml2json(xml);
+        LatencyMetrics.jsonConversion().recordSince(start);
         LOG.info("JSON format");
         LOG.debug("****************************************************************");
 
         return result;
     }
 
+    /**
+     * Annotates a text read from the input window by window and writes the occurrences of each window to the
+     * output as soon as it is done, one JSON object per line. Windows end at sentence boundaries and hold about
+     * as many tokens as the context window of the disambiguator, so that only a few windows of the text are
+     * kept in memory.
+     */
+    public void streamOccurrences(Reader in,
+                                  Writer out,
+                                  double confidence,
+                                  int support,
+                                  String ontologyTypesString,
+                                  String sparqlQuery,
+                                  String policy,
+                                  boolean coreferenceResolution,
+                                  String clientIp,
+                                  String spotterName,
+                                  String disambiguatorName
+    ) throws IOException {
+
+        LOG.info(String.format("Streaming annotation for client ip: %s", clientIp));
+
+        ModelGeneration generation = Server.acquireGeneration();
+        try {
+            StringBuilder buffer = new StringBuilder();
+            char[] chunk = new char[STREAM_READ_CHARS];
+            int windowOffset = 0;
+            int windows = 0;
+            boolean eof = false;
+
+            while (!eof || buffer.length() > 0) {
+                //Read until there is more than one window or the input ends:
+                while (!eof && buffer.length() < 2 * STREAM_WINDOW_CHARS) {
+                    int read = in.read(chunk);
+                    if (read < 0)
+                        eof = true;
+                    else
+                        buffer.append(chunk, 0, read);
+                }
+
+                int end = buffer.length() > STREAM_WINDOW_CHARS ? windowEnd(buffer) : buffer.length();
+                String window = buffer.substring(0, end);
+                buffer.delete(0, end);
+
+                if (!window.trim().equals("")) {
+                    List<DBpediaResourceOccurrence> occs = getOccurrences(window, confidence, support, ontologyTypesString, sparqlQuery, policy, coreferenceResolution, clientIp, spotterName, disambiguatorName);
+                    for (DBpediaResourceOccurrence occ : occs) {
+                        out.write(outputManager.makeResourceJSONLine(occ, windowOffset));
+                        out.write("\n");
+                    }
+                    out.flush();
+                    windows++;
+                }
+
+                windowOffset += end;
+            }
+
+            LOG.info(String.format("Streamed %d windows, %d characters.", windows, windowOffset));
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            //The response has already started, report the error as the last line:
+            LOG.info("ERROR: " + e.getMessage());
+            JSONObject error = new JSONObject();
+            error.put("@error", String.valueOf(e.getMessage()));
+            out.write(error.toString());
+            out.write("\n");
+            out.flush();
+        } finally {
+            Server.releaseGeneration(generation);
+        }
+    }
+
+    /**
+     * Returns the end of the last sentence that fits into a window. If the first sentence is longer than a window,
+     * the window ends at the last whitespace.
+     */
+    static int windowEnd(CharSequence buffer) {
+        BreakIterator sentences = BreakIterator.getSentenceInstance();
+        sentences.setText(buffer.toString());
+
+        int end = sentences.isBoundary(STREAM_WINDOW_CHARS) ? STREAM_WINDOW_CHARS : sentences.preceding(STREAM_WINDOW_CHARS);
+        if (end > 0)
+            return end;
+
+        for (end = STREAM_WINDOW_CHARS; end > 0; end--) {
+            if (Character.isWhitespace(buffer.charAt(end - 1)))
+                return end;
+        }
+        return STREAM_WINDOW_CHARS;
+    }
+
     public String getApiName() {
         return apiName;
     }
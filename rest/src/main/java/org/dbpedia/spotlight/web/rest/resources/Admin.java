@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.web.rest.resources;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbpedia.spotlight.exceptions.InputException;
+import org.dbpedia.spotlight.web.rest.ModelGeneration;
+import org.dbpedia.spotlight.web.rest.Server;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * REST Web Service for administrating the running server. The model can be replaced without restarting
+ * the server by loading a new model folder in the background (see {@link Server#reloadModel(File)}).
+ *
+ * The service only accepts requests from the local host unless -Dspotlight.admin.remote=true is set.
+ */
+
+@ApplicationPath(Server.APPLICATION_PATH)
+@Path("/admin")
+public class Admin {
+
+    Log LOG = LogFactory.getLog(this.getClass());
+
+    private static final boolean ALLOW_REMOTE = Boolean.getBoolean("spotlight.admin.remote");
+
+    private boolean isAllowed(HttpServletRequest request) {
+        if (ALLOW_REMOTE)
+            return true;
+        try {
+            return InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    @GET
+    @Path("/model")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getModel(@Context HttpServletRequest request) {
+        if (!isAllowed(request))
+            return Response.status(Response.Status.FORBIDDEN).build();
+
+        ModelGeneration generation = Server.getGeneration();
+        StringBuilder status = new StringBuilder();
+        status.append(generation != null ? generation.toString() : "generation=none\n");
+        status.append("reloading=").append(Server.isReloading()).append("\n");
+        if (Server.getLastReloadError() != null)
+            status.append("last_reload_error=").append(Server.getLastReloadError()).append("\n");
+
+        return Response.ok(status.toString()).build();
+    }
+
+    @POST
+    @Path("/reload")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response reload(@DefaultValue("") @FormParam("folder") String folder,
+                           @Context HttpServletRequest request) {
+        if (!isAllowed(request))
+            return Response.status(Response.Status.FORBIDDEN).build();
+
+        LOG.info(String.format("Reload requested by %s, folder: %s", request.getRemoteAddr(), folder));
+
+        try {
+            if (Server.reloadModel(folder.equals("") ? null : new File(folder)))
+                return Response.status(Response.Status.ACCEPTED).entity("Loading model in the background.\n").build();
+            else
+                return Response.status(Response.Status.CONFLICT).entity("A model is already being loaded.\n").build();
+        } catch (InputException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage() + "\n").build();
+        }
+    }
+
+}
@@ -19,7 +19,9 @@
 package org.dbpedia.spotlight.web.rest.resources;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.dbpedia.spotlight.exceptions.InputException;
 import org.dbpedia.spotlight.model.SpotlightConfiguration;
+import org.dbpedia.spotlight.web.rest.BatchAnnotator;
 import org.dbpedia.spotlight.web.rest.Server;
 import org.dbpedia.spotlight.web.rest.ServerUtils;
 import org.dbpedia.spotlight.web.rest.SpotlightInterface;
@@ -29,7 +31,9 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
+import java.io.*;
 
 /**
  * REST Web Service for annotation: spotting, candidate selection, disambiguation, linking
@@ -51,6 +55,9 @@ public class Annotate {
 
     // Annotation interface
     private static SpotlightInterface annotationInterface =  new SpotlightInterface("/annotate");
+
+    // Batch annotation of many documents with shared parameters
+    private static BatchAnnotator batchAnnotator = new BatchAnnotator();
     
     @GET
     @Produces(MediaType.TEXT_HTML)
@@ -275,4 +282,86 @@ public class Annotate {
         return getJSON(text,inUrl,confidence,support,dbpediaTypes,sparqlQuery,policy,coreferenceResolution,spotter,disambiguatorName,request);
       }
 
+    /**
+     * Annotates the plain text request body window by window and streams the annotations back as
+     * newline-delimited JSON, one resource per line, as soon as each window is done.
+     */
+    @POST
+    @Path("/stream")
+    @Consumes(MediaType.TEXT_PLAIN)
+    @Produces("application/x-ndjson")
+    public Response postStream(
+      final InputStream body,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_CONFIDENCE) @QueryParam("confidence") final Double confidence,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_SUPPORT) @QueryParam("support") final int support,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_TYPES) @QueryParam("types") final String dbpediaTypes,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_SPARQL) @QueryParam("sparql") final String sparqlQuery,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_POLICY) @QueryParam("policy") final String policy,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_COREFERENCE_RESOLUTION) @QueryParam("coreferenceResolution") final boolean coreferenceResolution,
+      @DefaultValue("Default") @QueryParam("spotter") final String spotterName,
+      @DefaultValue("Default") @QueryParam("disambiguator") final String disambiguatorName,
+      @Context HttpServletRequest request
+      ) {
+
+        final String clientIp = request.getRemoteAddr();
+
+        StreamingOutput stream = new StreamingOutput() {
+            public void write(OutputStream output) throws IOException, WebApplicationException {
+                Reader in = new InputStreamReader(body, "UTF-8");
+                Writer out = new OutputStreamWriter(output, "UTF-8");
+                annotationInterface.streamOccurrences(in, out, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, spotterName, disambiguatorName);
+                out.flush();
+            }
+        };
+
+        return Response.ok(stream).header("Access-Control-Allow-Origin","*").build();
+    }
+
+    /**
+     * Annotates a batch of documents with shared parameters. The body is read as a stream of documents, one per
+     * line or as a JSON array, see {@link BatchAnnotator.DocumentReader}. The result has one JSON object per line
+     * and document, in the order of the documents.
+     */
+    @POST
+    @Path("/batch")
+    @Consumes({MediaType.APPLICATION_JSON, "application/x-ndjson", MediaType.TEXT_PLAIN})
+    @Produces("application/x-ndjson")
+    public Response postBatch(
+      final InputStream body,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_CONFIDENCE) @QueryParam("confidence") final Double confidence,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_SUPPORT) @QueryParam("support") final int support,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_TYPES) @QueryParam("types") final String dbpediaTypes,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_SPARQL) @QueryParam("sparql") final String sparqlQuery,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_POLICY) @QueryParam("policy") final String policy,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_COREFERENCE_RESOLUTION) @QueryParam("coreferenceResolution") final boolean coreferenceResolution,
+      @DefaultValue("Default") @QueryParam("spotter") final String spotterName,
+      @DefaultValue("Default") @QueryParam("disambiguator") final String disambiguatorName,
+      @Context HttpServletRequest request
+      ) {
+
+        final String clientIp = request.getRemoteAddr();
+
+        try {
+            //Check the spotter and disambiguator before the response starts:
+            Server.getSpotter(spotterName);
+            Server.getDisambiguator(disambiguatorName);
+
+            StreamingOutput stream = new StreamingOutput() {
+                public void write(OutputStream output) throws IOException, WebApplicationException {
+                    BatchAnnotator.DocumentReader documents = new BatchAnnotator.DocumentReader(new InputStreamReader(body, "UTF-8"));
+                    Writer out = new OutputStreamWriter(output, "UTF-8");
+                    try {
+                        batchAnnotator.annotate(documents, out, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, spotterName, disambiguatorName);
+                    } catch (InputException e) {
+                        throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+                    }
+                }
+            };
+
+            return Response.ok(stream).header("Access-Control-Allow-Origin","*").build();
+        } catch (InputException e) {
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST).entity(ServerUtils.print(e)).type(MediaType.TEXT_PLAIN).build());
+        }
+    }
+
 }
@@ -33,6 +33,7 @@ import org.dbpedia.spotlight.filter.visitor.FilterOccsImpl;
 import org.dbpedia.spotlight.filter.visitor.OccsFilter;
 import org.dbpedia.spotlight.model.*;
 import org.dbpedia.spotlight.spot.Spotter;
+import org.dbpedia.spotlight.web.rest.ModelGeneration;
 import org.dbpedia.spotlight.web.rest.Server;
 import org.dbpedia.spotlight.web.rest.ServerUtils;
 import org.dbpedia.spotlight.web.rest.output.Annotation;
@@ -327,24 +328,29 @@ public class Candidates {
             throw new InputException("No text was specified in the &text parameter.");
         }
 
-        /* Setting defaults */
-        if (Server.getTokenizer() == null && disambiguatorName==SpotlightConfiguration.DisambiguationPolicy.Default.name()
-                && text.length() > 1200) {
-            disambiguatorName = SpotlightConfiguration.DisambiguationPolicy.Document.name();
-            LOG.info(String.format("Text length: %d. Using %s to disambiguate.",text.length(),disambiguatorName));
-        }
+        ModelGeneration generation = Server.acquireGeneration();
+        try {
+            /* Setting defaults */
+            if (Server.getTokenizer() == null && disambiguatorName==SpotlightConfiguration.DisambiguationPolicy.Default.name()
+                    && text.length() > 1200) {
+                disambiguatorName = SpotlightConfiguration.DisambiguationPolicy.Document.name();
+                LOG.info(String.format("Text length: %d. Using %s to disambiguate.",text.length(),disambiguatorName));
+            }
 
-        Spotter spotter = Server.getSpotter(spotterName);
-        ParagraphDisambiguatorJ disambiguator = Server.getDisambiguator(disambiguatorName);
+            Spotter spotter = Server.getSpotter(spotterName);
+            ParagraphDisambiguatorJ disambiguator = Server.getDisambiguator(disambiguatorName);
 
-        /* Running Annotation */
+            /* Running Annotation */
 
-        Annotation annotation = process(text, confidence, support, ontologyTypesString, sparqlQuery, blacklist, coreferenceResolution, spotter, disambiguator);
+            Annotation annotation = process(text, confidence, support, ontologyTypesString, sparqlQuery, blacklist, coreferenceResolution, spotter, disambiguator);
 
-        LOG.debug("Shown: "+annotation.toXML());
-        LOG.debug("****************************************************************");
+            LOG.debug("Shown: "+annotation.toXML());
+            LOG.debug("****************************************************************");
 
-        return annotation;
+            return annotation;
+        } finally {
+            Server.releaseGeneration(generation);
+        }
     }
 
 
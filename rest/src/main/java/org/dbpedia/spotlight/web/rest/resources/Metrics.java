@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.web.rest.resources;
+
+import org.dbpedia.spotlight.util.LatencyMetrics;
+import org.dbpedia.spotlight.util.OpenNLPMetrics;
+import org.dbpedia.spotlight.web.rest.ModelGeneration;
+import org.dbpedia.spotlight.web.rest.Server;
+
+import javax.ws.rs.ApplicationPath;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+/**
+ * REST Web Service for monitoring: the latency histograms of the stages of a request
+ * (see {@link LatencyMetrics}), the instances of the OpenNLP components (see {@link OpenNLPMetrics})
+ * and the state of the model in the Prometheus text format.
+ */
+
+@ApplicationPath(Server.APPLICATION_PATH)
+@Path("/metrics")
+public class Metrics {
+
+    @GET
+    @Produces("text/plain; version=0.0.4")
+    public Response getMetrics() {
+        StringBuilder metrics = new StringBuilder(LatencyMetrics.toPrometheus());
+        metrics.append(OpenNLPMetrics.toPrometheus());
+
+        ModelGeneration generation = Server.getGeneration();
+        if (generation != null) {
+            metrics.append("# HELP spotlight_model_generation ID of the model generation that is served.\n");
+            metrics.append("# TYPE spotlight_model_generation gauge\n");
+            metrics.append("spotlight_model_generation ").append(generation.getId()).append("\n");
+            metrics.append("# HELP spotlight_requests_in_flight Requests running on the served model generation.\n");
+            metrics.append("# TYPE spotlight_requests_in_flight gauge\n");
+            metrics.append("spotlight_requests_in_flight ").append(generation.getInFlight()).append("\n");
+        }
+
+        return Response.ok(metrics.toString()).build();
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.web.rest;
+
+import org.dbpedia.spotlight.exceptions.InputException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the formats of the documents of a batch.
+ */
+public class BatchAnnotatorTest {
+
+    private static List<String> read(String body) throws IOException, InputException {
+        BatchAnnotator.DocumentReader reader = new BatchAnnotator.DocumentReader(new StringReader(body));
+        List<String> documents = new ArrayList<String>();
+        String[] d;
+        while ((d = reader.next()) != null)
+            documents.add(d[0] + ":" + d[1]);
+        return documents;
+    }
+
+    @Test
+    public void array() throws Exception {
+        List<String> documents = read("[{\"id\": \"a\", \"text\": \"Berlin\"},\n \"Paris\", {\"text\": \"Rome\"}]");
+        assertEquals(3, documents.size());
+        assertEquals("a:Berlin", documents.get(0));
+        assertEquals("1:Paris", documents.get(1));
+        assertEquals("2:Rome", documents.get(2));
+    }
+
+    @Test
+    public void lines() throws Exception {
+        List<String> documents = read("{\"id\": \"a\", \"text\": \"Berlin\"}\n\n\"Paris\\nFrance\"\nRome is in Italy.\n{\"text\": \"Madrid\"}\n");
+        assertEquals(4, documents.size());
+        assertEquals("a:Berlin", documents.get(0));
+        assertEquals("1:Paris\nFrance", documents.get(1));
+        assertEquals("2:Rome is in Italy.", documents.get(2));
+        assertEquals("3:Madrid", documents.get(3));
+    }
+
+    @Test
+    public void empty() throws Exception {
+        assertTrue(read("").isEmpty());
+        assertTrue(read("\n  \n").isEmpty());
+        assertTrue(read("[]").isEmpty());
+    }
+
+    @Test(expected = InputException.class)
+    public void objectWithoutText() throws Exception {
+        read("{\"id\": \"a\"}");
+    }
+
+    @Test(expected = InputException.class)
+    public void invalidJSON() throws Exception {
+        read("{\"text\": \"Berlin\"\n");
+    }
+
+}
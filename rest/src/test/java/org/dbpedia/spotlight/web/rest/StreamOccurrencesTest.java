@@ -0,0 +1,158 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.web.rest;
+
+import net.sf.json.JSONObject;
+import org.dbpedia.spotlight.model.DBpediaResource;
+import org.dbpedia.spotlight.model.DBpediaResourceOccurrence;
+import org.dbpedia.spotlight.model.SurfaceForm;
+import org.dbpedia.spotlight.model.Text;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests splitting streamed text into windows and shifting the offsets of the annotations of each window.
+ */
+public class StreamOccurrencesTest {
+
+    private static final int W = SpotlightInterface.STREAM_WINDOW_CHARS;
+
+    /**
+     * Annotates every occurrence of "Berlin" and remembers the windows it was called with.
+     */
+    private static class BerlinInterface extends SpotlightInterface {
+        final List<String> windows = new ArrayList<String>();
+
+        BerlinInterface() {
+            super("stream");
+        }
+
+        @Override
+        public List<DBpediaResourceOccurrence> getOccurrences(String text, double confidence, int support, String ontologyTypesString,
+                                                              String sparqlQuery, String policy, boolean coreferenceResolution,
+                                                              String clientIp, String spotterName, String disambiguatorName) {
+            windows.add(text);
+            return annotate(text);
+        }
+
+        static List<DBpediaResourceOccurrence> annotate(String text) {
+            List<DBpediaResourceOccurrence> occs = new ArrayList<DBpediaResourceOccurrence>();
+            for (int i = text.indexOf("Berlin"); i >= 0; i = text.indexOf("Berlin", i + 1))
+                occs.add(new DBpediaResourceOccurrence(new DBpediaResource("Berlin"), new SurfaceForm("Berlin"), new Text(text), i));
+            return occs;
+        }
+
+        List<Integer> stream(String text) throws Exception {
+            StringWriter out = new StringWriter();
+            streamOccurrences(new StringReader(text), out, 0.0, 0, "", "", "whitelist", false, "127.0.0.1", "Default", "Default");
+
+            List<Integer> offsets = new ArrayList<Integer>();
+            for (String line : out.toString().split("\n")) {
+                if (line.equals(""))
+                    continue;
+                JSONObject o = JSONObject.fromObject(line);
+                assertFalse(line, o.has("@error"));
+                offsets.add(Integer.valueOf(o.getString("@offset")));
+            }
+            return offsets;
+        }
+    }
+
+    private static String repeat(String s, int length) {
+        StringBuilder b = new StringBuilder();
+        while (b.length() < length)
+            b.append(s);
+        return b.substring(0, length);
+    }
+
+    @Test
+    public void windowOfExactlyMaximumLength() throws Exception {
+        //A sentence of exactly one window, followed by another sentence:
+        String first = repeat("Paris ", W - 2) + ". ";
+        String text = first + "Berlin is a city. ";
+        assertEquals(W, first.length());
+        assertEquals(W, SpotlightInterface.windowEnd(text));
+
+        BerlinInterface api = new BerlinInterface();
+        assertTrue(api.stream(first).isEmpty());
+        assertEquals(1, api.windows.size());
+        assertEquals(first, api.windows.get(0));
+
+        api = new BerlinInterface();
+        assertEquals(Arrays.asList(W), api.stream(text));
+        assertEquals(first, api.windows.get(0));
+    }
+
+    @Test
+    public void firstSentenceLongerThanWindow() throws Exception {
+        String text = repeat("Berlin Paris Rome ", 3 * W);
+
+        int end = SpotlightInterface.windowEnd(text);
+        assertTrue(end > 0 && end <= W);
+        assertTrue(Character.isWhitespace(text.charAt(end - 1)));
+
+        BerlinInterface api = new BerlinInterface();
+        api.stream(text);
+        StringBuilder joined = new StringBuilder();
+        for (String window : api.windows) {
+            assertTrue(window.length() <= W);
+            joined.append(window);
+        }
+        assertEquals(text, joined.toString());
+
+        //Without any whitespace, the window is cut at its maximum length:
+        assertEquals(W, SpotlightInterface.windowEnd(repeat("x", 2 * W)));
+    }
+
+    @Test
+    public void onlyWhitespace() throws Exception {
+        BerlinInterface api = new BerlinInterface();
+        assertTrue(api.stream(repeat(" \n\t", 3 * W)).isEmpty());
+        assertTrue(api.windows.isEmpty());
+
+        assertTrue(api.stream("").isEmpty());
+        assertTrue(api.windows.isEmpty());
+    }
+
+    @Test
+    public void offsetsMatchWholeDocument() throws Exception {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; b.length() < 10 * W; i++)
+            b.append(i % 3 == 0 ? "Berlin is the capital of Germany. " : "It has " + i + " museums and many parks.\n");
+        String text = b.toString();
+
+        List<Integer> whole = new ArrayList<Integer>();
+        for (DBpediaResourceOccurrence occ : BerlinInterface.annotate(text))
+            whole.add(occ.textOffset());
+
+        BerlinInterface api = new BerlinInterface();
+        List<Integer> streamed = api.stream(text);
+
+        assertTrue(api.windows.size() > 1);
+        assertEquals(whole, streamed);
+    }
+
+}